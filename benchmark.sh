@@ -0,0 +1,4 @@
+#!/bin/bash
+
+# Launch the JMH benchmarks with the GC profiler to report allocation rates (build them first with `mvn install && mvn -f benchmark/pom.xml package`)
+java -jar benchmark/target/benchmarks.jar -prof gc "$@"
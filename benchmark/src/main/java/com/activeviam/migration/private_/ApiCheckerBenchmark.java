@@ -0,0 +1,76 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the scan of a single file by {@link ActivePivotApiChecker}, without any I/O.
+ *
+ * @author ActiveViam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ApiCheckerBenchmark {
+
+  private static final Path FILE_PATH = Path.of("Benchmark.java");
+
+  /** Size of the file in characters. */
+  @Param({"4096", "65536", "1048576"})
+  public int fileSize;
+
+  /** Proportion of the lines referencing a class of the library. */
+  @Param({"0.0", "0.01", "0.2"})
+  public double matchDensity;
+
+  @Param({"PATTERN", "LEXER", "VECTOR"})
+  public MatchingEngine engine;
+
+  private ApiChecker checker;
+
+  private String content;
+
+  @Setup
+  public void setUp() {
+    this.checker =
+        new ActivePivotApiChecker(List.of(), new MatchingSettings(this.engine, true, true));
+    this.content =
+        SyntheticCorpus.generateFile(
+            SyntheticCorpus.loadMapping("6.0.16:6.1.0"),
+            this.fileSize,
+            this.matchDensity,
+            new Random(0));
+  }
+
+  @Benchmark
+  public ApiChecker checkContent() {
+    this.checker.checkContent(FILE_PATH, this.content);
+    return this.checker;
+  }
+}
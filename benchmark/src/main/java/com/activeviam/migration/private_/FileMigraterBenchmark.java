@@ -0,0 +1,72 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the in-memory migration of a single file by {@link FileMigrater}, without any I/O.
+ *
+ * @author ActiveViam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileMigraterBenchmark {
+
+  @Param({"6.1.0-rc:6.1.0-rc2", "6.0.16:6.1.0"})
+  public String mapping;
+
+  /** Size of the file in characters. */
+  @Param({"4096", "65536", "1048576"})
+  public int fileSize;
+
+  /** Proportion of the lines referencing a class of the mapping. */
+  @Param({"0.0", "0.01", "0.2"})
+  public double matchDensity;
+
+  @Param({"PATTERN", "LEXER"})
+  public MatchingEngine engine;
+
+  private FileMigrater migrater;
+
+  private String content;
+
+  @Setup
+  public void setUp() {
+    final Map<String, String> loadedMapping = SyntheticCorpus.loadMapping(this.mapping);
+    this.migrater =
+        new FileMigrater(List.of(), loadedMapping, new MatchingSettings(this.engine, true, true));
+    this.content =
+        SyntheticCorpus.generateFile(
+            loadedMapping, this.fileSize, this.matchDensity, new Random(0));
+  }
+
+  @Benchmark
+  public String migrateContent() {
+    return this.migrater.migrateContent(this.content);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.migration.private_.ExecutionSettings.IoThreadMode;
+import com.activeviam.migration.private_.MigrationPipeline.MigrationResult;
+import com.activeviam.util.private_.JavaFileFinder;
+import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the migration of a whole project on disk with the different execution modes: the
+ * listed files processed the largest first by a {@link SizeAwareScheduler}, and the streamed
+ * pipeline with platform or virtual threads reading and writing files.
+ *
+ * <p>The project is written again before each invocation. The page cache is dropped then if the
+ * benchmark can write {@code /proc/sys/vm/drop_caches} (when run as root on Linux), so that files
+ * are read from the disk; otherwise the files are read from the page cache. Set {@code -p
+ * directory=<path>} to benchmark a slower or network file system.
+ *
+ * @author ActiveViam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IoThreadModeBenchmark {
+
+  private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+  @Param({"sizeAwareList", "platform", "virtual"})
+  public String mode;
+
+  @Param({"2000"})
+  public int numFiles;
+
+  /** Directory in which the project is generated, a temporary directory if empty. */
+  @Param({""})
+  public String directory;
+
+  private Map<String, String> mapping;
+
+  private Path projectDirectory;
+
+  @Setup
+  public void setUp() throws IOException {
+    this.mapping = SyntheticCorpus.loadMapping("6.0.16:6.1.0");
+    this.projectDirectory =
+        this.directory.isEmpty()
+            ? Files.createTempDirectory("io-thread-mode-benchmark")
+            : Files.createDirectories(
+                Paths.get(this.directory).resolve("io-thread-mode-benchmark"));
+  }
+
+  @Setup(Level.Invocation)
+  public void writeProject() throws IOException {
+    final Random random = new Random(0);
+    for (int i = 0; i < this.numFiles; ++i) {
+      final Path packageDirectory =
+          Files.createDirectories(
+              this.projectDirectory.resolve("src/main/java/com/example/p" + i % 50));
+      Files.writeString(
+          packageDirectory.resolve("File" + i + ".java"),
+          SyntheticCorpus.generateFile(this.mapping, 16_384, 0.01, random));
+    }
+    dropPageCache();
+  }
+
+  private static void dropPageCache() throws IOException {
+    if (Files.isWritable(DROP_CACHES)) {
+      MigrationUtils.executeCommandLine("/", false, "sync");
+      Files.writeString(DROP_CACHES, "3");
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (final Stream<Path> paths = Files.walk(this.projectDirectory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public MigrationResult migrateProject() {
+    final String projectPath = this.projectDirectory.toString();
+    switch (this.mode) {
+      case "sizeAwareList":
+        return MigrationPipeline.migrateAndCheckApi(
+            MigrationUtils.getAllJavaFiles(projectPath), this.mapping, "activepivot");
+      case "platform":
+        return migrateProject(
+            projectPath,
+            new ExecutionSettings(
+                ExecutionSettings.DEFAULT_READ_THREADS,
+                ExecutionSettings.DEFAULT_PROCESS_THREADS,
+                ExecutionSettings.DEFAULT_WRITE_THREADS,
+                ExecutionSettings.DEFAULT_QUEUE_CAPACITY,
+                IoThreadMode.PLATFORM));
+      case "virtual":
+        return migrateProject(
+            projectPath,
+            new ExecutionSettings(
+                ExecutionSettings.DEFAULT_VIRTUAL_IO_THREADS,
+                ExecutionSettings.DEFAULT_PROCESS_THREADS,
+                ExecutionSettings.DEFAULT_VIRTUAL_IO_THREADS,
+                ExecutionSettings.DEFAULT_QUEUE_CAPACITY,
+                IoThreadMode.VIRTUAL));
+      default:
+        throw new IllegalArgumentException("Unknown mode: " + this.mode);
+    }
+  }
+
+  private MigrationResult migrateProject(
+      final String projectPath, final ExecutionSettings settings) {
+    return MigrationPipeline.migrateAndCheckApi(
+        JavaFileFinder.DEFAULT, projectPath, this.mapping, "activepivot", null, settings);
+  }
+}
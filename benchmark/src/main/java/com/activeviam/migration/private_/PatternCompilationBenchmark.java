@@ -0,0 +1,52 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the compilation of the mapping into the pattern used by {@link FileMigrater}.
+ *
+ * @author ActiveViam
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternCompilationBenchmark {
+
+  /** Versions of the mapping, from 132 to 6355 entries. */
+  @Param({"6.1.0-rc:6.1.0-rc2", "6.1.0-beta2:6.1.0-rc", "6.0.12:6.1.0-alpha1", "6.0.16:6.1.0"})
+  public String mapping;
+
+  private Map<String, String> loadedMapping;
+
+  @Setup
+  public void setUp() {
+    this.loadedMapping = SyntheticCorpus.loadMapping(this.mapping);
+  }
+
+  @Benchmark
+  public KeywordAutomaton compileAutomaton() {
+    return KeywordAutomaton.compile(this.loadedMapping.keySet());
+  }
+}
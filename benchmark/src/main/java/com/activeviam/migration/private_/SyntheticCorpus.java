@@ -0,0 +1,81 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.mapping.private_.CsvMapping;
+import com.activeviam.migration.api.MigrationApplication;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic java sources referencing the classes of a real mapping.
+ *
+ * @author ActiveViam
+ */
+final class SyntheticCorpus {
+
+  /** Lines which never reference a class of the library. */
+  private static final String[] FILLER_LINES = {
+    "  private final Map<String, List<Integer>> values = new HashMap<>();",
+    "  // Computes the aggregated value of the given location, see the javadoc above.",
+    "  public int compute(final int left, final int right) { return left * 31 + right; }",
+    "    if (this.values.isEmpty()) { throw new IllegalStateException(\"Empty\"); }",
+    "    for (final String key : this.values.keySet()) { builder.append(key).append(';'); }",
+    "   * @param context the query context, never {@code null}",
+    "  @Override",
+    "    return String.format(\"%s[%d]\", this.getClass().getSimpleName(), this.size);",
+  };
+
+  private SyntheticCorpus() {}
+
+  /**
+   * Loads the mapping from the csv file of the given versions, written as {@code
+   * currentVersion:targetVersion}.
+   */
+  static Map<String, String> loadMapping(final String versions) {
+    final String[] currentAndTargetVersions = versions.split(":");
+    return CsvMapping.loadMappingFromFile(
+        MigrationApplication.DEFAULT_LIBRARY,
+        currentAndTargetVersions[0],
+        currentAndTargetVersions[1]);
+  }
+
+  /**
+   * Generates a java file of about the given size in characters, where the given proportion of the
+   * lines reference a class of the given mapping, with its old or new import.
+   */
+  static String generateFile(
+      final Map<String, String> mapping,
+      final int size,
+      final double matchDensity,
+      final Random random) {
+    final List<String> oldImports = new ArrayList<>(mapping.keySet());
+    final List<String> newImports = new ArrayList<>(mapping.values());
+
+    final StringBuilder sb = new StringBuilder(size + 128);
+    sb.append("package com.example.project;\n\n");
+    while (sb.length() < size) {
+      if (random.nextDouble() < matchDensity) {
+        final int index = random.nextInt(oldImports.size());
+        final String className =
+            random.nextBoolean() ? oldImports.get(index) : newImports.get(index);
+        switch (random.nextInt(3)) {
+          case 0 -> sb.append("import ").append(className).append(";");
+          case 1 -> sb.append("    final ").append(className).append(" value = null;");
+          default -> sb.append("   * {@link ").append(className).append("#toString()}");
+        }
+      } else {
+        sb.append(FILLER_LINES[random.nextInt(FILLER_LINES.length)]);
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
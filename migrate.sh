@@ -1,4 +1,12 @@
 #!/bin/bash
 
+# The vector engine requires the incubator module of the JDK Vector API
+JVM_OPTIONS=()
+for arg in "$@"; do
+  if [ "$arg" = "--engine=vector" ]; then
+    JVM_OPTIONS+=(--add-modules jdk.incubator.vector)
+  fi
+done
+
 # Launch MigrationApplication main method
-java -cp target/java-api-migration-tool-1.1-SNAPSHOT-jar-with-dependencies.jar com.activeviam.migration.api.MigrationApplication "$@"
+java "${JVM_OPTIONS[@]}" -cp target/java-api-migration-tool-1.1-SNAPSHOT-jar-with-dependencies.jar com.activeviam.migration.api.MigrationApplication "$@"
@@ -12,39 +12,114 @@ import com.activeviam.mapping.private_.Mapping;
 import com.activeviam.mapping.private_.MappingGenerator;
 import com.activeviam.mapping.private_.MappingPrinter;
 import com.activeviam.migration.api.MigrationApplication;
+import com.activeviam.util.private_.CommandLineOptions;
+import com.activeviam.util.private_.FlightRecording;
 import com.activeviam.util.private_.MigrationUtils;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Launcher class to create a csv file representing a {@link Mapping} from a local git repository
- * between a current and a target version.
+ * between a current and a target version, or between several current versions and a target version.
  *
  * @author ActiveViam
  */
 public final class MappingApplication {
 
+  /** Option to record the run with Java Flight Recorder in a file. */
+  private static final String JFR_OPTION = "jfr";
+
+  /**
+   * Option to limit the number of added or deleted files compared by content similarity, {@code 0}
+   * meaning no limit.
+   */
+  private static final String RENAME_LIMIT_OPTION = "rename-limit";
+
+  /** Option to set the directory of the cache of the generated mappings. */
+  private static final String CACHE_DIRECTORY_OPTION = "cache-dir";
+
+  /** Option to disable the cache of the generated mappings. */
+  private static final String NO_CACHE_OPTION = "no-cache";
+
+  /** Option to generate the mappings of several comma-separated current versions at once. */
+  private static final String CURRENT_VERSIONS_OPTION = "current-versions";
+
   /**
    * Generates the mapping csv file.
    *
-   * @param args specifies the path of the local git repository of the library if length 1,
-   *     specifies repository path and current version if length 2, specifies repository path and
-   *     current and target versions if length 3
+   * <p>The positional arguments can be mixed with the options:
+   *
+   * <ul>
+   *   <li>{@code --current-versions=<version>,<version>...} to generate the mappings of several
+   *       comma-separated current versions to the same target version at once, the positional
+   *       arguments then being the repository path and optionally the target version
+   *   <li>{@code --rename-limit=<count>} to limit the number of files compared to detect the
+   *       renames, {@code 0} meaning no limit
+   *   <li>{@code --cache-dir=<directory>} to set the directory of the cache of the generated
+   *       mappings, in the git directory of the repository by default, and {@code --no-cache} to
+   *       disable this cache
+   *   <li>{@code --jfr=<file>} to record the run with Java Flight Recorder in a file
+   * </ul>
+   *
+   * @param commandLine specifies the path of the local git repository of the library if length 1,
+   *     specifies repository path and current version if length 2, and specifies repository path
+   *     and current and target versions if length 3, in addition to the options
    */
-  public static void main(final String[] args) {
+  public static void main(final String[] commandLine) {
+    final CommandLineOptions options =
+        CommandLineOptions.parse(
+            commandLine,
+            Set.of(
+                JFR_OPTION,
+                RENAME_LIMIT_OPTION,
+                CACHE_DIRECTORY_OPTION,
+                NO_CACHE_OPTION,
+                CURRENT_VERSIONS_OPTION));
+    final FlightRecording recording = FlightRecording.startIfAsked(options, JFR_OPTION);
+    try {
+      generateMapping(options);
+    } finally {
+      recording.close();
+    }
+
+    System.exit(0);
+  }
+
+  private static void generateMapping(final CommandLineOptions options) {
     // Get arguments
+    final String[] args = options.getArguments();
     final String repositoryPath;
-    final String currentVersion;
+    final List<String> currentVersions;
     final String targetVersion;
-    if (args.length == 1) {
+    if (options.hasOption(CURRENT_VERSIONS_OPTION)) {
+      // Batch of current versions, the arguments being the repository and the target version
+      currentVersions = List.of(options.getOption(CURRENT_VERSIONS_OPTION, null).split(","));
+      if (args.length == 1) {
+        repositoryPath = args[0];
+        targetVersion = MigrationApplication.DEFAULT_TARGET_VERSION;
+      } else if (args.length == 2) {
+        repositoryPath = args[0];
+        targetVersion = args[1];
+      } else {
+        throw new IllegalArgumentException(
+            "Wrong number of arguments with --"
+                + CURRENT_VERSIONS_OPTION
+                + ": "
+                + args.length
+                + ", expected 1 or 2.");
+      }
+    } else if (args.length == 1) {
       repositoryPath = args[0];
-      currentVersion = MigrationApplication.DEFAULT_CURRENT_VERSION;
+      currentVersions = List.of(MigrationApplication.DEFAULT_CURRENT_VERSION);
       targetVersion = MigrationApplication.DEFAULT_TARGET_VERSION;
     } else if (args.length == 2) {
       repositoryPath = args[0];
-      currentVersion = args[1];
+      currentVersions = List.of(args[1]);
       targetVersion = MigrationApplication.DEFAULT_TARGET_VERSION;
     } else if (args.length == 3) {
       repositoryPath = args[0];
-      currentVersion = args[1];
+      currentVersions = List.of(args[1]);
       targetVersion = args[2];
     } else {
       throw new IllegalArgumentException(
@@ -52,19 +127,30 @@ public final class MappingApplication {
     }
 
     // Check versions
-    MigrationUtils.checkVersion(currentVersion);
+    currentVersions.forEach(MigrationUtils::checkVersion);
     MigrationUtils.checkVersion(targetVersion);
 
-    // Create the mapping
-    final Mapping mapping =
-        MappingGenerator.generateMapping(repositoryPath, currentVersion, targetVersion);
-
-    // Print the mapping
-    MappingPrinter.printMapping(mapping);
+    // Create the mappings, or get them from the cache of the previous runs
+    final Path cacheDirectory =
+        options.hasOption(NO_CACHE_OPTION)
+            ? null
+            : options.hasOption(CACHE_DIRECTORY_OPTION)
+                ? Path.of(options.getOption(CACHE_DIRECTORY_OPTION, null))
+                : MappingGenerator.getDefaultCacheDirectory(repositoryPath);
+    final List<Mapping> mappings =
+        MappingGenerator.generateMappings(
+            repositoryPath,
+            currentVersions,
+            targetVersion,
+            options.getIntOption(RENAME_LIMIT_OPTION, -1),
+            cacheDirectory);
 
-    // Create the csv mapping file
-    CsvMapping.createFileFromMapping(mapping);
+    for (final Mapping mapping : mappings) {
+      // Print the mapping
+      MappingPrinter.printMapping(mapping);
 
-    System.exit(0);
+      // Create the csv mapping file
+      CsvMapping.createFileFromMapping(mapping);
+    }
   }
 }
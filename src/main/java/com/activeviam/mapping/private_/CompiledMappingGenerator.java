@@ -0,0 +1,73 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import com.activeviam.migration.private_.CompiledMapping;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step generating the {@link CompiledMapping} artifact of each csv mapping, next to it.
+ *
+ * <p>The csv files remain the source of truth: artifacts are not versioned and are generated again
+ * by each build.
+ *
+ * @author ActiveViam
+ */
+public final class CompiledMappingGenerator {
+
+  private static final Logger LOGGER = Logger.getLogger(CompiledMappingGenerator.class.getName());
+
+  private static final String CSV_SUFFIX = ".csv";
+
+  private CompiledMappingGenerator() {}
+
+  /**
+   * Generates the artifacts of the csv mappings.
+   *
+   * @param args the directory containing the csv mappings, in sub-directories per library
+   */
+  public static void main(final String[] args) throws IOException {
+    if (args.length != 1) {
+      throw new IllegalArgumentException(
+          "Wrong number of arguments: " + args.length + ", expected 1.");
+    }
+    final Path directory = Path.of(args[0]);
+    if (!Files.isDirectory(directory)) {
+      LOGGER.log(Level.INFO, () -> "No mappings to compile in " + directory);
+      return;
+    }
+
+    final List<Path> csvFiles;
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      csvFiles =
+          paths.filter(path -> path.toString().endsWith(CSV_SUFFIX)).collect(Collectors.toList());
+    }
+    csvFiles.parallelStream().forEach(CompiledMappingGenerator::generateArtifact);
+    LOGGER.log(Level.INFO, () -> "Compiled " + csvFiles.size() + " mappings in " + directory);
+  }
+
+  private static void generateArtifact(final Path csvFile) {
+    final Path artifact =
+        csvFile.resolveSibling(csvFile.getFileName() + CompiledMapping.ARTIFACT_SUFFIX);
+    try (final InputStream input = Files.newInputStream(csvFile);
+        final OutputStream output = Files.newOutputStream(artifact)) {
+      CompiledMapping.write(CsvMapping.readMapping(input), output);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
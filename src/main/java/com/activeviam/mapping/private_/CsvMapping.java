@@ -8,15 +8,19 @@
 package com.activeviam.mapping.private_;
 
 import com.activeviam.mapping.api.MappingApplication;
+import com.activeviam.migration.private_.CompiledMapping;
+import com.activeviam.util.private_.FlightEvents.MappingLoaded;
 import com.activeviam.util.private_.JsonUtils;
 import com.activeviam.util.private_.MigrationUtils;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
@@ -66,29 +70,66 @@ public class CsvMapping {
         });
   }
 
-  /** Loads a mapping from a csv file retrieved by its library name, current and target versions. */
+  /**
+   * Loads a mapping from a csv file retrieved by its library name, current and target versions.
+   *
+   * <p>The {@link CompiledMapping} artifact of the csv file is loaded instead when the build
+   * generated it, the csv file being parsed only when running from sources.
+   */
   public static Map<String, String> loadMappingFromFile(
       final String libraryName, final String currentVersion, final String targetVersion) {
     final String path =
         String.join(
             "/", MAPPINGS_DIRECTORY, libraryName, getFileName(currentVersion, targetVersion));
-    try (final BufferedReader reader =
-        new BufferedReader(new InputStreamReader(JsonUtils.getResourceAsStream(path)))) {
-      final List<String> lines = reader.lines().toList();
+    final MappingLoaded event = new MappingLoaded();
+    event.begin();
+    final Map<String, String> mapping = loadMapping(path);
+    event.end();
+    if (event.shouldCommit()) {
+      event.path = path;
+      event.compiled = mapping instanceof CompiledMapping;
+      event.entries = mapping.size();
+      event.commit();
+    }
+    return mapping;
+  }
 
-      final Map<String, String> mapping = new TreeMap<>();
-      for (final String line : lines) {
+  /** Loads the mapping of the given resource, from its compiled artifact if there is one. */
+  private static Map<String, String> loadMapping(final String path) {
+    final CompiledMapping compiledMapping =
+        CompiledMapping.loadResource(path + CompiledMapping.ARTIFACT_SUFFIX);
+    if (compiledMapping != null) {
+      return compiledMapping;
+    }
+
+    final InputStream input = JsonUtils.getResourceAsStream(path);
+    if (input == null) {
+      throw new RuntimeException(
+          "Make sure you generated a csv file with "
+              + MappingApplication.class.getName()
+              + " first: "
+              + path
+              + " not found.");
+    }
+    try {
+      return readMapping(input);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Reads a mapping from the given csv content, sorted by old import. */
+  static SortedMap<String, String> readMapping(final InputStream input) throws IOException {
+    try (final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+      final SortedMap<String, String> mapping = new TreeMap<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
         final String[] oldAndNewImports = line.split(" ");
         assert oldAndNewImports.length == 2 : "Bad file format: " + line;
         mapping.put(oldAndNewImports[0], oldAndNewImports[1]);
       }
       return mapping;
-    } catch (final IOException e) {
-      throw new RuntimeException(
-          "Make sure you generated a csv file with "
-              + MappingApplication.class.getName()
-              + " first.",
-          e);
     }
   }
 
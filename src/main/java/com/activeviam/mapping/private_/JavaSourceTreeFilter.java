@@ -0,0 +1,86 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import com.activeviam.util.private_.MigrationUtils;
+import java.nio.charset.StandardCharsets;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Filter of a {@link TreeWalk} keeping the java files in {@link MigrationUtils#MAIN_DIRECTORY}, the
+ * only ones a {@link MappingGenerator} maps.
+ *
+ * <p>The files are filtered while the trees are walked, so that the other files are neither
+ * compared nor considered by the rename detection. Subtrees which cannot contain such files are not
+ * even walked: under a {@code src} directory, only {@code main/java} is, the {@code test} directory
+ * and the other directories of {@code main}, such as {@code resources}, being skipped.
+ *
+ * <p>A file is kept whatever its mode, so that a file whose mode changed is known to still exist.
+ * Only the regular files are then mapped.
+ *
+ * @author ActiveViam
+ */
+final class JavaSourceTreeFilter extends TreeFilter {
+
+  /** The filter, which is stateless. */
+  static final TreeFilter INSTANCE = new JavaSourceTreeFilter();
+
+  private static final byte[] JAVA_SUFFIX =
+      MigrationUtils.JAVA_SUFFIX.getBytes(StandardCharsets.UTF_8);
+
+  private static final String SOURCE_DIRECTORY = "src";
+
+  private static final String MAIN_DIRECTORY = "main";
+
+  private static final String TEST_DIRECTORY = "test";
+
+  private static final String JAVA_DIRECTORY = "java";
+
+  private JavaSourceTreeFilter() {}
+
+  @Override
+  public boolean include(final TreeWalk walker) {
+    if (walker.isSubtree()) {
+      return mayContainMainSources(walker.getPathString());
+    }
+    return walker.isPathSuffix(JAVA_SUFFIX, JAVA_SUFFIX.length)
+        && walker.getPathString().contains(MigrationUtils.MAIN_DIRECTORY);
+  }
+
+  /** Whether the directory of the given path can contain java files of the main sources. */
+  static boolean mayContainMainSources(final String path) {
+    final String[] names = path.split("/");
+    for (int i = 0; i + 1 < names.length; ++i) {
+      if (names[i].equals(SOURCE_DIRECTORY)) {
+        if (names[i + 1].equals(TEST_DIRECTORY)) {
+          return false;
+        } else if (names[i + 1].equals(MAIN_DIRECTORY)) {
+          // The sources of a module, of which only main/java is mapped
+          return i + 2 == names.length || names[i + 2].equals(JAVA_DIRECTORY);
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean shouldBeRecursive() {
+    return true;
+  }
+
+  @Override
+  public TreeFilter clone() {
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "JAVA_MAIN_SOURCES";
+  }
+}
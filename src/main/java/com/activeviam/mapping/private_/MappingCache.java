@@ -0,0 +1,166 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import com.activeviam.util.private_.MigrationUtils;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Persistent cache of the files paired by a {@link MappingGenerator} between two versions, so that
+ * generating the mapping of the same versions again does not compare them.
+ *
+ * <p>The versions are identified by the ids of the trees of their commits, so that two tags of the
+ * same sources share their entry. The identity of an entry also contains the {@link
+ * MappingGenerator#RULES_VERSION version of the generation rules} and the rename limit.
+ *
+ * <p>The cached pairs are the paths of the moved files, the {@link HardCodedMapping} and the
+ * formatting of the mapping being applied to them each time, so that their changes are always taken
+ * into account.
+ *
+ * @author ActiveViam
+ */
+final class MappingCache {
+
+  private static final Logger LOGGER = Logger.getLogger(MappingCache.class.getName());
+
+  private static final String DEFAULT_CACHE_DIRECTORY = "java-api-migration-tool";
+
+  private static final String ENTRY_FILE_TEMPLATE = "mapping-%s.json";
+
+  private static final String HASH_ALGORITHM = "SHA-256";
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path entryFile;
+
+  private final String identity;
+
+  /** The cached pairs, or {@code null} if there are none. */
+  private final Map<String, String> pairs;
+
+  private MappingCache(
+      final Path entryFile, final String identity, final Map<String, String> pairs) {
+    this.entryFile = entryFile;
+    this.identity = identity;
+    this.pairs = pairs;
+  }
+
+  /**
+   * Returns the default cache directory of the given repository, inside its git directory.
+   *
+   * @return the directory, or {@code null} if the path is not in a git repository
+   */
+  static Path getDefaultCacheDirectory(final String repositoryPath) {
+    final File gitDirectory =
+        new FileRepositoryBuilder().findGitDir(new File(repositoryPath)).getGitDir();
+    return gitDirectory == null ? null : gitDirectory.toPath().resolve(DEFAULT_CACHE_DIRECTORY);
+  }
+
+  /** Loads the entry of the given trees from the given cache directory, if there is one. */
+  static MappingCache load(
+      final Path cacheDirectory,
+      final ObjectId currentTree,
+      final ObjectId targetTree,
+      final int renameLimit) {
+    final String identity = computeIdentity(currentTree, targetTree, renameLimit);
+    final Path entryFile =
+        cacheDirectory.resolve(String.format(ENTRY_FILE_TEMPLATE, identity.substring(0, 16)));
+
+    Map<String, String> pairs = null;
+    if (Files.isRegularFile(entryFile)) {
+      try {
+        final Entry entry = OBJECT_MAPPER.readValue(entryFile.toFile(), Entry.class);
+        if (identity.equals(entry.identity)) {
+          pairs = entry.pairs;
+        }
+      } catch (final IOException e) {
+        // A corrupted entry is only a cache miss
+        LOGGER.log(Level.WARNING, e, () -> "Ignoring unreadable mapping cache " + entryFile);
+      }
+    }
+    return new MappingCache(entryFile, identity, pairs);
+  }
+
+  private static String computeIdentity(
+      final ObjectId currentTree, final ObjectId targetTree, final int renameLimit) {
+    final String identity =
+        MappingGenerator.RULES_VERSION
+            + "\n"
+            + currentTree.getName()
+            + "\n"
+            + targetTree.getName()
+            + "\n"
+            + renameLimit
+            + "\n";
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance(HASH_ALGORITHM)
+                  .digest(identity.getBytes(StandardCharsets.UTF_8)));
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the cached pairs, from the old path to the new path of the moved files.
+   *
+   * @return the pairs, or {@code null} if they are not cached
+   */
+  Map<String, String> getPairs() {
+    return this.pairs;
+  }
+
+  /** Writes the given pairs, from the old path to the new path of the moved files. */
+  void save(final Map<String, String> pairs) {
+    try {
+      Files.createDirectories(this.entryFile.getParent());
+      MigrationUtils.replaceFileContent(
+          this.entryFile,
+          OBJECT_MAPPER.writeValueAsBytes(new Entry(this.identity, new TreeMap<>(pairs))));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Serialized form of an entry.
+   *
+   * @author ActiveViam
+   */
+  private static class Entry {
+
+    @JsonProperty private final String identity;
+
+    @JsonProperty private final Map<String, String> pairs;
+
+    @JsonCreator
+    private Entry(
+        @JsonProperty("identity") final String identity,
+        @JsonProperty("pairs") final Map<String, String> pairs) {
+      this.identity = identity;
+      this.pairs = pairs;
+    }
+  }
+}
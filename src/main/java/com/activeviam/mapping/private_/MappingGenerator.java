@@ -7,28 +7,33 @@
 
 package com.activeviam.mapping.private_;
 
+import com.activeviam.util.private_.FlightEvents.MappingGenerationPhase;
 import com.activeviam.util.private_.MigrationUtils;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffEntry.ChangeType;
-import org.eclipse.jgit.diff.DiffEntry.Side;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
 
 /**
  * Generate a {@link Mapping} of the files that have been moved or renamed between a current and a
@@ -38,11 +43,28 @@ import org.eclipse.jgit.util.io.DisabledOutputStream;
  *
  * <p>Only include java files in {@link MigrationUtils#MAIN_DIRECTORY}.
  *
+ * <p>The moved files are paired by a {@link RenamePairing}, by exact content and by unique name
+ * before the content similarity is computed for the remaining files. The files of the target
+ * version are indexed once in a {@link TargetTreeIndex}, shared by the generators of all the
+ * current versions.
+ *
+ * <p>The moved files are cached in a {@link MappingCache}, keyed by the trees of the versions.
+ *
+ * <p>Each phase of the generation is timed in the {@link MappingInfo} and recorded as a {@link
+ * MappingGenerationPhase} flight event.
+ *
  * @author ActiveViam
  */
 public class MappingGenerator {
 
-  private static final String DUPLICATE_VALUE = "";
+  /** The remote repository the missing versions are fetched from. */
+  private static final String REMOTE = "origin";
+
+  /**
+   * Version of the generation rules, to increment each time a change of the generation changes its
+   * results, which invalidates the {@link MappingCache}.
+   */
+  static final int RULES_VERSION = 1;
 
   private final Repository repository;
 
@@ -50,45 +72,164 @@ public class MappingGenerator {
 
   private final RevCommit targetCommit;
 
+  private final TargetTreeIndex targetIndex;
+
   private final MappingInfo mappingInfo;
 
+  private final String repositoryPath;
+
+  private final int renameLimit;
+
+  /** The directory of the {@link MappingCache}, or {@code null} if it is disabled. */
+  private final Path cacheDirectory;
+
   private Mapping mapping = null;
 
-  /** Generates a {@link Mapping} from the given repository between the two given versions. */
+  /**
+   * Generates a {@link Mapping} from the given repository between the two given versions, or gets
+   * it from the default {@link MappingCache} of the repository.
+   */
   public static Mapping generateMapping(
       final String repositoryPath, final String currentVersion, final String targetVersion) {
-    final MappingGenerator generator =
-        new MappingGenerator(repositoryPath, currentVersion, targetVersion);
-
-    final Map<String, String> hardcodedMapping =
-        HardCodedMapping.loadHardcodedMapping(repositoryPath, targetVersion);
+    return generateMapping(
+        repositoryPath, currentVersion, targetVersion, RenamePairing.REPOSITORY_RENAME_LIMIT);
+  }
 
-    final Duration executionTime =
-        MigrationUtils.runAndGetTime(() -> generator.computeMapping(hardcodedMapping));
-    generator.mappingInfo.setExecutionTime(executionTime);
+  /**
+   * Generates a {@link Mapping} from the given repository between the two given versions, or gets
+   * it from the default {@link MappingCache} of the repository.
+   *
+   * @param renameLimit the maximal number of added or deleted files compared by content similarity,
+   *     {@code 0} for no limit, or a negative value to use the {@code diff.renameLimit} of the
+   *     repository
+   */
+  public static Mapping generateMapping(
+      final String repositoryPath,
+      final String currentVersion,
+      final String targetVersion,
+      final int renameLimit) {
+    return generateMapping(
+        repositoryPath,
+        currentVersion,
+        targetVersion,
+        renameLimit,
+        getDefaultCacheDirectory(repositoryPath));
+  }
 
-    return generator.mapping;
+  /**
+   * Returns the default directory of the {@link MappingCache} of the given repository, inside its
+   * git directory.
+   *
+   * @return the directory, or {@code null} if the path is not in a git repository
+   */
+  public static Path getDefaultCacheDirectory(final String repositoryPath) {
+    return MappingCache.getDefaultCacheDirectory(repositoryPath);
   }
 
-  private MappingGenerator(
-      final String repositoryPath, final String currentVersion, final String targetVersion) {
-    // Get repository
-    this.repository = getRepository(repositoryPath);
+  /**
+   * Generates a {@link Mapping} from the given repository between the two given versions, or gets
+   * it from the {@link MappingCache} in the given directory.
+   *
+   * @param renameLimit the maximal number of added or deleted files compared by content similarity,
+   *     {@code 0} for no limit, or a negative value to use the {@code diff.renameLimit} of the
+   *     repository
+   * @param cacheDirectory the directory of the cache, or {@code null} to disable it
+   */
+  public static Mapping generateMapping(
+      final String repositoryPath,
+      final String currentVersion,
+      final String targetVersion,
+      final int renameLimit,
+      final Path cacheDirectory) {
+    return generateMappings(
+            repositoryPath, List.of(currentVersion), targetVersion, renameLimit, cacheDirectory)
+        .get(0);
+  }
 
-    // Fetch versions if needed
-    fetchIfNeeded(this.repository, repositoryPath, currentVersion);
-    fetchIfNeeded(this.repository, repositoryPath, targetVersion);
+  /**
+   * Generates the {@link Mapping mappings} from the given repository between each of the given
+   * current versions and the target version, or gets them from the {@link MappingCache} in the
+   * given directory.
+   *
+   * <p>The repository is opened, the target version is resolved and its tree is {@link
+   * TargetTreeIndex indexed} once, then the current versions are compared to it in parallel.
+   *
+   * @param renameLimit the maximal number of added or deleted files compared by content similarity,
+   *     {@code 0} for no limit, or a negative value to use the {@code diff.renameLimit} of the
+   *     repository
+   * @param cacheDirectory the directory of the cache, or {@code null} to disable it
+   * @return the mappings, in the order of the current versions
+   */
+  public static List<Mapping> generateMappings(
+      final String repositoryPath,
+      final List<String> currentVersions,
+      final String targetVersion,
+      final int renameLimit,
+      final Path cacheDirectory) {
+    final Repository repository = getRepository(repositoryPath);
+    // Fetch all the missing versions at once
+    fetchIfNeeded(
+        repository,
+        repositoryPath,
+        Stream.concat(Stream.of(targetVersion), currentVersions.stream()).distinct().toList());
+    final RevCommit targetCommit = getRevCommit(repository, targetVersion);
+    // Only walked if a mapping is not cached
+    final TargetTreeIndex targetIndex =
+        new TargetTreeIndex(repository, targetCommit.getTree().getId());
+    final Map<String, String> hardcodedMapping =
+        HardCodedMapping.loadHardcodedMapping(repositoryPath, targetVersion);
 
-    // Get commit ids
-    this.currentCommit = getRevCommit(this.repository, currentVersion);
-    this.targetCommit = getRevCommit(this.repository, targetVersion);
+    final List<MappingGenerator> generators =
+        currentVersions.stream()
+            .map(
+                currentVersion ->
+                    new MappingGenerator(
+                        repository,
+                        repositoryPath,
+                        currentVersion,
+                        getRevCommit(repository, currentVersion),
+                        targetVersion,
+                        targetCommit,
+                        targetIndex,
+                        renameLimit,
+                        cacheDirectory))
+            .toList();
+
+    return generators.parallelStream()
+        .map(generator -> generator.generateMapping(hardcodedMapping))
+        .toList();
+  }
 
-    // Initialize mapping info
+  private MappingGenerator(
+      final Repository repository,
+      final String repositoryPath,
+      final String currentVersion,
+      final RevCommit currentCommit,
+      final String targetVersion,
+      final RevCommit targetCommit,
+      final TargetTreeIndex targetIndex,
+      final int renameLimit,
+      final Path cacheDirectory) {
+    this.repository = repository;
+    this.repositoryPath = repositoryPath;
+    this.currentCommit = currentCommit;
+    this.targetCommit = targetCommit;
+    this.targetIndex = targetIndex;
+    this.renameLimit = Math.max(renameLimit, RenamePairing.REPOSITORY_RENAME_LIMIT);
+    this.cacheDirectory = cacheDirectory;
     this.mappingInfo =
         new MappingInfo(
             MigrationUtils.getFileOrDirectoryName(repositoryPath), currentVersion, targetVersion);
   }
 
+  /** Generates the {@link Mapping} and records its execution time. */
+  private Mapping generateMapping(final Map<String, String> hardcodedMapping) {
+    final Duration executionTime =
+        MigrationUtils.runAndGetTime(() -> computeMapping(hardcodedMapping));
+    this.mappingInfo.setExecutionTime(executionTime);
+    return this.mapping;
+  }
+
   static Repository getRepository(final String repositoryPath) {
     try {
       return new FileRepositoryBuilder()
@@ -103,21 +244,41 @@ public class MappingGenerator {
   /**
    * Fetches the given version in the remote repository if it cannot be found locally.
    *
-   * <p>Tries to fetch it as a tag first and then as a branch.
+   * @see #fetchIfNeeded(Repository, String, List)
    */
   static void fetchIfNeeded(
       final Repository repository, final String repositoryPath, final String version) {
-    if (isLocallyAbsent(repository, version)) {
-      fetchTag(repositoryPath, version);
-    }
-    if (isLocallyAbsent(repository, version)) {
-      fetchBranch(repositoryPath, version);
+    fetchIfNeeded(repository, repositoryPath, List.of(version));
+  }
+
+  /**
+   * Fetches the given versions in the remote repository if they cannot be found locally.
+   *
+   * <p>Each version is fetched as a tag if the remote repository has one with this name, and as a
+   * branch otherwise. All the missing versions are fetched in a single fetch, and only them.
+   */
+  static void fetchIfNeeded(
+      final Repository repository, final String repositoryPath, final List<String> versions) {
+    final MappingGenerationPhase event = new MappingGenerationPhase();
+    event.begin();
+    final List<String> absentVersions =
+        versions.stream().filter(version -> isLocallyAbsent(repository, version)).toList();
+    final int fetches = absentVersions.isEmpty() ? 0 : fetchVersions(repository, absentVersions);
+    event.end();
+    if (event.shouldCommit()) {
+      event.phase = "fetch";
+      event.repository = repositoryPath;
+      event.version = String.join(",", versions);
+      event.count = fetches;
+      event.commit();
     }
-    if (isLocallyAbsent(repository, version)) {
-      throw new RuntimeException(
-          "Version "
-              + version
-              + " cannot be found locally and remotely. Try to use a tag or branch name.");
+    for (final String version : absentVersions) {
+      if (isLocallyAbsent(repository, version)) {
+        throw new RuntimeException(
+            "Version "
+                + version
+                + " cannot be found locally and remotely. Try to use a tag or branch name.");
+      }
     }
   }
 
@@ -130,20 +291,36 @@ public class MappingGenerator {
     }
   }
 
-  /** Fetches the given tag (and only this one) in the given repository. */
-  private static void fetchTag(final String repositoryPath, final String tagName) {
-    final String[] commandToFetchTag = {
-      "git", "fetch", "origin", "--no-tags", "refs/tags/" + tagName + ":refs/tags/" + tagName
-    };
-    MigrationUtils.executeCommandLine(repositoryPath, false, commandToFetchTag);
-  }
-
-  /** Fetches the given branch (and only this one) in the given repository. */
-  private static void fetchBranch(final String repositoryPath, final String branchName) {
-    final String[] commandToFetchBranch = {
-      "git", "fetch", "origin", "+" + branchName + ":" + branchName
-    };
-    MigrationUtils.executeCommandLine(repositoryPath, false, commandToFetchBranch);
+  /**
+   * Fetches the tags or branches of the given names (and only these ones) from the remote
+   * repository.
+   *
+   * @return the number of fetched references
+   */
+  private static int fetchVersions(final Repository repository, final List<String> versions) {
+    try (final Git git = Git.wrap(repository)) {
+      // Only the references are listed, to know whether each version is a tag or a branch
+      final Set<String> remoteRefs =
+          git.lsRemote().setRemote(REMOTE).call().stream()
+              .map(Ref::getName)
+              .collect(Collectors.toSet());
+      final List<RefSpec> refSpecs = new ArrayList<>();
+      for (final String version : versions) {
+        final String tag = Constants.R_TAGS + version;
+        final String branch = Constants.R_HEADS + version;
+        if (remoteRefs.contains(tag)) {
+          refSpecs.add(new RefSpec(tag + ":" + tag));
+        } else if (remoteRefs.contains(branch)) {
+          refSpecs.add(new RefSpec(branch + ":" + branch).setForceUpdate(true));
+        }
+      }
+      if (!refSpecs.isEmpty()) {
+        git.fetch().setRemote(REMOTE).setRefSpecs(refSpecs).setTagOpt(TagOpt.NO_TAGS).call();
+      }
+      return refSpecs.size();
+    } catch (final GitAPIException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   /**
@@ -170,131 +347,77 @@ public class MappingGenerator {
   }
 
   private void computeMapping(final Map<String, String> hardcodedMapping) {
-    final List<DiffEntry> diffEntries = getDiffEntries();
-    final Map<String, String> map = computeMap(diffEntries);
-    final Map<String, String> postProcessedMapping = postProcessMapping(map);
-    postProcessedMapping.putAll(hardcodedMapping);
-    this.mapping = new Mapping(postProcessedMapping, this.mappingInfo);
-  }
-
-  /** Returns all the {@link DiffEntry} between the two given commits. */
-  private List<DiffEntry> getDiffEntries() {
-    try (final ObjectReader reader = this.repository.newObjectReader()) {
-      final AbstractTreeIterator currentTreeIterator =
-          getTreeIterator(reader, this.currentCommit.getTree().getId());
-      final AbstractTreeIterator targetTreeIterator =
-          getTreeIterator(reader, this.targetCommit.getTree().getId());
-      try (final DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-        diffFormatter.setRepository(this.repository);
-        diffFormatter.setDetectRenames(true);
-        return diffFormatter.scan(currentTreeIterator, targetTreeIterator);
-      } catch (final IOException e) {
-        throw new RuntimeException(e);
+    final MappingCache cache =
+        this.cacheDirectory == null
+            ? null
+            : runPhase(
+                "readCache",
+                () ->
+                    MappingCache.load(
+                        this.cacheDirectory,
+                        this.currentCommit.getTree().getId(),
+                        this.targetCommit.getTree().getId(),
+                        this.renameLimit),
+                loaded -> loaded.getPairs() == null ? 0 : loaded.getPairs().size());
+    final Map<String, String> pairs;
+    if (cache != null && cache.getPairs() != null) {
+      pairs = cache.getPairs();
+    } else {
+      pairs = computePairs();
+      if (cache != null) {
+        cache.save(pairs);
       }
     }
+    final Map<String, String> postProcessedMapping =
+        runPhase("postProcessMapping", () -> postProcessMapping(pairs), Map::size);
+    postProcessedMapping.putAll(hardcodedMapping);
+    this.mapping = new Mapping(postProcessedMapping, this.mappingInfo);
   }
 
-  private static AbstractTreeIterator getTreeIterator(
-      final ObjectReader reader, final ObjectId id) {
-    final CanonicalTreeParser treeIterator = new CanonicalTreeParser();
-    try {
-      treeIterator.reset(reader, id);
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
-    }
-    return treeIterator;
-  }
-
-  private static Map<String, String> computeMap(final List<DiffEntry> diffEntries) {
-    final Map<String, String> result = new HashMap<>();
-    final Map<String, String> addedFiles = new HashMap<>();
-    final Map<String, String> deletedFiles = new HashMap<>();
-
-    for (final DiffEntry diffEntry : diffEntries) {
-      if (skipDiffEntry(diffEntry)) {
-        continue;
-      }
-
-      switch (diffEntry.getChangeType()) {
-        case ADD:
-          putIfAbsentOrReplaceWithDuplicateValue(diffEntry.getNewPath(), addedFiles);
-          break;
-        case DELETE:
-          putIfAbsentOrReplaceWithDuplicateValue(diffEntry.getOldPath(), deletedFiles);
-          break;
-        case RENAME, COPY:
-          result.put(diffEntry.getOldPath(), diffEntry.getNewPath());
-          break;
-        default:
-          throw new IllegalStateException("Unrecognized change type: " + diffEntry.getChangeType());
-      }
-    }
-
-    // Put files that have been deleted then added in the result map
-    // Iterate on the smallest map
-    if (addedFiles.size() < deletedFiles.size()) {
-      addedFiles.forEach(
-          (fileName, newPath) -> {
-            final String oldPath;
-            if (deletedFiles.containsKey(fileName)
-                && !newPath.equals(DUPLICATE_VALUE)
-                && !(oldPath = deletedFiles.get(fileName)).equals(DUPLICATE_VALUE)) {
-              result.put(oldPath, newPath);
-            }
-          });
-    } else {
-      deletedFiles.forEach(
-          (fileName, oldPath) -> {
-            final String newPath;
-            if (addedFiles.containsKey(fileName)
-                && !oldPath.equals(DUPLICATE_VALUE)
-                && !(newPath = addedFiles.get(fileName)).equals(DUPLICATE_VALUE)) {
-              result.put(oldPath, newPath);
-            }
-          });
-    }
-
-    return result;
+  /** Returns the moved files, from their old path to their new path. */
+  private Map<String, String> computePairs() {
+    final List<DiffEntry> diffEntries =
+        runPhase("getDiffEntries", this::getDiffEntries, List::size);
+    final RenamePairing pairing = new RenamePairing(this.targetIndex, diffEntries);
+    // Pair the cheapest moves first so that only the leftovers are compared by content
+    runPhase("pairExactContents", pairing::pairExactContents, Integer::intValue);
+    runPhase("pairUniqueNames", pairing::pairUniqueNames, Integer::intValue);
+    runPhase(
+        "pairSimilarContents",
+        () -> pairing.pairSimilarContents(this.repository, this.renameLimit),
+        Integer::intValue);
+    return pairing.getPairs();
   }
 
   /**
-   * Returns whether a {@link DiffEntry} can be skipped in order to compute the map.
+   * Runs the given phase, records its time in the {@link MappingInfo} and as a flight event.
    *
-   * <p>An entry can be skipped if:
-   *
-   * <ul>
-   *   <li>It represents a modified file.
-   *   <li>It is not a java file.
-   *   <li>The path does not contain {@link MigrationUtils#MAIN_DIRECTORY}.
-   * </ul>
+   * @param counter the number of elements of the result of the phase
    */
-  private static boolean skipDiffEntry(final DiffEntry diffEntry) {
-    if (diffEntry.getChangeType() == ChangeType.MODIFY) {
-      return true;
+  private <T> T runPhase(
+      final String phase, final Supplier<T> body, final ToIntFunction<? super T> counter) {
+    final MappingGenerationPhase event = new MappingGenerationPhase();
+    event.begin();
+    final long start = System.nanoTime();
+    final T result = body.get();
+    this.mappingInfo.addPhaseTime(phase, Duration.ofNanos(System.nanoTime() - start));
+    event.end();
+    if (event.shouldCommit()) {
+      event.phase = phase;
+      event.repository = this.repositoryPath;
+      event.version = this.currentCommit.getName() + ".." + this.targetCommit.getName();
+      event.count = counter.applyAsInt(result);
+      event.commit();
     }
-
-    final Side side =
-        switch (diffEntry.getChangeType()) {
-          case ADD, RENAME, COPY -> Side.NEW;
-          case DELETE -> Side.OLD;
-          default ->
-              throw new IllegalStateException(
-                  "Unrecognized change type: " + diffEntry.getChangeType());
-        };
-
-    return !diffEntry.getMode(side).equals(FileMode.REGULAR_FILE)
-        || !diffEntry.getPath(side).endsWith(MigrationUtils.JAVA_SUFFIX)
-        || !diffEntry.getPath(side).contains(MigrationUtils.MAIN_DIRECTORY);
+    return result;
   }
 
-  private static void putIfAbsentOrReplaceWithDuplicateValue(
-      final String path, final Map<String, String> map) {
-    final String fileName = MigrationUtils.getFileOrDirectoryName(path);
-    if (map.containsKey(fileName)) {
-      map.put(fileName, DUPLICATE_VALUE);
-    } else {
-      map.put(fileName, path);
-    }
+  /**
+   * Returns the {@link DiffEntry entries} of the files deleted from the current tree and added to
+   * the target tree, the current tree only being walked.
+   */
+  private List<DiffEntry> getDiffEntries() {
+    return this.targetIndex.diff(this.currentCommit.getTree().getId());
   }
 
   /**
@@ -9,6 +9,7 @@ package com.activeviam.mapping.private_;
 
 import com.activeviam.util.private_.MigrationUtils;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -27,6 +28,9 @@ public class MappingInfo {
 
   private Duration executionTime;
 
+  /** The time of each phase of the generation, in their execution order. */
+  private final Map<String, Duration> phaseTimes = new LinkedHashMap<>();
+
   private final Map<String, ModuleInfo> moduleInfos = new TreeMap<>();
 
   /** Constructor. */
@@ -57,6 +61,16 @@ public class MappingInfo {
     this.executionTime = executionTime;
   }
 
+  /** Adds the time it took to run the given phase of the generation. */
+  void addPhaseTime(final String phase, final Duration time) {
+    this.phaseTimes.merge(phase, time, Duration::plus);
+  }
+
+  /** Returns the time of each phase of the generation, in their execution order. */
+  public Map<String, Duration> getPhaseTimes() {
+    return this.phaseTimes;
+  }
+
   void process(final String oldPath, final String newPath) {
     final String oldModule = MigrationUtils.extractModuleName(oldPath);
     final String newModule = MigrationUtils.extractModuleName(newPath);
@@ -131,12 +145,19 @@ public class MappingInfo {
             .append(MigrationUtils.LINE_SEPARATOR)
             .append("Total execution time: ")
             .append(this.executionTime)
-            .append(MigrationUtils.LINE_SEPARATOR)
-            .append("Impacted modules: ")
-            .append(this.moduleInfos.size())
-            .append(MigrationUtils.LINE_SEPARATOR)
-            .append("\tmodule name | impacted files number (in/out)")
             .append(MigrationUtils.LINE_SEPARATOR);
+    this.phaseTimes.forEach(
+        (phase, time) ->
+            sb.append("\tTime in ")
+                .append(phase)
+                .append(": ")
+                .append(time)
+                .append(MigrationUtils.LINE_SEPARATOR));
+    sb.append("Impacted modules: ")
+        .append(this.moduleInfos.size())
+        .append(MigrationUtils.LINE_SEPARATOR)
+        .append("\tmodule name | impacted files number (in/out)")
+        .append(MigrationUtils.LINE_SEPARATOR);
     this.moduleInfos.values().stream()
         .map(ModuleInfo::toString)
         .forEach(
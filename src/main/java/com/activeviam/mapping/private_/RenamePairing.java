@@ -0,0 +1,207 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Pairs the files deleted and added between two versions, the deleted file being moved or renamed
+ * to the added one.
+ *
+ * <p>Files are paired by stages, from the cheapest to the most expensive, each stage only working
+ * on the files left by the previous ones:
+ *
+ * <ol>
+ *   <li>{@link #pairExactContents() exact contents}: a deleted and an added file with the same blob
+ *       id, which no other file has
+ *   <li>{@link #pairUniqueNames() unique names}: a deleted and an added file with the same name,
+ *       which no other deleted or added file has
+ *   <li>{@link #pairSimilarContents(Repository, int) similar contents}: the rename detection of
+ *       JGit, which compares the contents of all the remaining deleted and added files
+ * </ol>
+ *
+ * <p>The first two stages are hash joins, linear in the number of files, so that the quadratic
+ * similarity scoring only sees the files whose move changed both their name and their content. The
+ * added files are joined through the groups of the {@link TargetTreeIndex}, which are shared by the
+ * pairings of all the current versions.
+ *
+ * @author ActiveViam
+ */
+final class RenamePairing {
+
+  /** Rename limit meaning that the one of the repository configuration is used. */
+  static final int REPOSITORY_RENAME_LIMIT = -1;
+
+  private final TargetTreeIndex targetIndex;
+
+  private final List<DiffEntry> deletedFiles = new ArrayList<>();
+
+  /** The added files, by new path. */
+  private final Map<String, DiffEntry> addedFiles = new LinkedHashMap<>();
+
+  /** The paired files, from the old path to the new path. */
+  private final Map<String, String> pairs = new HashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param targetIndex the index of the target tree the files are added to
+   * @param entries the {@link TargetTreeIndex#diff(org.eclipse.jgit.lib.ObjectId) deleted and added
+   *     files}
+   */
+  RenamePairing(final TargetTreeIndex targetIndex, final List<DiffEntry> entries) {
+    this.targetIndex = targetIndex;
+    for (final DiffEntry entry : entries) {
+      switch (entry.getChangeType()) {
+        case ADD -> this.addedFiles.put(entry.getNewPath(), entry);
+        case DELETE -> this.deletedFiles.add(entry);
+        default ->
+            throw new IllegalStateException("Unexpected change type: " + entry.getChangeType());
+      }
+    }
+  }
+
+  /**
+   * Pairs the deleted and added files whose blob id is unique among the deleted and the added
+   * files.
+   *
+   * @return the number of files paired by this stage
+   */
+  int pairExactContents() {
+    return pairUniqueKeys(
+        entry -> entry.getOldId().toObjectId(), this.targetIndex::getPathsWithBlobId);
+  }
+
+  /**
+   * Pairs the deleted and added files whose name is unique among the deleted and the added files.
+   *
+   * @return the number of files paired by this stage
+   */
+  int pairUniqueNames() {
+    return pairUniqueKeys(
+        entry -> MigrationUtils.getFileOrDirectoryName(entry.getOldPath()),
+        this.targetIndex::getPathsWithName);
+  }
+
+  /**
+   * Pairs the remaining files with the content similarity rename detection of JGit.
+   *
+   * @param renameLimit the maximal number of added or deleted files compared, {@code 0} for no
+   *     limit, or {@link #REPOSITORY_RENAME_LIMIT} to use the {@code diff.renameLimit} of the
+   *     repository
+   * @return the number of files paired by this stage
+   */
+  int pairSimilarContents(final Repository repository, final int renameLimit) {
+    if (this.deletedFiles.isEmpty() || this.addedFiles.isEmpty()) {
+      return 0;
+    }
+    final RenameDetector detector = new RenameDetector(repository);
+    if (renameLimit != REPOSITORY_RENAME_LIMIT) {
+      detector.setRenameLimit(renameLimit);
+    }
+    detector.addAll(this.deletedFiles);
+    detector.addAll(this.addedFiles.values());
+    final List<DiffEntry> entries;
+    try {
+      entries = detector.compute();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+
+    this.deletedFiles.clear();
+    this.addedFiles.clear();
+    int pairCount = 0;
+    for (final DiffEntry entry : entries) {
+      switch (entry.getChangeType()) {
+        case ADD -> this.addedFiles.put(entry.getNewPath(), entry);
+        case DELETE -> this.deletedFiles.add(entry);
+        case RENAME, COPY -> {
+          this.pairs.put(entry.getOldPath(), entry.getNewPath());
+          ++pairCount;
+        }
+        default ->
+            throw new IllegalStateException("Unrecognized change type: " + entry.getChangeType());
+      }
+    }
+    return pairCount;
+  }
+
+  /** Returns the paired files, from the old path to the new path. */
+  Map<String, String> getPairs() {
+    return this.pairs;
+  }
+
+  /**
+   * Pairs the deleted and added files with the same key, if no other deleted or added file has it.
+   *
+   * @param targetPaths the files of the target tree with a key, among which the added ones are
+   *     looked for
+   * @return the number of files paired
+   */
+  private <K> int pairUniqueKeys(
+      final Function<DiffEntry, K> deletedKey, final Function<K, List<String>> targetPaths) {
+    final Map<K, DiffEntry> deletedByKey = indexUniqueKeys(this.deletedFiles, deletedKey);
+    int pairCount = 0;
+    for (final Map.Entry<K, DiffEntry> deleted : deletedByKey.entrySet()) {
+      final String added = findUniqueAddedFile(targetPaths.apply(deleted.getKey()));
+      if (added != null) {
+        this.pairs.put(deleted.getValue().getOldPath(), added);
+        // No other deleted file has its key, so that the next keys are still unique without it
+        this.addedFiles.remove(added);
+        ++pairCount;
+      }
+    }
+    this.deletedFiles.removeIf(deleted -> this.pairs.containsKey(deleted.getOldPath()));
+    return pairCount;
+  }
+
+  /**
+   * Returns the only added file among the given files of the target tree.
+   *
+   * @return the added file, or {@code null} if none or several of the files are added
+   */
+  private String findUniqueAddedFile(final List<String> targetPaths) {
+    String added = null;
+    for (final String path : targetPaths) {
+      if (this.addedFiles.containsKey(path)) {
+        if (added != null) {
+          return null;
+        }
+        added = path;
+      }
+    }
+    return added;
+  }
+
+  /** Indexes the given files by key, leaving out the keys of several files. */
+  private static <K> Map<K, DiffEntry> indexUniqueKeys(
+      final List<DiffEntry> files, final Function<DiffEntry, K> key) {
+    final Map<K, DiffEntry> index = new HashMap<>();
+    final Set<K> duplicateKeys = new HashSet<>();
+    for (final DiffEntry file : files) {
+      final K fileKey = key.apply(file);
+      if (index.putIfAbsent(fileKey, file) != null) {
+        duplicateKeys.add(fileKey);
+      }
+    }
+    index.keySet().removeAll(duplicateKeys);
+    return index;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Index of the java files of the main sources of the target version, shared by the {@link
+ * MappingGenerator MappingGenerators} comparing several current versions to it.
+ *
+ * <p>The target tree is walked once, the first time a current version is {@link #diff(ObjectId)
+ * compared} to it. Each comparison then only walks the current tree, the files of the target being
+ * looked up in the index. The index also groups the files by blob id and by name, for the hash
+ * joins of the {@link RenamePairing}.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class TargetTreeIndex {
+
+  private final Repository repository;
+
+  private final ObjectId treeId;
+
+  /** The paths of the files of any mode, to know which files of a current version still exist. */
+  private Set<String> paths;
+
+  /** The ids of the regular files, which can be added, in the order of the tree. */
+  private Map<String, ObjectId> regularFiles;
+
+  private Map<ObjectId, List<String>> pathsByBlobId;
+
+  private Map<String, List<String>> pathsByName;
+
+  /**
+   * Constructor.
+   *
+   * @param treeId the id of the tree of the target version
+   */
+  TargetTreeIndex(final Repository repository, final ObjectId treeId) {
+    this.repository = repository;
+    this.treeId = treeId;
+  }
+
+  /**
+   * Returns the regular files deleted from the given current tree and added to the target tree.
+   *
+   * <p>The files whose mode only changed are neither deleted nor added.
+   */
+  List<DiffEntry> diff(final ObjectId currentTreeId) {
+    indexIfNeeded();
+    final List<DiffEntry> entries = new ArrayList<>();
+    final Set<String> currentPaths = new HashSet<>();
+    try (final TreeWalk walk = newTreeWalk(currentTreeId)) {
+      while (walk.next()) {
+        if (isFile(walk)) {
+          final String path = walk.getPathString();
+          currentPaths.add(path);
+          if (!this.paths.contains(path) && FileMode.REGULAR_FILE.equals(walk.getRawMode(0))) {
+            entries.add(new FileEntry(DiffEntry.ChangeType.DELETE, path, walk.getObjectId(0)));
+          }
+        }
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    this.regularFiles.forEach(
+        (path, id) -> {
+          if (!currentPaths.contains(path)) {
+            entries.add(new FileEntry(DiffEntry.ChangeType.ADD, path, id));
+          }
+        });
+    return entries;
+  }
+
+  /** Returns the regular files of the target tree with the given blob id. */
+  List<String> getPathsWithBlobId(final AnyObjectId blobId) {
+    return this.pathsByBlobId.getOrDefault(blobId, List.of());
+  }
+
+  /** Returns the regular files of the target tree with the given name. */
+  List<String> getPathsWithName(final String name) {
+    return this.pathsByName.getOrDefault(name, List.of());
+  }
+
+  /** Walks the target tree, unless it is already indexed. */
+  private synchronized void indexIfNeeded() {
+    if (this.paths != null) {
+      return;
+    }
+    final Set<String> targetPaths = new HashSet<>();
+    final Map<String, ObjectId> targetRegularFiles = new LinkedHashMap<>();
+    final Map<ObjectId, List<String>> targetPathsByBlobId = new HashMap<>();
+    final Map<String, List<String>> targetPathsByName = new HashMap<>();
+    try (final TreeWalk walk = newTreeWalk(this.treeId)) {
+      while (walk.next()) {
+        if (isFile(walk)) {
+          final String path = walk.getPathString();
+          targetPaths.add(path);
+          if (FileMode.REGULAR_FILE.equals(walk.getRawMode(0))) {
+            final ObjectId id = walk.getObjectId(0);
+            targetRegularFiles.put(path, id);
+            targetPathsByBlobId.computeIfAbsent(id, key -> new ArrayList<>(1)).add(path);
+            targetPathsByName
+                .computeIfAbsent(
+                    MigrationUtils.getFileOrDirectoryName(path), key -> new ArrayList<>(1))
+                .add(path);
+          }
+        }
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+    this.regularFiles = targetRegularFiles;
+    this.pathsByBlobId = targetPathsByBlobId;
+    this.pathsByName = targetPathsByName;
+    // Set last, as the marker of a complete index
+    this.paths = targetPaths;
+  }
+
+  private TreeWalk newTreeWalk(final ObjectId tree) throws IOException {
+    final TreeWalk walk = new TreeWalk(this.repository);
+    try {
+      walk.addTree(tree);
+      walk.setFilter(JavaSourceTreeFilter.INSTANCE);
+      walk.setRecursive(true);
+    } catch (final IOException e) {
+      walk.close();
+      throw e;
+    }
+    return walk;
+  }
+
+  /** Whether the current entry of the given walk is a file, whatever its mode. */
+  private static boolean isFile(final TreeWalk walk) {
+    return walk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB;
+  }
+
+  /**
+   * Entry of a file deleted from the current tree or added to the target tree.
+   *
+   * @author ActiveViam
+   */
+  private static final class FileEntry extends DiffEntry {
+
+    private static final AbbreviatedObjectId ZERO_ID =
+        AbbreviatedObjectId.fromObjectId(ObjectId.zeroId());
+
+    private FileEntry(final ChangeType changeType, final String path, final ObjectId id) {
+      final boolean deleted = changeType == ChangeType.DELETE;
+      this.changeType = changeType;
+      this.oldPath = deleted ? path : DEV_NULL;
+      this.newPath = deleted ? DEV_NULL : path;
+      this.oldMode = deleted ? FileMode.REGULAR_FILE : FileMode.MISSING;
+      this.newMode = deleted ? FileMode.MISSING : FileMode.REGULAR_FILE;
+      this.oldId = deleted ? AbbreviatedObjectId.fromObjectId(id) : ZERO_ID;
+      this.newId = deleted ? ZERO_ID : AbbreviatedObjectId.fromObjectId(id);
+    }
+  }
+}
@@ -8,13 +8,23 @@
 package com.activeviam.migration.api;
 
 import com.activeviam.mapping.private_.CsvMapping;
-import com.activeviam.migration.private_.ApiChecker;
-import com.activeviam.migration.private_.FileMigrater;
-import com.activeviam.migration.private_.PatternMatcherInfo;
+import com.activeviam.migration.private_.ExecutionSettings;
+import com.activeviam.migration.private_.ExecutionSettings.IoThreadMode;
+import com.activeviam.migration.private_.MatchingSettings;
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import com.activeviam.migration.private_.MigrationCache;
+import com.activeviam.migration.private_.MigrationPipeline;
+import com.activeviam.migration.private_.MigrationPipeline.MigrationResult;
+import com.activeviam.migration.private_.RunMetrics;
+import com.activeviam.util.private_.CommandLineOptions;
+import com.activeviam.util.private_.FlightRecording;
+import com.activeviam.util.private_.JavaFileFinder;
 import com.activeviam.util.private_.MigrationUtils;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,15 +46,130 @@ public final class MigrationApplication {
   /** Default name of the bumped library. */
   public static final String DEFAULT_LIBRARY = "activepivot";
 
+  /** Option to set the {@link MatchingEngine engine} searching file contents. */
+  private static final String ENGINE_OPTION = "engine";
+
+  /** Option to leave comments unchanged, with the lexer engine. */
+  private static final String SKIP_COMMENTS_OPTION = "skip-comments";
+
+  /** Option to leave string and character literals unchanged, with the lexer engine. */
+  private static final String SKIP_STRINGS_OPTION = "skip-strings";
+
+  /** Option to set the directory of the {@link MigrationCache}. */
+  private static final String CACHE_DIRECTORY_OPTION = "cache-dir";
+
+  /** Option to disable the {@link MigrationCache}. */
+  private static final String NO_CACHE_OPTION = "no-cache";
+
+  /** Option to set the number of threads reading files. */
+  private static final String READ_THREADS_OPTION = "read-threads";
+
+  /** Option to set the number of threads migrating and checking file contents. */
+  private static final String PROCESS_THREADS_OPTION = "process-threads";
+
+  /** Option to set the number of threads writing migrated files. */
+  private static final String WRITE_THREADS_OPTION = "write-threads";
+
+  /** Option to set the {@link IoThreadMode kind of threads} reading and writing files. */
+  private static final String IO_THREADS_OPTION = "io-threads";
+
+  /** Option to set the maximal number of files waiting in front of each stage. */
+  private static final String QUEUE_CAPACITY_OPTION = "queue-capacity";
+
+  /** Option to set the size in KiB from which files are processed in chunks. */
+  private static final String CHUNKED_FILE_SIZE_OPTION = "chunked-file-size";
+
+  /** Option to set the size in KiB of the chunks of the files processed in chunks. */
+  private static final String CHUNK_SIZE_OPTION = "chunk-size";
+
+  /** Number of bytes of a KiB, the unit of the sizes given as options. */
+  private static final int KIB = 1024;
+
+  /** Option to write the {@link RunMetrics performance metrics} of the run to a JSON file. */
+  private static final String METRICS_OPTION = "metrics";
+
+  /** Option to record the run with Java Flight Recorder in a file. */
+  private static final String JFR_OPTION = "jfr";
+
+  /** Option to set the globs of the files to migrate. */
+  private static final String INCLUDE_OPTION = "include";
+
+  /** Option to set the globs of the files and directories not to migrate. */
+  private static final String EXCLUDE_OPTION = "exclude";
+
+  /** Option to only migrate the files added or modified since a git reference. */
+  private static final String SINCE_OPTION = "since";
+
+  private static final Set<String> OPTIONS =
+      Set.of(
+          INCLUDE_OPTION,
+          EXCLUDE_OPTION,
+          SINCE_OPTION,
+          ENGINE_OPTION,
+          SKIP_COMMENTS_OPTION,
+          SKIP_STRINGS_OPTION,
+          CACHE_DIRECTORY_OPTION,
+          NO_CACHE_OPTION,
+          READ_THREADS_OPTION,
+          PROCESS_THREADS_OPTION,
+          WRITE_THREADS_OPTION,
+          IO_THREADS_OPTION,
+          QUEUE_CAPACITY_OPTION,
+          CHUNKED_FILE_SIZE_OPTION,
+          CHUNK_SIZE_OPTION,
+          METRICS_OPTION,
+          JFR_OPTION);
+
   /**
    * Migrates class imports in your java project.
    *
-   * @param args specifies the path of the project to migrate if length 1, specifies project path
-   *     and current version if length 2, specifies project path and current and target versions if
-   *     length 3, specifies project, versions and library name if length 4
+   * <p>The positional arguments can be mixed with the options:
+   *
+   * <ul>
+   *   <li>{@code --include=<globs>} and {@code --exclude=<globs>} to restrict the files to migrate
+   *       with comma-separated globs relative to the project
+   *   <li>{@code --since=<ref>} to only migrate the files added or modified since this git
+   *       reference
+   *   <li>{@code --engine=<pattern|vector|lexer>} to set the {@link MatchingEngine engine}
+   *       searching file contents, {@code pattern} by default
+   *   <li>{@code --skip-comments} and {@code --skip-strings} to leave comments and string literals
+   *       unchanged, with the {@code lexer} engine
+   *   <li>{@code --cache-dir=<directory>} to set the directory of the cache of already processed
+   *       files, in the git directory of the project by default, and {@code --no-cache} to disable
+   *       this cache
+   *   <li>{@code --read-threads=<count>}, {@code --process-threads=<count>} and {@code
+   *       --write-threads=<count>} to set the number of threads of each stage of the pipeline
+   *   <li>{@code --queue-capacity=<count>} to set the maximal number of files waiting in front of
+   *       each stage
+   *   <li>{@code --io-threads=<platform|virtual>} to set the {@link IoThreadMode kind of threads}
+   *       reading and writing files, {@code platform} by default
+   *   <li>{@code --chunked-file-size=<KiB>} to set the size from which files are processed in
+   *       chunks, and {@code --chunk-size=<KiB>} to set the size of these chunks
+   *   <li>{@code --metrics=<file>} to write the {@link RunMetrics performance metrics} of the run
+   *       to a JSON file
+   *   <li>{@code --jfr=<file>} to record the run with Java Flight Recorder in a file
+   * </ul>
+   *
+   * @param commandLine specifies the path of the project to migrate if length 1, specifies project
+   *     path and current version if length 2, specifies project path and current and target
+   *     versions if length 3, and specifies project, versions and library name if length 4, in
+   *     addition to the options
    */
-  public static void main(final String[] args) {
+  public static void main(final String[] commandLine) {
     // Get arguments
+    final CommandLineOptions options = CommandLineOptions.parse(commandLine, OPTIONS);
+    final FlightRecording recording = FlightRecording.startIfAsked(options, JFR_OPTION);
+    try {
+      migrate(options);
+    } finally {
+      recording.close();
+    }
+
+    System.exit(0);
+  }
+
+  private static void migrate(final CommandLineOptions options) {
+    final String[] args = options.getArguments();
     final String projectPath;
     final String currentVersion;
     final String targetVersion;
@@ -82,24 +207,109 @@ public final class MigrationApplication {
     final Map<String, String> mapping =
         CsvMapping.loadMappingFromFile(libraryName, currentVersion, targetVersion);
 
-    // Get the java files in the project to migrate
-    final List<Path> files = MigrationUtils.getAllJavaFiles(projectPath);
-    LOGGER.log(
-        Level.INFO,
-        () -> "Process migration of " + files.size() + " files in " + projectPath + "...");
+    final MatchingSettings matchingSettings =
+        new MatchingSettings(
+            getEngine(options.getOption(ENGINE_OPTION, "")),
+            !options.hasOption(SKIP_COMMENTS_OPTION),
+            !options.hasOption(SKIP_STRINGS_OPTION));
 
-    // Update class imports in the files
-    final PatternMatcherInfo migrationInfo = FileMigrater.migrateFiles(files, mapping);
+    // Load the cache of the files already processed by previous runs
+    final Path cacheDirectory =
+        options.hasOption(NO_CACHE_OPTION)
+            ? null
+            : options.hasOption(CACHE_DIRECTORY_OPTION)
+                ? Path.of(options.getOption(CACHE_DIRECTORY_OPTION, null))
+                : MigrationCache.getDefaultCacheDirectory(projectPath);
+    final MigrationCache cache =
+        cacheDirectory == null
+            ? null
+            : MigrationCache.load(
+                cacheDirectory,
+                libraryName,
+                currentVersion,
+                targetVersion,
+                mapping,
+                matchingSettings);
 
-    // Print info about the migration
-    LOGGER.log(Level.INFO, migrationInfo::toString);
+    final IoThreadMode ioThreadMode = getIoThreadMode(options.getOption(IO_THREADS_OPTION, ""));
+    final boolean virtualIoThreads = ioThreadMode == IoThreadMode.VIRTUAL;
+    final ExecutionSettings settings =
+        new ExecutionSettings(
+            options.getIntOption(
+                READ_THREADS_OPTION,
+                virtualIoThreads
+                    ? ExecutionSettings.DEFAULT_VIRTUAL_IO_THREADS
+                    : ExecutionSettings.DEFAULT_READ_THREADS),
+            options.getIntOption(PROCESS_THREADS_OPTION, ExecutionSettings.DEFAULT_PROCESS_THREADS),
+            options.getIntOption(
+                WRITE_THREADS_OPTION,
+                virtualIoThreads
+                    ? ExecutionSettings.DEFAULT_VIRTUAL_IO_THREADS
+                    : ExecutionSettings.DEFAULT_WRITE_THREADS),
+            options.getIntOption(QUEUE_CAPACITY_OPTION, ExecutionSettings.DEFAULT_QUEUE_CAPACITY),
+            ioThreadMode,
+            (long) KIB
+                * options.getIntOption(
+                    CHUNKED_FILE_SIZE_OPTION,
+                    (int) (ExecutionSettings.DEFAULT_CHUNKED_FILE_SIZE / KIB)),
+            Math.multiplyExact(
+                KIB,
+                options.getIntOption(
+                    CHUNK_SIZE_OPTION, ExecutionSettings.DEFAULT_CHUNK_SIZE / KIB)));
+
+    final JavaFileFinder finder =
+        new JavaFileFinder(
+            getGlobs(options.getOption(INCLUDE_OPTION, "")),
+            getGlobs(options.getOption(EXCLUDE_OPTION, "")),
+            options.getOption(SINCE_OPTION, null));
 
-    // Check API
-    final String apiCheckInfo = ApiChecker.checkApi(libraryName, files);
+    // Update class imports in the java files of the project and check API in a single pass, while
+    // the files are discovered
+    LOGGER.log(Level.INFO, () -> "Process migration of java files in " + projectPath + "...");
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            finder, projectPath, mapping, libraryName, cache, matchingSettings, settings);
+
+    // Print info about the migration
+    LOGGER.log(Level.INFO, result.getMigrationInfo()::toString);
 
     // Print info about the API check
-    LOGGER.log(Level.INFO, apiCheckInfo);
+    LOGGER.log(Level.INFO, result.getApiCheckReport());
 
-    System.exit(0);
+    // Print the performance metrics, and write them for tools following them across runs
+    LOGGER.log(Level.INFO, result.getMetrics()::toString);
+    if (options.hasOption(METRICS_OPTION)) {
+      final Path metricsFile = Path.of(options.getOption(METRICS_OPTION, null));
+      result.getMetrics().writeJson(metricsFile);
+      LOGGER.log(Level.INFO, () -> "Metrics written to " + metricsFile);
+    }
+  }
+
+  private static MatchingEngine getEngine(final String option) {
+    if (option.isEmpty()) {
+      return MatchingEngine.PATTERN;
+    }
+    try {
+      return MatchingEngine.valueOf(option.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Option --" + ENGINE_OPTION + " expects pattern, lexer or vector, got: " + option, e);
+    }
+  }
+
+  private static IoThreadMode getIoThreadMode(final String option) {
+    if (option.isEmpty()) {
+      return IoThreadMode.PLATFORM;
+    }
+    try {
+      return IoThreadMode.valueOf(option.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "Option --" + IO_THREADS_OPTION + " expects platform or virtual, got: " + option, e);
+    }
+  }
+
+  private static List<String> getGlobs(final String option) {
+    return option.isEmpty() ? List.of() : List.of(option.split(","));
   }
 }
@@ -7,47 +7,108 @@
 
 package com.activeviam.migration.private_;
 
-import com.activeviam.util.private_.MigrationUtils;
+import com.activeviam.util.private_.FlightEvents.FileProcessed;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Process files with a patter matcher.
  *
+ * @param <P> the type of the compiled pattern
  * @author ActiveViam
  */
-public abstract class AFilesProcessor {
-
-  protected static final String ALL_EXCEPT_ALPHANUMERIC_AND_UNDERSCORE = "[^A-Za-z0-9_]";
-
-  protected static final String ALPHANUMERIC_OR_UNDERSCORE_OR_DOT = "[A-Za-z0-9\\_\\.]";
+public abstract class AFilesProcessor<P> {
 
   private final List<Path> files;
 
-  protected final Pattern pattern; // Pattern is thread-safe
+  protected final P pattern; // The compiled pattern must be thread-safe
+
+  /** Rejects the contents which cannot match the pattern, before searching it. */
+  private final ReferencePrefilter prefilter;
 
   protected final PatternMatcherInfo info;
 
+  /** Arrays in which the files are read, one per thread processing them. */
+  protected final BufferPool buffers = new BufferPool(Runtime.getRuntime().availableProcessors());
+
+  /** Constructor. */
   protected AFilesProcessor(
-      final String name, final List<Path> files, final Set<String> patternsToMatch) {
+      final String name,
+      final List<Path> files,
+      final P pattern,
+      final ReferencePrefilter prefilter) {
     this.files = files;
-    this.pattern = createPattern(patternsToMatch);
+    this.pattern = pattern;
+    this.prefilter = prefilter;
     this.info = new PatternMatcherInfo(name, this.files.size());
   }
 
-  protected abstract Pattern createPattern(Set<String> patternsToMatch);
-
+  /**
+   * Processes the files, the largest first, as {@link SizeAwareScheduler} does, recording each one
+   * as a {@link FileProcessed} flight event.
+   */
   protected void processFiles() {
-    this.files.parallelStream().forEach(this::processFile);
+    this.info.setFileTimings(
+        SizeAwareScheduler.create(this.info.getName()).run(this.files, this::processFileEvent));
+  }
+
+  private void processFileEvent(final Path filePath) {
+    final FileProcessed event = new FileProcessed();
+    // The size is only needed if the event is recorded, and must be read before processing
+    final long size = event.isEnabled() ? size(filePath) : 0;
+    event.begin();
+    final int matches = processFile(filePath);
+    event.end();
+    if (event.shouldCommit()) {
+      event.processor = this.info.getName();
+      event.path = filePath.toString();
+      event.size = size;
+      event.matches = matches;
+      event.commit();
+    }
   }
 
-  protected abstract void processFile(Path filePath);
+  /**
+   * Processes the given file.
+   *
+   * @return the number of matches of the pattern in the file
+   */
+  protected abstract int processFile(Path filePath);
+
+  /**
+   * Whether the given file is large enough to be processed by a {@link ChunkedFileProcessor}, with
+   * the {@link ExecutionSettings#DEFAULT_CHUNKED_FILE_SIZE default} size.
+   */
+  protected static boolean isChunkedFile(final Path filePath) {
+    return size(filePath) >= ExecutionSettings.DEFAULT_CHUNKED_FILE_SIZE;
+  }
+
+  private static long size(final Path filePath) {
+    try {
+      return Files.size(filePath);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Creates a processor of the large files, with the given migrater and checker. */
+  ChunkedFileProcessor createChunkedFileProcessor(
+      final FileMigrater migrater, final ApiChecker checker) {
+    return new ChunkedFileProcessor(
+        migrater, checker, this.buffers, ExecutionSettings.DEFAULT_CHUNK_SIZE);
+  }
 
-  protected Matcher createMatcher(final Path filePath) {
-    final String currentContent = MigrationUtils.getFileContent(filePath);
-    return this.pattern.matcher(currentContent);
+  /**
+   * Whether the given content may match the pattern, {@code false} if the prefilter proved it
+   * cannot and the content is counted as skipped.
+   */
+  protected boolean mayMatch(final CharSequence content) {
+    if (this.prefilter.mayMatch(content)) {
+      return true;
+    }
+    this.info.incrementPrefilteredFiles();
+    return false;
   }
 }
@@ -9,8 +9,6 @@ package com.activeviam.migration.private_;
 
 import java.nio.file.Path;
 import java.util.List;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * {@link ApiChecker} for activepivot library.
@@ -21,26 +19,13 @@ public class ActivePivotApiChecker extends ApiChecker {
 
   private static final String NAME = "ACTIVEPIVOT API CHECK";
 
-  private static final Set<String> PATTERNS_TO_MATCH =
-      Set.of("com\\.qfs", "com\\.quartetfs", "com\\.activeviam", "io\\.atoti");
+  private static final ApiRules RULES = ApiRules.loadResource("api_rules/activepivot.rules");
 
   public ActivePivotApiChecker(final List<Path> files) {
-    super(NAME, files, PATTERNS_TO_MATCH);
+    this(files, MatchingSettings.DEFAULT);
   }
 
-  @Override
-  protected Pattern createPattern(final Set<String> patternsToMatch) {
-    final String patternString =
-        "("
-            + String.join("|", patternsToMatch)
-            + ")\\."
-            + ALPHANUMERIC_OR_UNDERSCORE_OR_DOT
-            + "*("
-            + String.join("|", "internal", "private_")
-            + ")"
-            + ALPHANUMERIC_OR_UNDERSCORE_OR_DOT
-            + "*"
-            + AFilesProcessor.ALL_EXCEPT_ALPHANUMERIC_AND_UNDERSCORE;
-    return Pattern.compile(patternString);
+  public ActivePivotApiChecker(final List<Path> files, final MatchingSettings settings) {
+    super(NAME, files, RULES, settings);
   }
 }
@@ -7,61 +7,117 @@
 
 package com.activeviam.migration.private_;
 
+import com.activeviam.migration.private_.ApiRuleAutomaton.ApiRuleMatcher;
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
 import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Spots usage of non-public API in a project.
  *
  * @author ActiveViam
  */
-public abstract class ApiChecker extends AFilesProcessor {
+public abstract class ApiChecker extends AFilesProcessor<ApiRuleAutomaton> {
+
+  private static final Logger LOGGER = Logger.getLogger(ApiChecker.class.getName());
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
 
   private static final Map<String, Class<? extends ApiChecker>> LIBRARY_TO_API_CHECKER =
       Map.of("activepivot", ActivePivotApiChecker.class);
 
-  private final Map<String, List<String>> matchingPatternsPerFile = new HashMap<>();
+  /** Non-public API use per file path, filled concurrently by the threads processing files. */
+  private final Map<String, List<String>> matchingPatternsPerFile = new ConcurrentHashMap<>();
+
+  private final MatchingSettings settings;
+
+  /** Roots of the packages of the library, such as {@code com.company}. */
+  private final String[] packageRoots;
+
+  /** Names of the packages which are not public API wherever they are. */
+  private final String[] nonPublicPackages;
+
+  /** Scanner of the non-public packages, {@code null} unless the vector engine is used. */
+  private final VectorizedKeywordScanner nonPublicPackageScanner;
 
   /** Spots usage of non-public API of the given library among the given files. */
   public static String checkApi(final String libraryName, final List<Path> files) {
-    // Get the corresponding ApiChecker
-    final Class<? extends ApiChecker> apiCheckerClass = LIBRARY_TO_API_CHECKER.get(libraryName);
-    if (apiCheckerClass != null) {
-      final ApiChecker checker;
-      try {
-        checker = apiCheckerClass.getConstructor(List.class).newInstance(files);
-      } catch (final InstantiationException
-          | IllegalAccessException
-          | IllegalArgumentException
-          | InvocationTargetException
-          | NoSuchMethodException
-          | SecurityException e) {
-        throw new RuntimeException(e);
-      }
+    final ApiChecker checker = createApiChecker(libraryName, files);
+    if (checker == null) {
+      return getMissingApiCheckerMessage(libraryName);
+    }
 
-      final Duration executionTime = MigrationUtils.runAndGetTime(checker::processFiles);
-      checker.info.setExecutionTime(executionTime);
+    final Duration executionTime = MigrationUtils.runAndGetTime(checker::processFiles);
+    checker.info.setExecutionTime(executionTime);
 
-      return checker.info
-          + MigrationUtils.LINE_SEPARATOR
-          + "Non-public API use in each file:"
-          + MigrationUtils.LINE_SEPARATOR
-          + printMatchingPatternsForEachFile(checker.matchingPatternsPerFile);
-    } else {
-      return "There is no implementation of "
-          + ApiChecker.class.getName()
-          + " for "
-          + libraryName
-          + " library.";
+    return checker.getReport();
+  }
+
+  /**
+   * Creates the {@link ApiChecker} of the given library for the given files.
+   *
+   * @return the checker, or {@code null} if there is no implementation for this library
+   */
+  static ApiChecker createApiChecker(final String libraryName, final List<Path> files) {
+    return createApiChecker(libraryName, files, MatchingSettings.DEFAULT);
+  }
+
+  /**
+   * Creates the {@link ApiChecker} of the given library for the given files, searching them with
+   * the given settings.
+   *
+   * @return the checker, or {@code null} if there is no implementation for this library
+   */
+  static ApiChecker createApiChecker(
+      final String libraryName, final List<Path> files, final MatchingSettings settings) {
+    final Class<? extends ApiChecker> apiCheckerClass = LIBRARY_TO_API_CHECKER.get(libraryName);
+    if (apiCheckerClass == null) {
+      return null;
     }
+    try {
+      return apiCheckerClass
+          .getConstructor(List.class, MatchingSettings.class)
+          .newInstance(files, settings);
+    } catch (final InstantiationException
+        | IllegalAccessException
+        | IllegalArgumentException
+        | InvocationTargetException
+        | NoSuchMethodException
+        | SecurityException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns the message explaining that the API of the given library cannot be checked. */
+  static String getMissingApiCheckerMessage(final String libraryName) {
+    return "There is no implementation of "
+        + ApiChecker.class.getName()
+        + " for "
+        + libraryName
+        + " library.";
+  }
+
+  /** Returns the {@link PatternMatcherInfo} followed by the non-public API use of each file. */
+  String getReport() {
+    return this.info
+        + MigrationUtils.LINE_SEPARATOR
+        + "Non-public API use in each file:"
+        + MigrationUtils.LINE_SEPARATOR
+        + printMatchingPatternsForEachFile(new TreeMap<>(this.matchingPatternsPerFile));
   }
 
   private static String printMatchingPatternsForEachFile(
@@ -81,28 +137,460 @@ public abstract class ApiChecker extends AFilesProcessor {
     return sb.toString();
   }
 
+  /**
+   * Constructor.
+   *
+   * @param rules the rules defining the non-public API of the library
+   */
   protected ApiChecker(
-      final String name, final List<Path> files, final Set<String> patternsToMatch) {
-    super(name, files, patternsToMatch);
+      final String name,
+      final List<Path> files,
+      final ApiRules rules,
+      final MatchingSettings settings) {
+    super(name, files, rules.compile(), ReferencePrefilter.ofPackageRoots(rules.getPackageRoots()));
+    this.settings = settings;
+    this.packageRoots = rules.getPackageRoots().toArray(String[]::new);
+    this.nonPublicPackages = rules.getNonPublicPackages().toArray(String[]::new);
+    this.nonPublicPackageScanner =
+        createNonPublicPackageScanner(settings, rules.getNonPublicPackages());
+  }
+
+  private static VectorizedKeywordScanner createNonPublicPackageScanner(
+      final MatchingSettings settings, final List<String> nonPublicPackages) {
+    if (settings.getEngine() != MatchingEngine.VECTOR) {
+      return null;
+    }
+    if (!isVectorApiSupported()) {
+      LOGGER.log(
+          Level.WARNING,
+          () ->
+              "The "
+                  + VECTOR_MODULE
+                  + " module is not enabled, the API is checked with the "
+                  + MatchingEngine.PATTERN
+                  + " engine. Add the --add-modules "
+                  + VECTOR_MODULE
+                  + " JVM option to use the "
+                  + MatchingEngine.VECTOR
+                  + " engine.");
+      return null;
+    }
+    return new VectorizedKeywordScanner(nonPublicPackages);
+  }
+
+  /** Whether the {@code jdk.incubator.vector} module is enabled in this JVM. */
+  static boolean isVectorApiSupported() {
+    return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
   }
 
   @Override
-  protected void processFile(final Path filePath) {
-    final Matcher matcher = createMatcher(filePath);
-    final List<String> matchingPatterns = processMatcher(matcher);
+  protected int processFile(final Path filePath) {
+    if (canCheckChunks() && isChunkedFile(filePath)) {
+      return createChunkedFileProcessor(null, this).process(filePath, false).getApiUsages().size();
+    }
+    final ByteBuffer buffer = MigrationUtils.readFileContent(filePath, this.buffers::acquire);
+    try {
+      return checkContent(filePath, new ByteContent(buffer)).size();
+    } finally {
+      this.buffers.release(buffer.array());
+    }
+  }
+
+  /**
+   * Spots usage of non-public API in the given content of the given file.
+   *
+   * @return the non-public API use found in the file
+   */
+  List<String> checkContent(final Path filePath, final CharSequence content) {
+    if (!mayMatch(content)) {
+      return List.of();
+    }
+    final List<String> matchingPatterns = findUses(content);
     if (!matchingPatterns.isEmpty()) {
-      this.matchingPatternsPerFile.put(filePath.getFileName().toString(), matchingPatterns);
+      this.matchingPatternsPerFile.put(filePath.toString(), matchingPatterns);
+    }
+    return matchingPatterns;
+  }
+
+  /** Returns the non-public API use of the given content, with the engine of the settings. */
+  private List<String> findUses(final CharSequence content) {
+    if (this.settings.getEngine() == MatchingEngine.LEXER) {
+      return checkTokens(content);
+    } else if (this.nonPublicPackageScanner != null) {
+      return checkCandidates(content);
+    } else {
+      return processMatcher(content, this.pattern.matcher(content));
     }
   }
 
-  private List<String> processMatcher(final Matcher matcher) {
+  /**
+   * Whether the contents can be checked {@link ChunkedCheck in chunks}, which is not the case of
+   * the {@link MatchingEngine#LEXER lexer} engine since comments and strings can span chunks.
+   */
+  boolean canCheckChunks() {
+    return this.settings.getEngine() != MatchingEngine.LEXER;
+  }
+
+  /**
+   * Starts the check of a content read in chunks, which must only be called if the contents {@link
+   * #canCheckChunks() can be checked in chunks}.
+   *
+   * @param maxCarryLength the maximal number of bytes of a chunk to give again with the next one
+   */
+  ChunkedCheck startChunkedCheck(final int maxCarryLength) {
+    return new ChunkedCheck(maxCarryLength);
+  }
+
+  /** Adds the non-public API use of the given file, found by a previous check. */
+  void addMatchingPatterns(final Path filePath, final List<String> matchingPatterns) {
+    if (!matchingPatterns.isEmpty()) {
+      this.matchingPatternsPerFile.put(filePath.toString(), matchingPatterns);
+    }
+    this.info.addToMatchingCounter(matchingPatterns.size());
+  }
+
+  private List<String> processMatcher(final CharSequence content, final ApiRuleMatcher matcher) {
     final List<String> matchingPatterns = new ArrayList<>();
     int matchingCounter = 0;
     while (matcher.find()) {
-      matchingPatterns.add(matcher.group(0));
+      matchingPatterns.add(getUse(content, matcher.start(), matcher.end()));
       ++matchingCounter;
     }
     this.info.addToMatchingCounter(matchingCounter);
     return matchingPatterns;
   }
+
+  /**
+   * Spots usage of non-public API in the given content with the {@link MatchingEngine#VECTOR
+   * vector} engine. A match of the automaton is a qualified name containing a non-public package,
+   * followed by one character: the automaton only reads the qualified names around the non-public
+   * packages found by the vector scan, so that the matches are the same as reading the whole
+   * content.
+   */
+  private List<String> checkCandidates(final CharSequence content) {
+    // The bytes are scanned in place, a content of characters is only encoded when not read from
+    // a file
+    final ByteContent bytes =
+        content instanceof ByteContent
+            ? (ByteContent) content
+            : new ByteContent(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)));
+    final int length = bytes.length();
+    final ApiRuleMatcher matcher = this.pattern.matcher(bytes);
+    final List<String> matchingPatterns = new ArrayList<>();
+    int from = 0;
+    int candidate;
+    while ((candidate = this.nonPublicPackageScanner.find(bytes, from)) >= 0) {
+      int start = candidate;
+      while (start > from && JavaTokenScanner.isTokenCharacter(bytes.charAt(start - 1))) {
+        --start;
+      }
+      int end = candidate + 1;
+      while (end < length && JavaTokenScanner.isTokenCharacter(bytes.charAt(end))) {
+        ++end;
+      }
+      matcher.region(start, Math.min(end + 1, length));
+      while (matcher.find()) {
+        matchingPatterns.add(getUse(bytes, matcher.start(), matcher.end()));
+      }
+      from = end + 1;
+    }
+    this.info.addToMatchingCounter(matchingPatterns.size());
+    return matchingPatterns;
+  }
+
+  /**
+   * Spots usage of non-public API in the given content with the {@link MatchingEngine#LEXER lexer}
+   * engine: a token is non-public API if it starts with a package root, and one of the non-public
+   * packages appears after this root.
+   */
+  private List<String> checkTokens(final CharSequence content) {
+    final JavaTokenScanner scanner =
+        new JavaTokenScanner(
+            content, this.settings.isScanComments(), this.settings.isScanStrings());
+    final List<String> matchingPatterns = new ArrayList<>();
+    while (scanner.next()) {
+      final int start = scanner.start();
+      final int end = scanner.end();
+      final int rootLength = getPackageRootLength(content, start, end);
+      if (rootLength > 0
+          && containsNonPublicPackage(content, start + rootLength + 1, end)
+          && !this.pattern.getRules().isAllowed(content, start, end)) {
+        // Like the pattern engine, include the character following the token
+        matchingPatterns.add(getUse(content, start, Math.min(end + 1, content.length())));
+      }
+    }
+    this.info.addToMatchingCounter(matchingPatterns.size());
+    return matchingPatterns;
+  }
+
+  /**
+   * Returns the length of the package root followed by a dot at the start of {@code content[start,
+   * end)}, or 0 if there is none.
+   */
+  private int getPackageRootLength(final CharSequence content, final int start, final int end) {
+    for (final String root : this.packageRoots) {
+      final int rootLength = root.length();
+      if (rootLength < end - start
+          && content.charAt(start + rootLength) == '.'
+          && startsWith(content, root, start)) {
+        return rootLength;
+      }
+    }
+    return 0;
+  }
+
+  private boolean containsNonPublicPackage(
+      final CharSequence content, final int from, final int to) {
+    for (final String nonPublicPackage : this.nonPublicPackages) {
+      final int lastStart = to - nonPublicPackage.length();
+      for (int i = from; i <= lastStart; ++i) {
+        if (startsWith(content, nonPublicPackage, i)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(
+      final CharSequence content, final String prefix, final int offset) {
+    for (int i = 0; i < prefix.length(); ++i) {
+      if (content.charAt(offset + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check of a content read in chunks, finding the same non-public API use as the check of the
+   * whole content.
+   *
+   * <p>A non-public API use is a qualified name followed by one character, so a chunk is only
+   * checked until the end of its last character which cannot be part of a qualified name: the rest
+   * of the chunk must be given again at the start of the next chunk. Since a use starts with a
+   * package root, only the part of this rest from its first package root, or from what can still
+   * become one, is given again. A qualified name longer than the maximal carry length from its
+   * package root is not kept: only its position is, and it is read again from the file once the
+   * check is finished. It is not thread-safe.
+   *
+   * @author ActiveViam
+   */
+  final class ChunkedCheck {
+
+    private final List<String> matchingPatterns = new ArrayList<>();
+
+    /** The qualified names too long to be given again, checked once the file is complete. */
+    private final List<OversizedName> oversizedNames = new ArrayList<>();
+
+    private final int maxCarryLength;
+
+    /** Length of the longest package root, without its dot. */
+    private final int maxRootLength;
+
+    /** Position in the content of the start of the current chunk. */
+    private long offset = 0;
+
+    /** Position in the content of the oversized qualified name being read, or -1. */
+    private long oversizedNameStart = -1;
+
+    private ChunkedCheck(final int maxCarryLength) {
+      this.maxCarryLength = maxCarryLength;
+      int maxRootLength = 0;
+      for (final String root : ApiChecker.this.packageRoots) {
+        maxRootLength = Math.max(maxRootLength, root.length());
+      }
+      this.maxRootLength = maxRootLength;
+    }
+
+    /**
+     * Checks the given chunk.
+     *
+     * @param lastChunk whether the chunk ends the content, so that it is checked until its end
+     * @return the index from which the chunk must be given again at the start of the next one
+     */
+    int check(final ByteContent chunk, final boolean lastChunk) {
+      final int length = chunk.length();
+      int from = 0;
+      while (true) {
+        if (this.oversizedNameStart >= 0) {
+          final int nameEnd = skipQualifiedName(chunk, from);
+          if (nameEnd == length && !lastChunk) {
+            return consume(length);
+          }
+          this.oversizedNames.add(
+              new OversizedName(
+                  this.matchingPatterns.size(),
+                  this.oversizedNameStart,
+                  this.offset + Math.min(nameEnd + 1, length)));
+          this.oversizedNameStart = -1;
+          from = nameEnd;
+        }
+
+        final int checkedUntil = lastChunk ? length : findCheckEnd(chunk, from);
+        if (checkedUntil > from) {
+          this.matchingPatterns.addAll(
+              findUses(
+                  from == 0 && checkedUntil == length
+                      ? chunk
+                      : chunk.subSequence(from, checkedUntil)));
+        }
+        if (lastChunk) {
+          return consume(length);
+        }
+        final int carryStart = findCarryStart(chunk, checkedUntil);
+        if (length - carryStart <= this.maxCarryLength
+            || findFirstRoot(chunk, carryStart, carryStart + 1) < 0) {
+          return consume(carryStart);
+        }
+        // Only keep the position of a qualified name longer than the carry
+        this.oversizedNameStart = this.offset + carryStart;
+        from = carryStart;
+      }
+    }
+
+    private int consume(final int carryStart) {
+      this.offset += carryStart;
+      return carryStart;
+    }
+
+    /**
+     * Returns the index following the last character of the given chunk which cannot be part of a
+     * qualified name, and which is not in the middle of an UTF-8 character, or {@code from} if
+     * there is none after it.
+     */
+    private int findCheckEnd(final ByteContent chunk, final int from) {
+      for (int i = chunk.length() - 1; i > from; --i) {
+        // The continuation bytes of a multibyte UTF-8 character are 10xxxxxx
+        if (!JavaTokenScanner.isTokenCharacter(chunk.charAt(i - 1))
+            && (chunk.charAt(i) & 0xC0) != 0x80) {
+          return i;
+        }
+      }
+      return from;
+    }
+
+    /**
+     * Returns the index from which the given chunk, checked until the given index, must be given
+     * again: the first package root of the qualified name starting at this index, or the last bytes
+     * of this name which can still start a package root.
+     */
+    private int findCarryStart(final ByteContent chunk, final int checkedUntil) {
+      final int length = chunk.length();
+      final int nameEnd = skipQualifiedName(chunk, checkedUntil);
+      final int rootStart = findFirstRoot(chunk, checkedUntil, nameEnd);
+      if (nameEnd < length) {
+        return rootStart >= 0 ? rootStart : nameEnd;
+      }
+      final int partialRootStart = Math.max(checkedUntil, length - this.maxRootLength);
+      return rootStart >= 0 ? Math.min(rootStart, partialRootStart) : partialRootStart;
+    }
+
+    private int skipQualifiedName(final ByteContent chunk, final int from) {
+      final int length = chunk.length();
+      int i = from;
+      while (i < length && JavaTokenScanner.isTokenCharacter(chunk.charAt(i))) {
+        ++i;
+      }
+      return i;
+    }
+
+    /**
+     * Returns the first index of {@code [from, to)} starting a package root followed by a dot
+     * before {@code nameEnd}, or -1 if there is none.
+     */
+    private int findFirstRoot(final ByteContent chunk, final int from, final int to) {
+      final int nameEnd = skipQualifiedName(chunk, from);
+      for (int i = from; i < to; ++i) {
+        for (final String root : ApiChecker.this.packageRoots) {
+          final int dot = i + root.length();
+          if (dot < nameEnd && chunk.charAt(dot) == '.' && startsWith(chunk, root, i)) {
+            return i;
+          }
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Ends the check of the given file, once the last chunk is checked and the file contains the
+     * checked content.
+     *
+     * @return the non-public API use found in the file
+     */
+    List<String> finish(final Path filePath) {
+      if (!this.oversizedNames.isEmpty()) {
+        checkOversizedNames(filePath);
+      }
+      if (!this.matchingPatterns.isEmpty()) {
+        ApiChecker.this.matchingPatternsPerFile.put(filePath.toString(), this.matchingPatterns);
+      }
+      return this.matchingPatterns;
+    }
+
+    /** Reads the oversized qualified names again from the given file and checks them. */
+    private void checkOversizedNames(final Path filePath) {
+      try (final FileChannel input = FileChannel.open(filePath, StandardOpenOption.READ)) {
+        // From the last one, so that the indices of the previous ones remain valid
+        for (int i = this.oversizedNames.size() - 1; i >= 0; --i) {
+          final OversizedName name = this.oversizedNames.get(i);
+          this.matchingPatterns.addAll(name.index, findUses(name.read(input)));
+        }
+      } catch (final IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Position of a qualified name, followed by one character, which is checked once the whole file
+   * is read.
+   *
+   * @author ActiveViam
+   */
+  private static final class OversizedName {
+
+    /** Maximal number of continuation bytes of an UTF-8 character. */
+    private static final int MAX_CONTINUATION_BYTES = 3;
+
+    /** Index at which its non-public API use is inserted among the ones of the file. */
+    private final int index;
+
+    private final long start;
+
+    private final long end;
+
+    private OversizedName(final int index, final long start, final long end) {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * Reads the name from the given file, with the whole last character if only its first byte is
+     * in the name.
+     */
+    private ByteContent read(final FileChannel input) throws IOException {
+      final ByteBuffer buffer =
+          ByteBuffer.allocate(
+              Math.toIntExact(
+                  Math.min(this.end + MAX_CONTINUATION_BYTES, input.size()) - this.start));
+      while (buffer.hasRemaining() && input.read(buffer, this.start + buffer.position()) >= 0) {
+        // Read until the buffer is full
+      }
+      int length = (int) (this.end - this.start);
+      // The continuation bytes of a multibyte UTF-8 character are 10xxxxxx
+      while (length < buffer.position() && (buffer.get(length) & 0xC0) == 0x80) {
+        ++length;
+      }
+      return new ByteContent(buffer.array(), length);
+    }
+  }
+
+  /** Returns the non-public API use {@code content[start, end)}, decoded for a byte content. */
+  private static String getUse(final CharSequence content, final int start, final int end) {
+    return content instanceof ByteContent
+        ? ((ByteContent) content).decode(start, end)
+        : content.subSequence(start, end).toString();
+  }
 }
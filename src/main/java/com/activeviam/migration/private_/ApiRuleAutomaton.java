@@ -0,0 +1,321 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Deterministic automaton finding the non-public API use defined by {@link ApiRules} in linear
+ * time, whatever the length of the qualified names.
+ *
+ * <p>It finds the same occurrences as the regular expression {@code
+ * (r1|r2|...)\.[A-Za-z0-9_.]*(f1|f2|...)[A-Za-z0-9_.]*[^A-Za-z0-9_]} where the roots {@code r} and
+ * the forbidden names {@code f} are taken literally, without backtracking: each qualified name
+ * token, a maximal sequence of {@code [A-Za-z0-9_.]} characters, is read once by the automaton of
+ * the forbidden names and, when it contains one, once more up to the last forbidden name by the
+ * automaton of the roots. The occurrences whose qualified name is {@link ApiRules#isAllowed
+ * allowed} are then skipped.
+ *
+ * <p>This class is immutable and thread-safe, use {@link #matcher(CharSequence)} to search a text.
+ *
+ * @author ActiveViam
+ */
+public final class ApiRuleAutomaton {
+
+  private final ApiRules rules;
+
+  /** Automaton of the roots followed by a dot. */
+  private final LiteralAutomaton roots;
+
+  /** Automaton of the forbidden names. */
+  private final LiteralAutomaton nonPublicPackages;
+
+  ApiRuleAutomaton(final ApiRules rules) {
+    this.rules = rules;
+    final List<String> rootPrefixes = new ArrayList<>();
+    for (final String root : rules.getPackageRoots()) {
+      rootPrefixes.add(root + '.');
+    }
+    this.roots = new LiteralAutomaton(rootPrefixes);
+    this.nonPublicPackages = new LiteralAutomaton(rules.getNonPublicPackages());
+  }
+
+  /** Returns the rules of this automaton. */
+  public ApiRules getRules() {
+    return this.rules;
+  }
+
+  /** Creates a matcher searching the non-public API use in the given text. */
+  public ApiRuleMatcher matcher(final CharSequence text) {
+    return new ApiRuleMatcher(text);
+  }
+
+  /**
+   * Stateful search of the non-public API use of an {@link ApiRuleAutomaton} in a text, used like a
+   * {@link java.util.regex.Matcher}. It is not thread-safe.
+   *
+   * @author ActiveViam
+   */
+  public final class ApiRuleMatcher {
+
+    private final CharSequence text;
+
+    private int searchFrom = 0;
+
+    private int searchTo;
+
+    private int start = -1;
+
+    private int end = -1;
+
+    private ApiRuleMatcher(final CharSequence text) {
+      this.text = text;
+      this.searchTo = text.length();
+    }
+
+    /**
+     * Limits the search to {@code text[from, to)}, as if the text was only made of it, and resets
+     * the matcher.
+     *
+     * @return this matcher
+     */
+    public ApiRuleMatcher region(final int from, final int to) {
+      this.searchFrom = from;
+      this.searchTo = to;
+      this.start = -1;
+      this.end = -1;
+      return this;
+    }
+
+    /**
+     * Finds the next non-public API use, made of a qualified name and the character following it.
+     *
+     * @return whether a use has been found
+     */
+    public boolean find() {
+      final CharSequence text = this.text;
+      final int to = this.searchTo;
+      int i = this.searchFrom;
+      while (i < to) {
+        if (!JavaTokenScanner.isTokenCharacter(text.charAt(i))) {
+          ++i;
+          continue;
+        }
+
+        // Read the whole token with the automaton of the forbidden names
+        final int tokenStart = i;
+        int lastForbiddenStart = -1;
+        int lastForbiddenStartBeforeDot = -1;
+        int lastDot = -1;
+        int state = LiteralAutomaton.START;
+        for (char c; i < to && JavaTokenScanner.isTokenCharacter(c = text.charAt(i)); ++i) {
+          if (c == '.') {
+            lastDot = i;
+            lastForbiddenStartBeforeDot = lastForbiddenStart;
+          }
+          state = ApiRuleAutomaton.this.nonPublicPackages.next(state, c);
+          final int length = ApiRuleAutomaton.this.nonPublicPackages.getShortestMatch(state);
+          if (length > 0) {
+            lastForbiddenStart = Math.max(lastForbiddenStart, i + 1 - length);
+          }
+        }
+        final int tokenEnd = i;
+
+        // The use ends with the character following the token, or at the end of the text with the
+        // last dot of the token, which is not alphanumeric or underscore either
+        final int forbiddenStart;
+        final int useEnd;
+        if (tokenEnd < to) {
+          forbiddenStart = lastForbiddenStart;
+          useEnd = tokenEnd + 1;
+        } else {
+          forbiddenStart = lastForbiddenStartBeforeDot;
+          useEnd = lastDot + 1;
+        }
+        if (forbiddenStart < 0) {
+          continue;
+        }
+
+        final int useStart = findFirstRoot(tokenStart, forbiddenStart);
+        if (useStart >= 0 && !ApiRuleAutomaton.this.rules.isAllowed(text, useStart, useEnd - 1)) {
+          this.start = useStart;
+          this.end = useEnd;
+          this.searchFrom = tokenEnd;
+          return true;
+        }
+      }
+
+      this.searchFrom = to;
+      this.start = -1;
+      this.end = -1;
+      return false;
+    }
+
+    /**
+     * Returns the start of the first root followed by a dot which ends before the given index, or
+     * -1 if there is none.
+     */
+    private int findFirstRoot(final int from, final int to) {
+      final LiteralAutomaton roots = ApiRuleAutomaton.this.roots;
+      final int maxLength = roots.getMaxLength();
+      int first = -1;
+      int state = LiteralAutomaton.START;
+      for (int i = from; i < to; ++i) {
+        // No root ending here or after can start before the first one found so far
+        if (first >= 0 && i + 1 - maxLength >= first) {
+          break;
+        }
+        state = roots.next(state, this.text.charAt(i));
+        final int length = roots.getLongestMatch(state);
+        if (length > 0 && (first < 0 || i + 1 - length < first)) {
+          first = i + 1 - length;
+        }
+      }
+      return first;
+    }
+
+    /** Returns the start index of the last use found. */
+    public int start() {
+      return this.start;
+    }
+
+    /** Returns the index after the last character of the last use found. */
+    public int end() {
+      return this.end;
+    }
+
+    /** Returns the last use found. */
+    public String group() {
+      return this.text.subSequence(this.start, this.end).toString();
+    }
+  }
+
+  /**
+   * Aho-Corasick automaton of literals made of ASCII characters, with all its transitions computed
+   * so that it reads each character of a text in constant time.
+   *
+   * @author ActiveViam
+   */
+  private static final class LiteralAutomaton {
+
+    static final int START = 0;
+
+    private static final int ASCII_SIZE = 128;
+
+    /** Class of the characters which are not part of any literal. */
+    private static final int OTHER_CLASS = 0;
+
+    /** Class of each ASCII character, its index in the transitions of a state. */
+    private final byte[] characterClasses = new byte[ASCII_SIZE];
+
+    private final int classCount;
+
+    /**
+     * Transitions of state {@code s} are stored in {@code [s * classCount, (s + 1) * classCount)}.
+     */
+    private final int[] transitions;
+
+    /** Length of the shortest literal ending at each state, or 0. */
+    private final int[] shortestMatches;
+
+    /** Length of the longest literal ending at each state, or 0. */
+    private final int[] longestMatches;
+
+    private final int maxLength;
+
+    LiteralAutomaton(final Collection<String> literals) {
+      int classCount = OTHER_CLASS + 1;
+      int maxLength = 0;
+      for (final String literal : literals) {
+        for (int i = 0; i < literal.length(); ++i) {
+          final char c = literal.charAt(i);
+          if (this.characterClasses[c] == OTHER_CLASS) {
+            this.characterClasses[c] = (byte) classCount++;
+          }
+        }
+        maxLength = Math.max(maxLength, literal.length());
+      }
+      this.classCount = classCount;
+      this.maxLength = maxLength;
+
+      // Build the trie, the transitions of missing children are completed below
+      final List<int[]> children = new ArrayList<>();
+      final List<Integer> lengths = new ArrayList<>();
+      children.add(new int[classCount]);
+      lengths.add(0);
+      for (final String literal : literals) {
+        int state = START;
+        for (int i = 0; i < literal.length(); ++i) {
+          final int characterClass = this.characterClasses[literal.charAt(i)];
+          if (children.get(state)[characterClass] == START) {
+            children.get(state)[characterClass] = children.size();
+            children.add(new int[classCount]);
+            lengths.add(0);
+          }
+          state = children.get(state)[characterClass];
+        }
+        lengths.set(state, literal.length());
+      }
+
+      final int stateCount = children.size();
+      this.transitions = new int[stateCount * classCount];
+      this.shortestMatches = new int[stateCount];
+      this.longestMatches = new int[stateCount];
+      final int[] failures = new int[stateCount];
+
+      // Breadth first, so that the failure of a state is complete before the state itself
+      final Queue<Integer> queue = new ArrayDeque<>();
+      queue.add(START);
+      while (!queue.isEmpty()) {
+        final int state = queue.remove();
+        final int failure = failures[state];
+        final int length = lengths.get(state);
+        // The literals ending at the failure are suffixes of the one ending here, so shorter
+        this.shortestMatches[state] =
+            this.shortestMatches[failure] > 0 ? this.shortestMatches[failure] : length;
+        this.longestMatches[state] = Math.max(length, this.longestMatches[failure]);
+        for (int characterClass = OTHER_CLASS + 1; characterClass < classCount; ++characterClass) {
+          final int child = children.get(state)[characterClass];
+          final int index = state * classCount + characterClass;
+          if (child == START) {
+            this.transitions[index] =
+                state == START ? START : this.transitions[failure * classCount + characterClass];
+          } else {
+            this.transitions[index] = child;
+            failures[child] =
+                state == START ? START : this.transitions[failure * classCount + characterClass];
+            queue.add(child);
+          }
+        }
+      }
+    }
+
+    int next(final int state, final char c) {
+      final int characterClass = c < ASCII_SIZE ? this.characterClasses[c] : OTHER_CLASS;
+      return this.transitions[state * this.classCount + characterClass];
+    }
+
+    /** Returns the length of the shortest literal ending at the given state, or 0. */
+    int getShortestMatch(final int state) {
+      return this.shortestMatches[state];
+    }
+
+    /** Returns the length of the longest literal ending at the given state, or 0. */
+    int getLongestMatch(final int state) {
+      return this.longestMatches[state];
+    }
+
+    int getMaxLength() {
+      return this.maxLength;
+    }
+  }
+}
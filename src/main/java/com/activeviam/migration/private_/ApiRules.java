@@ -0,0 +1,189 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.util.private_.FlightEvents.PatternCompiled;
+import com.activeviam.util.private_.JsonUtils;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rules defining the non-public API of a library, written with one rule per line:
+ *
+ * <pre>
+ * # Comment
+ * root com.company
+ * forbid internal
+ * allow com.company.internal.PublicClass
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code root} declares a root of the packages of the library
+ *   <li>{@code forbid} declares a name which is not public API wherever it appears in a qualified
+ *       name after a root, even as part of a segment
+ *   <li>{@code allow} declares a qualified name, with its members, which is public API anyway
+ * </ul>
+ *
+ * <p>Names only contain {@code [A-Za-z0-9_.]} characters. The rules are {@link #compile() compiled}
+ * into an {@link ApiRuleAutomaton} searching them in linear time.
+ *
+ * <p>This class is immutable and thread-safe.
+ *
+ * @author ActiveViam
+ */
+public final class ApiRules {
+
+  private static final String COMMENT_PREFIX = "#";
+
+  private static final String ROOT_RULE = "root";
+
+  private static final String FORBID_RULE = "forbid";
+
+  private static final String ALLOW_RULE = "allow";
+
+  private final List<String> packageRoots;
+
+  private final List<String> nonPublicPackages;
+
+  private final List<String> allowedNames;
+
+  /**
+   * Constructor.
+   *
+   * @param packageRoots the roots of the packages of the library, such as {@code com.company}
+   * @param nonPublicPackages the names which are not public API wherever they are under the roots
+   * @param allowedNames the qualified names which are public API anyway
+   */
+  public ApiRules(
+      final Set<String> packageRoots,
+      final List<String> nonPublicPackages,
+      final List<String> allowedNames) {
+    this.packageRoots = List.copyOf(checkNames(ROOT_RULE, packageRoots));
+    this.nonPublicPackages = List.copyOf(checkNames(FORBID_RULE, nonPublicPackages));
+    this.allowedNames = List.copyOf(checkNames(ALLOW_RULE, allowedNames));
+  }
+
+  /** Parses the rules of the given lines. */
+  public static ApiRules parse(final List<String> lines) {
+    final Set<String> packageRoots = new LinkedHashSet<>();
+    final List<String> nonPublicPackages = new ArrayList<>();
+    final List<String> allowedNames = new ArrayList<>();
+    for (int i = 0; i < lines.size(); ++i) {
+      final String line = lines.get(i).strip();
+      if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+        continue;
+      }
+      final String[] parts = line.split("\\s+");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException(
+            "Line " + (i + 1) + ": expected a rule followed by a name, got: " + line);
+      }
+      switch (parts[0]) {
+        case ROOT_RULE -> packageRoots.add(parts[1]);
+        case FORBID_RULE -> nonPublicPackages.add(parts[1]);
+        case ALLOW_RULE -> allowedNames.add(parts[1]);
+        default ->
+            throw new IllegalArgumentException(
+                "Line "
+                    + (i + 1)
+                    + ": unknown rule "
+                    + parts[0]
+                    + ", expected "
+                    + String.join(", ", ROOT_RULE, FORBID_RULE, ALLOW_RULE));
+      }
+    }
+    return new ApiRules(packageRoots, nonPublicPackages, allowedNames);
+  }
+
+  /** Loads the rules of the given resource. */
+  public static ApiRules loadResource(final String path) {
+    final InputStream input = JsonUtils.getResourceAsStream(path);
+    if (input == null) {
+      throw new RuntimeException("API rules " + path + " not found.");
+    }
+    try (final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+      return parse(reader.lines().toList());
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static <C extends Iterable<String>> C checkNames(final String rule, final C names) {
+    for (final String name : names) {
+      if (name.isEmpty()
+          || !name.chars().allMatch(c -> JavaTokenScanner.isTokenCharacter((char) c))) {
+        throw new IllegalArgumentException(
+            "Invalid name for rule " + rule + ", expected [A-Za-z0-9_.] characters: " + name);
+      }
+    }
+    return names;
+  }
+
+  /** Compiles these rules into an automaton. */
+  public ApiRuleAutomaton compile() {
+    final PatternCompiled event = new PatternCompiled();
+    event.begin();
+    final ApiRuleAutomaton automaton = new ApiRuleAutomaton(this);
+    event.end();
+    if (event.shouldCommit()) {
+      event.pattern = "API rules";
+      event.keywords =
+          this.packageRoots.size() + this.nonPublicPackages.size() + this.allowedNames.size();
+      event.commit();
+    }
+    return automaton;
+  }
+
+  /** Returns the roots of the packages of the library. */
+  public List<String> getPackageRoots() {
+    return this.packageRoots;
+  }
+
+  /** Returns the names which are not public API wherever they are under the roots. */
+  public List<String> getNonPublicPackages() {
+    return this.nonPublicPackages;
+  }
+
+  /** Returns the qualified names which are public API anyway. */
+  public List<String> getAllowedNames() {
+    return this.allowedNames;
+  }
+
+  /**
+   * Whether the qualified name {@code text[start, end)} is allowed, because it is an allowed name
+   * or one of its members.
+   */
+  boolean isAllowed(final CharSequence text, final int start, final int end) {
+    for (final String allowedName : this.allowedNames) {
+      final int allowedEnd = start + allowedName.length();
+      if (allowedEnd <= end
+          && (allowedEnd == end || text.charAt(allowedEnd) == '.')
+          && regionEquals(allowedName, text, start)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionEquals(final String name, final CharSequence text, final int from) {
+    for (int i = 0; i < name.length(); ++i) {
+      if (name.charAt(i) != text.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
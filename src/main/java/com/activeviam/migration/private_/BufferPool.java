@@ -0,0 +1,52 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of the byte arrays in which files are read, so that reading a file does not allocate once
+ * the pool is warm. An array can be acquired by a thread and released by another one.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class BufferPool {
+
+  /** Minimal size of the arrays, most java files fit in it. */
+  static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+  /** Maximal size of the pooled arrays, larger ones are left to the garbage collector. */
+  static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+  private final BlockingQueue<byte[]> buffers;
+
+  /** Creates a pool keeping at most the given number of arrays. */
+  BufferPool(final int capacity) {
+    this.buffers = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /** Returns an array of at least the given size. */
+  byte[] acquire(final int size) {
+    final byte[] buffer = this.buffers.poll();
+    if (buffer != null && buffer.length >= size) {
+      return buffer;
+    }
+    // A pooled array too small for this file is dropped, the larger one replaces it
+    return new byte[Math.max(size, MIN_BUFFER_SIZE)];
+  }
+
+  /** Gives back an array acquired from this pool, which must not be used anymore. */
+  void release(final byte[] buffer) {
+    if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+      this.buffers.offer(buffer);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File content kept as the bytes of its encoding, seen as a {@link CharSequence} of one char per
+ * byte, so that it can be searched without being decoded.
+ *
+ * <p>ASCII characters are the same bytes in UTF-8 and in the other ASCII-compatible encodings, and
+ * the bytes of the other characters are all greater than 127: searching the ASCII names of java
+ * packages and classes in the bytes finds them at the same places as in the decoded characters, and
+ * the other bytes are left unchanged whatever the encoding is.
+ *
+ * <p>The content is made of one or more segments of heap buffers, which are not copied: a migrated
+ * content refers to the unchanged ranges of the original one and to the replacements, and is
+ * written with a gathering write.
+ *
+ * <p>It is not thread-safe, as it caches the segment read last so that sequential reads are fast.
+ *
+ * @author ActiveViam
+ */
+final class ByteContent implements CharSequence {
+
+  /** Segments of the content, between their position and their limit. */
+  private final ByteBuffer[] segments;
+
+  /** Start index of each segment in the content, followed by the length of the content. */
+  private final int[] segmentStarts;
+
+  private byte[] currentArray;
+
+  /** Offset in {@link #currentArray} of the first byte of the current segment. */
+  private int currentOffset;
+
+  private int currentStart;
+
+  private int currentLength;
+
+  /** Creates the content of the given heap buffers, between their position and their limit. */
+  ByteContent(final ByteBuffer... segments) {
+    this.segments = segments;
+    this.segmentStarts = new int[segments.length + 1];
+    for (int i = 0; i < segments.length; ++i) {
+      this.segmentStarts[i + 1] = this.segmentStarts[i] + segments[i].remaining();
+    }
+    if (segments.length > 0) {
+      selectSegment(0);
+    }
+  }
+
+  /** Creates the content of the first bytes of the given array. */
+  ByteContent(final byte[] bytes, final int length) {
+    this(ByteBuffer.wrap(bytes, 0, length));
+  }
+
+  @Override
+  public int length() {
+    return this.segmentStarts[this.segments.length];
+  }
+
+  @Override
+  public char charAt(final int index) {
+    if (Integer.compareUnsigned(index - this.currentStart, this.currentLength) >= 0) {
+      selectSegment(findSegment(index));
+    }
+    return (char) (this.currentArray[this.currentOffset + index - this.currentStart] & 0xFF);
+  }
+
+  /** Returns the index of the segment containing the given index of the content. */
+  int findSegment(final int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    int low = 0;
+    int high = this.segments.length - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (this.segmentStarts[middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the number of segments of this content. */
+  int getSegmentCount() {
+    return this.segments.length;
+  }
+
+  /**
+   * Returns the index in the content of the first byte of the given segment, or the length of the
+   * content for the segment following the last one.
+   */
+  int getSegmentStart(final int segment) {
+    return this.segmentStarts[segment];
+  }
+
+  /** Returns the array of the given segment, which must not be modified. */
+  byte[] getSegmentArray(final int segment) {
+    return this.segments[segment].array();
+  }
+
+  /** Returns the offset in its array of the first byte of the given segment. */
+  int getSegmentOffset(final int segment) {
+    final ByteBuffer buffer = this.segments[segment];
+    return buffer.arrayOffset() + buffer.position();
+  }
+
+  private void selectSegment(final int segment) {
+    final ByteBuffer buffer = this.segments[segment];
+    this.currentArray = buffer.array();
+    this.currentOffset = buffer.arrayOffset() + buffer.position();
+    this.currentStart = this.segmentStarts[segment];
+    this.currentLength = buffer.remaining();
+  }
+
+  @Override
+  public ByteContent subSequence(final int start, final int end) {
+    final List<ByteBuffer> slices = new ArrayList<>();
+    addSlices(start, end, slices);
+    return new ByteContent(slices.toArray(ByteBuffer[]::new));
+  }
+
+  /** Adds the buffers of {@code this[start, end)} to the given list, without copying them. */
+  void addSlices(final int start, final int end, final List<ByteBuffer> slices) {
+    if (start >= end) {
+      return;
+    }
+    for (int segment = findSegment(start); this.segmentStarts[segment] < end; ++segment) {
+      final ByteBuffer buffer = this.segments[segment];
+      final int segmentStart = this.segmentStarts[segment];
+      final int from = Math.max(start, segmentStart) - segmentStart;
+      final int to = Math.min(end, this.segmentStarts[segment + 1]) - segmentStart;
+      slices.add(
+          ByteBuffer.wrap(
+              buffer.array(), buffer.arrayOffset() + buffer.position() + from, to - from));
+    }
+  }
+
+  /** Returns new buffers of the segments of this content, ready to be written. */
+  ByteBuffer[] getSegments() {
+    final ByteBuffer[] buffers = new ByteBuffer[this.segments.length];
+    for (int i = 0; i < buffers.length; ++i) {
+      buffers[i] = this.segments[i].duplicate();
+    }
+    return buffers;
+  }
+
+  /** Whether this content contains the given non-empty ASCII string. */
+  boolean contains(final String ascii) {
+    final int last = length() - ascii.length();
+    final char first = ascii.charAt(0);
+    if (this.segments.length == 1) {
+      // Read the array directly, this is the case of all the contents read from files
+      final byte[] array = this.currentArray;
+      final int offset = this.currentOffset;
+      for (int i = offset; i <= offset + last; ++i) {
+        if (array[i] == first && regionEquals(ascii, i - offset)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    for (int i = 0; i <= last; ++i) {
+      if (charAt(i) == first && regionEquals(ascii, i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean regionEquals(final String ascii, final int from) {
+    for (int i = 1; i < ascii.length(); ++i) {
+      if (charAt(from + i) != ascii.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes {@code this[start, end)} as UTF-8, with the whole last character if only its first byte
+   * is in the range. Malformed bytes are replaced.
+   */
+  String decode(final int start, int end) {
+    final int length = length();
+    // The continuation bytes of a multibyte UTF-8 character are 10xxxxxx
+    while (end < length && end > start && (charAt(end) & 0xC0) == 0x80) {
+      ++end;
+    }
+    return new String(toByteArray(start, end), StandardCharsets.UTF_8);
+  }
+
+  /** Returns a copy of the bytes of {@code this[start, end)}. */
+  byte[] toByteArray(final int start, final int end) {
+    final byte[] bytes = new byte[end - start];
+    for (int i = start; i < end; ++i) {
+      bytes[i - start] = (byte) charAt(i);
+    }
+    return bytes;
+  }
+
+  /** Returns the content decoded as UTF-8. */
+  @Override
+  public String toString() {
+    return decode(0, length());
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Budget of the bytes of the files held in memory at the same time, so that the memory holding
+ * their contents stays bounded.
+ *
+ * <p>A file larger than the budget takes all of it, so that it is held alone. The waiting files
+ * take the budget in the order they asked for it.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class BytesInFlight {
+
+  /** Default maximal total size of the files held at the same time. */
+  static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  /** Number of bytes of a permit, so that the sizes in flight can be counted by a semaphore. */
+  private static final int PERMIT_SIZE = 1024;
+
+  private final Semaphore permits;
+
+  private final int maxPermits;
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes the maximal total size of the files held at the same time
+   */
+  BytesInFlight(final long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("The bytes in flight must be positive: " + maxBytes);
+    }
+    this.maxPermits = (int) Math.min(Integer.MAX_VALUE, toPermits(maxBytes));
+    this.permits = new Semaphore(this.maxPermits, true);
+  }
+
+  /**
+   * Waits until a file of the given size can be held.
+   *
+   * @return the permits taken, to give to {@link #release(int)} once the file is not held anymore
+   */
+  int acquire(final long size) throws InterruptedException {
+    final int filePermits = (int) Math.min(this.maxPermits, toPermits(size));
+    this.permits.acquire(filePermits);
+    return filePermits;
+  }
+
+  /** Gives back the permits taken by {@link #acquire(long)}. */
+  void release(final int filePermits) {
+    this.permits.release(filePermits);
+  }
+
+  /** Returns the permits of the given size, at least one so that empty files are counted too. */
+  private static long toPermits(final long size) {
+    return Math.max(1, (size + PERMIT_SIZE - 1) / PERMIT_SIZE);
+  }
+}
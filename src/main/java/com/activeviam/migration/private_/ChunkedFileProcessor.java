@@ -0,0 +1,298 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.migration.private_.ApiChecker.ChunkedCheck;
+import com.activeviam.migration.private_.FileMigrater.ChunkedMigration;
+import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates and checks a file chunk by chunk, so that the memory it takes is bounded by the size of
+ * a chunk whatever the size of the file.
+ *
+ * <p>Each chunk is read after the part of the previous one which could not be processed yet,
+ * migrated by a {@link ChunkedMigration}, and its migrated bytes are written to a temporary file
+ * and checked by a {@link ChunkedCheck}. The results are the same as processing the whole file at
+ * once.
+ *
+ * <p>The temporary file is only created when the first old import is found, starting with the
+ * unchanged beginning of the file, and replaces the file at the end: files without old imports are
+ * not rewritten.
+ *
+ * @author ActiveViam
+ */
+final class ChunkedFileProcessor {
+
+  /** The migrater of the chunks, {@code null} if the files are only checked. */
+  private final FileMigrater migrater;
+
+  /** The checker of the migrated chunks, {@code null} if the files are only migrated. */
+  private final ApiChecker checker;
+
+  private final BufferPool buffers;
+
+  private final int chunkSize;
+
+  /**
+   * Constructor.
+   *
+   * @param migrater the migrater of the chunks, can be {@code null}
+   * @param checker the checker of the migrated chunks, can be {@code null}
+   * @param buffers the pool of the arrays in which chunks are read
+   * @param chunkSize the number of bytes read at once
+   */
+  ChunkedFileProcessor(
+      final FileMigrater migrater,
+      final ApiChecker checker,
+      final BufferPool buffers,
+      final int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("The chunk size must be positive: " + chunkSize);
+    }
+    this.migrater = migrater;
+    this.checker = checker;
+    this.buffers = buffers;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Whether the given migrater and checker, which can be {@code null}, support chunks. */
+  static boolean canProcessChunks(final FileMigrater migrater, final ApiChecker checker) {
+    return (migrater == null || migrater.canMigrateChunks())
+        && (checker == null || checker.canCheckChunks());
+  }
+
+  /**
+   * Migrates and checks the given file.
+   *
+   * @param hash whether to hash the content of the file after processing
+   */
+  Result process(final Path filePath, final boolean hash) {
+    final ChunkedMigration migration =
+        this.migrater != null ? this.migrater.startChunkedMigration() : null;
+    final ChunkedCheck check =
+        this.checker != null ? this.checker.startChunkedCheck(this.chunkSize) : null;
+    final MessageDigest digest = hash ? MigrationCache.createDigest() : null;
+    final int capacity = this.chunkSize + (migration != null ? migration.getMaxCarryLength() : 0);
+    final byte[] buffer = this.buffers.acquire(capacity);
+    Path temporaryFile = null;
+    FileChannel output = null;
+    long bytesRead = 0;
+    long bytesWritten = 0;
+    try {
+      try (final FileChannel input = FileChannel.open(filePath, StandardOpenOption.READ)) {
+        long chunkOffset = 0;
+        int carryLength = 0;
+        byte[] checkCarry = new byte[0];
+        boolean lastChunk = false;
+        while (!lastChunk) {
+          final ByteBuffer readBuffer =
+              ByteBuffer.wrap(buffer, carryLength, capacity - carryLength);
+          while (readBuffer.hasRemaining() && !lastChunk) {
+            lastChunk = input.read(readBuffer) < 0;
+          }
+          final int length = readBuffer.position();
+          bytesRead += length - carryLength;
+          final ByteContent chunk = new ByteContent(buffer, length);
+
+          final List<ByteBuffer> migrated = new ArrayList<>();
+          final int migratedUntil;
+          if (migration != null) {
+            migratedUntil = migration.migrate(chunk, lastChunk, migrated);
+          } else {
+            migratedUntil = length;
+            chunk.addSlices(0, length, migrated);
+          }
+          final ByteBuffer[] segments = migrated.toArray(ByteBuffer[]::new);
+
+          if (output == null && migration != null && migration.isModified()) {
+            // The file is unchanged until this chunk
+            temporaryFile = MigrationUtils.createReplacementFile(filePath);
+            output = FileChannel.open(temporaryFile, StandardOpenOption.WRITE);
+            transfer(input, chunkOffset, output);
+          }
+          if (output != null) {
+            MigrationUtils.write(output, duplicate(segments));
+          }
+          if (digest != null) {
+            for (final ByteBuffer segment : duplicate(segments)) {
+              digest.update(segment);
+            }
+          }
+          if (check != null) {
+            checkCarry = check(check, checkCarry, segments, lastChunk);
+          }
+
+          // Move the part which is not migrated yet to the start of the array
+          carryLength = length - migratedUntil;
+          System.arraycopy(buffer, migratedUntil, buffer, 0, carryLength);
+          chunkOffset += migratedUntil;
+        }
+      }
+
+      if (output != null) {
+        bytesWritten = output.size();
+        output.close();
+        MigrationUtils.moveReplacementFile(temporaryFile, filePath);
+      }
+    } catch (final IOException | RuntimeException e) {
+      closeQuietly(output);
+      MigrationUtils.deleteQuietly(temporaryFile);
+      throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    } finally {
+      this.buffers.release(buffer);
+    }
+
+    if (migration != null) {
+      migration.finish();
+    }
+    return new Result(
+        temporaryFile != null,
+        digest != null ? MigrationCache.hash(digest) : null,
+        check != null ? check.finish(filePath) : List.of(),
+        migration != null ? migration.getReplacementCount() : 0,
+        bytesRead,
+        bytesWritten);
+  }
+
+  /** Returns the hash of the content of the given file, read chunk by chunk. */
+  String hash(final Path filePath) {
+    final MessageDigest digest = MigrationCache.createDigest();
+    final byte[] buffer = this.buffers.acquire(this.chunkSize);
+    try (final FileChannel input = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      final ByteBuffer readBuffer = ByteBuffer.wrap(buffer, 0, this.chunkSize);
+      while (input.read(readBuffer) >= 0) {
+        digest.update(readBuffer.flip());
+        readBuffer.clear();
+      }
+      return MigrationCache.hash(digest);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      this.buffers.release(buffer);
+    }
+  }
+
+  /**
+   * Checks the given migrated bytes, following the bytes given again by the previous chunk.
+   *
+   * @return the bytes to give again with the next chunk, no more than a chunk or a package root
+   */
+  private static byte[] check(
+      final ChunkedCheck check,
+      final byte[] checkCarry,
+      final ByteBuffer[] segments,
+      final boolean lastChunk) {
+    final ByteBuffer[] checkedSegments = new ByteBuffer[segments.length + 1];
+    checkedSegments[0] = ByteBuffer.wrap(checkCarry);
+    System.arraycopy(segments, 0, checkedSegments, 1, segments.length);
+    final ByteContent content = new ByteContent(checkedSegments);
+    final int carryStart = check.check(content, lastChunk);
+    // Copy the rest, since the array of the chunk is read again
+    return content.toByteArray(carryStart, content.length());
+  }
+
+  /** Copies the first bytes of the given file to the given output. */
+  private static void transfer(final FileChannel input, final long count, final FileChannel output)
+      throws IOException {
+    long transferred = 0;
+    while (transferred < count) {
+      transferred += input.transferTo(transferred, count - transferred, output);
+    }
+  }
+
+  private static ByteBuffer[] duplicate(final ByteBuffer[] buffers) {
+    final ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+    for (int i = 0; i < buffers.length; ++i) {
+      duplicates[i] = buffers[i].duplicate();
+    }
+    return duplicates;
+  }
+
+  private static void closeQuietly(final FileChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (final IOException e) {
+        // Nothing more can be done, the original exception is more relevant
+      }
+    }
+  }
+
+  /**
+   * Result of the processing of a file.
+   *
+   * @author ActiveViam
+   */
+  static final class Result {
+
+    private final boolean rewritten;
+
+    private final String hash;
+
+    private final List<String> apiUsages;
+
+    private final int replacementCount;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private Result(
+        final boolean rewritten,
+        final String hash,
+        final List<String> apiUsages,
+        final int replacementCount,
+        final long bytesRead,
+        final long bytesWritten) {
+      this.rewritten = rewritten;
+      this.hash = hash;
+      this.apiUsages = apiUsages;
+      this.replacementCount = replacementCount;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+    }
+
+    /** Whether the file has been rewritten, because it contained old imports. */
+    boolean isRewritten() {
+      return this.rewritten;
+    }
+
+    /** Returns the hash of the content after processing, {@code null} if it was not asked. */
+    String getHash() {
+      return this.hash;
+    }
+
+    /** Returns the non-public API use found in the file. */
+    List<String> getApiUsages() {
+      return this.apiUsages;
+    }
+
+    /** Returns the number of old imports replaced in the file. */
+    int getReplacementCount() {
+      return this.replacementCount;
+    }
+
+    /** Returns the number of bytes read from the file. */
+    long getBytesRead() {
+      return this.bytesRead;
+    }
+
+    /** Returns the number of bytes written to the replacement file, {@code 0} if not rewritten. */
+    long getBytesWritten() {
+      return this.bytesWritten;
+    }
+  }
+}
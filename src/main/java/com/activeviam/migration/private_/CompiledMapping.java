@@ -0,0 +1,214 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Immutable mapping between old and new imports, sorted by old import, along with the {@link
+ * KeywordAutomaton} of its old imports.
+ *
+ * <p>It is read from a binary artifact generated at build time from a csv mapping, so that neither
+ * the csv file nor the automaton have to be parsed and compiled at startup. The artifact contains
+ * the sorted old and new imports as a single UTF-8 string table, followed by the serialized
+ * automaton. {@link FileMigrater} uses this automaton instead of compiling one.
+ *
+ * @author ActiveViam
+ */
+public final class CompiledMapping extends AbstractMap<String, String> {
+
+  /** Suffix of the artifact of a csv mapping, appended to the name of the csv file. */
+  public static final String ARTIFACT_SUFFIX = ".bin";
+
+  private static final int MAGIC = 0x4A414D54;
+
+  /** To increment each time the format of the artifact or of the automaton changes. */
+  private static final int FORMAT_VERSION = 1;
+
+  private final String[] oldImports;
+
+  private final String[] newImports;
+
+  private final KeywordAutomaton automaton;
+
+  private CompiledMapping(
+      final String[] oldImports, final String[] newImports, final KeywordAutomaton automaton) {
+    this.oldImports = oldImports;
+    this.newImports = newImports;
+    this.automaton = automaton;
+  }
+
+  /**
+   * Writes the artifact of the given mapping.
+   *
+   * <p>The automaton is compiled from the old imports in the iteration order of the mapping, which
+   * must be sorted.
+   */
+  public static void write(final SortedMap<String, String> mapping, final OutputStream output)
+      throws IOException {
+    if (mapping.comparator() != null) {
+      throw new IllegalArgumentException("The mapping must be sorted in natural order");
+    }
+    final int size = mapping.size();
+    final byte[][] strings = new byte[2 * size][];
+    int index = 0;
+    for (final Map.Entry<String, String> entry : mapping.entrySet()) {
+      strings[index++] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      strings[index++] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+    }
+
+    final DataOutputStream dataOutput = new DataOutputStream(new BufferedOutputStream(output));
+    dataOutput.writeInt(MAGIC);
+    dataOutput.writeInt(FORMAT_VERSION);
+    dataOutput.writeInt(size);
+    int offset = 0;
+    dataOutput.writeInt(offset);
+    for (final byte[] string : strings) {
+      offset += string.length;
+      dataOutput.writeInt(offset);
+    }
+    for (final byte[] string : strings) {
+      dataOutput.write(string);
+    }
+    KeywordAutomaton.compile(mapping.keySet()).write(dataOutput);
+    dataOutput.flush();
+  }
+
+  /**
+   * Loads the artifact of the given resource, memory-mapping it when it is a plain file.
+   *
+   * @return the mapping, or {@code null} if there is no artifact or if it has been generated with
+   *     another format
+   */
+  public static CompiledMapping loadResource(final String resourcePath) {
+    final URL url = Thread.currentThread().getContextClassLoader().getResource(resourcePath);
+    if (url == null) {
+      return null;
+    }
+    try {
+      return read(readResource(url));
+    } catch (final IOException | URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static ByteBuffer readResource(final URL url) throws IOException, URISyntaxException {
+    if ("file".equals(url.getProtocol())) {
+      try (final FileChannel channel =
+          FileChannel.open(Path.of(url.toURI()), StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+    // Resources in a jar cannot be mapped
+    try (final InputStream input = url.openStream()) {
+      return ByteBuffer.wrap(input.readAllBytes());
+    }
+  }
+
+  /** Reads an artifact written by {@link #write(SortedMap, OutputStream)}. */
+  static CompiledMapping read(final ByteBuffer buffer) {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+      return null;
+    }
+    final int size = buffer.getInt();
+    final int[] offsets = new int[2 * size + 1];
+    buffer.asIntBuffer().get(offsets);
+    buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+
+    final byte[] table = new byte[offsets[2 * size]];
+    buffer.get(table);
+    final String[] oldImports = new String[size];
+    final String[] newImports = new String[size];
+    for (int i = 0; i < size; ++i) {
+      oldImports[i] = decode(table, offsets[2 * i], offsets[2 * i + 1]);
+      newImports[i] = decode(table, offsets[2 * i + 1], offsets[2 * i + 2]);
+    }
+    return new CompiledMapping(oldImports, newImports, KeywordAutomaton.read(buffer));
+  }
+
+  private static String decode(final byte[] table, final int from, final int to) {
+    return new String(table, from, to - from, StandardCharsets.UTF_8);
+  }
+
+  /** Returns the automaton of the old imports, in the iteration order of this mapping. */
+  KeywordAutomaton getAutomaton() {
+    return this.automaton;
+  }
+
+  @Override
+  public int size() {
+    return this.oldImports.length;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return key instanceof String && Arrays.binarySearch(this.oldImports, key) >= 0;
+  }
+
+  @Override
+  public String get(final Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    final int index = Arrays.binarySearch(this.oldImports, key);
+    return index >= 0 ? this.newImports[index] : null;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<>() {
+
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return this.index < CompiledMapping.this.oldImports.length;
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            final int current = this.index++;
+            return new SimpleImmutableEntry<>(
+                CompiledMapping.this.oldImports[current], CompiledMapping.this.newImports[current]);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return CompiledMapping.this.oldImports.length;
+      }
+    };
+  }
+}
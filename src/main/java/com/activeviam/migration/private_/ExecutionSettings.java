@@ -0,0 +1,177 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+/**
+ * Settings of the stages of a streamed {@link MigrationPipeline}.
+ *
+ * @author ActiveViam
+ */
+public class ExecutionSettings {
+
+  /** Default number of threads reading files, higher than the CPUs to overlap I/O latencies. */
+  public static final int DEFAULT_READ_THREADS = 4;
+
+  /** Default number of threads migrating and checking file contents. */
+  public static final int DEFAULT_PROCESS_THREADS = Runtime.getRuntime().availableProcessors();
+
+  /** Default number of threads writing migrated files. */
+  public static final int DEFAULT_WRITE_THREADS = 2;
+
+  /**
+   * Default number of virtual threads reading or writing files, only limited to bound the number of
+   * file contents in memory.
+   */
+  public static final int DEFAULT_VIRTUAL_IO_THREADS = 64;
+
+  /** Default maximal number of files waiting in front of each stage. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  /** Default size in bytes from which files are processed in chunks. */
+  public static final long DEFAULT_CHUNKED_FILE_SIZE = 64L * 1024 * 1024;
+
+  /** Default number of bytes of a chunk of a file processed in chunks. */
+  public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private final int readThreads;
+
+  private final int processThreads;
+
+  private final int writeThreads;
+
+  private final int queueCapacity;
+
+  private final IoThreadMode ioThreadMode;
+
+  private final long chunkedFileSize;
+
+  private final int chunkSize;
+
+  /** Constructor, with {@link IoThreadMode#PLATFORM platform} threads reading and writing files. */
+  public ExecutionSettings(
+      final int readThreads,
+      final int processThreads,
+      final int writeThreads,
+      final int queueCapacity) {
+    this(readThreads, processThreads, writeThreads, queueCapacity, IoThreadMode.PLATFORM);
+  }
+
+  /** Constructor, with the default sizes of the files processed in chunks. */
+  public ExecutionSettings(
+      final int readThreads,
+      final int processThreads,
+      final int writeThreads,
+      final int queueCapacity,
+      final IoThreadMode ioThreadMode) {
+    this(
+        readThreads,
+        processThreads,
+        writeThreads,
+        queueCapacity,
+        ioThreadMode,
+        DEFAULT_CHUNKED_FILE_SIZE,
+        DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param chunkedFileSize the size in bytes from which files are processed in chunks, so that the
+   *     memory they take is bounded by the chunk size
+   * @param chunkSize the number of bytes of a chunk
+   */
+  public ExecutionSettings(
+      final int readThreads,
+      final int processThreads,
+      final int writeThreads,
+      final int queueCapacity,
+      final IoThreadMode ioThreadMode,
+      final long chunkedFileSize,
+      final int chunkSize) {
+    checkPositive("read threads", readThreads);
+    checkPositive("process threads", processThreads);
+    checkPositive("write threads", writeThreads);
+    checkPositive("queue capacity", queueCapacity);
+    this.readThreads = readThreads;
+    this.processThreads = processThreads;
+    this.writeThreads = writeThreads;
+    this.queueCapacity = queueCapacity;
+    this.ioThreadMode = ioThreadMode;
+    if (chunkedFileSize <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException(
+          "The chunked file size and the chunk size must be positive: "
+              + chunkedFileSize
+              + ", "
+              + chunkSize);
+    }
+    this.chunkedFileSize = chunkedFileSize;
+    this.chunkSize = chunkSize;
+  }
+
+  private static void checkPositive(final String name, final int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("The number of " + name + " must be positive: " + value);
+    }
+  }
+
+  /** Returns the number of threads reading files. */
+  public int getReadThreads() {
+    return this.readThreads;
+  }
+
+  /** Returns the number of threads migrating and checking file contents. */
+  public int getProcessThreads() {
+    return this.processThreads;
+  }
+
+  /** Returns the number of threads writing migrated files. */
+  public int getWriteThreads() {
+    return this.writeThreads;
+  }
+
+  /** Returns the maximal number of files waiting in front of each stage. */
+  public int getQueueCapacity() {
+    return this.queueCapacity;
+  }
+
+  /** Returns the kind of threads reading and writing files. */
+  public IoThreadMode getIoThreadMode() {
+    return this.ioThreadMode;
+  }
+
+  /** Returns the size in bytes from which files are processed in chunks. */
+  public long getChunkedFileSize() {
+    return this.chunkedFileSize;
+  }
+
+  /** Returns the number of bytes of a chunk of a file processed in chunks. */
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  /**
+   * Kind of threads reading and writing files.
+   *
+   * <p>Files are always migrated and checked by platform threads, since this is CPU-bound.
+   *
+   * @author ActiveViam
+   */
+  public enum IoThreadMode {
+
+    /** Platform threads, the number of threads of the read and write stages being kept low. */
+    PLATFORM,
+
+    /**
+     * Virtual threads, which do not hold a platform thread while they wait for the disk, so that
+     * the read and write stages can have many of them on slow or network file systems.
+     *
+     * <p>Falls back to platform threads on Java versions without virtual threads.
+     */
+    VIRTUAL
+  }
+}
@@ -7,25 +7,50 @@
 
 package com.activeviam.migration.private_;
 
+import com.activeviam.migration.private_.KeywordAutomaton.KeywordMatcher;
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
 import com.activeviam.util.private_.MigrationUtils;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * {@link #migrateFiles(List, Map) Migrate files} between two versions.
  *
+ * <p>The old imports of the mapping are searched with a {@link KeywordAutomaton}, so that the time
+ * spent on each file does not depend on the size of the mapping. The automaton of a {@link
+ * CompiledMapping} is used as is. With the {@link MatchingEngine#LEXER lexer} engine, the tokens of
+ * the content are looked up in a {@link KeywordTable} instead.
+ *
+ * <p>When the old imports are ASCII, which java names almost always are, files are migrated as
+ * {@link ByteContent bytes}: they are read in pooled arrays, searched without being decoded, and
+ * written back from their unchanged ranges and the encoded new imports. Large files are migrated in
+ * chunks by a {@link ChunkedFileProcessor}, so that the memory they take is bounded.
+ *
  * @author ActiveViam
  */
-public class FileMigrater extends AFilesProcessor {
+public class FileMigrater extends AFilesProcessor<KeywordAutomaton> {
 
   private static final String NAME = "MIGRATION";
 
-  private final Map<String, String> mapping;
+  /** New imports, in the order of the keywords of the automaton. */
+  private final String[] replacements;
+
+  /** New imports encoded in UTF-8, in the same order. */
+  private final byte[][] encodedReplacements;
+
+  /** Whether the old imports are ASCII, so that they can be searched in the bytes of a content. */
+  private final boolean asciiOldImports;
+
+  private final MatchingSettings settings;
+
+  /** Old imports, only for the {@link MatchingEngine#LEXER lexer} engine. */
+  private final KeywordTable oldImports;
 
   /** Migrates the given files according to the given mapping between old and new imports. */
   public static PatternMatcherInfo migrateFiles(
@@ -38,65 +63,324 @@ public class FileMigrater extends AFilesProcessor {
     return migrater.info;
   }
 
-  private FileMigrater(final List<Path> files, final Map<String, String> mapping) {
-    super(NAME, files, mapping.keySet());
-    this.mapping = mapping;
+  FileMigrater(final List<Path> files, final Map<String, String> mapping) {
+    this(files, mapping, MatchingSettings.DEFAULT);
   }
 
-  @Override
-  protected Pattern createPattern(final Set<String> patternsToMatch) {
-    final String patternString =
-        "("
-            + String.join("|", patternsToMatch)
-            + ")("
-            + ALL_EXCEPT_ALPHANUMERIC_AND_UNDERSCORE
-            + ")";
-    return Pattern.compile(patternString);
+  FileMigrater(
+      final List<Path> files, final Map<String, String> mapping, final MatchingSettings settings) {
+    super(
+        NAME,
+        files,
+        createAutomaton(mapping, settings),
+        ReferencePrefilter.ofQualifiedNames(mapping.keySet()));
+    // Values are iterated in the same order as the keys the automaton has been compiled from
+    this.replacements = mapping.values().toArray(String[]::new);
+    this.encodedReplacements = new byte[this.replacements.length][];
+    for (int i = 0; i < this.replacements.length; ++i) {
+      this.encodedReplacements[i] = this.replacements[i].getBytes(StandardCharsets.UTF_8);
+    }
+    this.asciiOldImports = mapping.keySet().stream().allMatch(FileMigrater::isAscii);
+    this.settings = settings;
+    this.oldImports =
+        settings.getEngine() == MatchingEngine.LEXER ? new KeywordTable(mapping.keySet()) : null;
+  }
+
+  /** Returns the automaton of the old imports, {@code null} if the engine does not use it. */
+  private static KeywordAutomaton createAutomaton(
+      final Map<String, String> mapping, final MatchingSettings settings) {
+    if (settings.getEngine() == MatchingEngine.LEXER) {
+      return null;
+    }
+    return mapping instanceof CompiledMapping
+        ? ((CompiledMapping) mapping).getAutomaton()
+        : KeywordAutomaton.compile(mapping.keySet());
+  }
+
+  private static boolean isAscii(final String name) {
+    return name.chars().allMatch(c -> c < 0x80);
+  }
+
+  /** Whether the contents can be migrated as {@link ByteContent bytes}. */
+  boolean canMigrateBytes() {
+    return this.asciiOldImports;
   }
 
   @Override
-  protected void processFile(final Path filePath) {
-    final Matcher matcher = createMatcher(filePath);
-    final String newContent = processMatcher(matcher);
-    MigrationUtils.replaceFileContent(filePath.toFile(), newContent);
-  }
-
-  private String processMatcher(final Matcher matcher) {
-    final StringBuilder stringBuffer = new StringBuilder();
-    int matchingCounter = 0;
-
-    while (matcher.find()) {
-      /*
-       * There is a bug if there is a backslash at the end of a String to replace in the file. It
-       * causes this backslash to appear at the end of the replacement String, which throws an
-       * IllegalArgumentException in Matcher#appendReplacement(StringBuilder, String). So we need to
-       * check for this backslash every time and remove it from the replacement String to add it at
-       * the end of the stringBuffer after the replacement has been appended.
-       */
-      String replacement = computeReplacementString(matcher);
-      final boolean endWithBackslash = replacement.endsWith("\\");
-      if (endWithBackslash) {
-        // Remove the ending backslash from the replacement String
-        replacement = replacement.substring(0, replacement.length() - 1);
+  protected int processFile(final Path filePath) {
+    // Files without any old import are not rewritten, so that their timestamp does not change
+    if (!this.asciiOldImports) {
+      final String content = MigrationUtils.getFileContent(filePath);
+      final Replacements replacements = findReplacements(content);
+      if (replacements != null) {
+        MigrationUtils.replaceFileContent(filePath, migrateContent(content, replacements));
+      }
+      return Replacements.count(replacements);
+    }
+    if (canMigrateChunks() && isChunkedFile(filePath)) {
+      return createChunkedFileProcessor(this, null).process(filePath, false).getReplacementCount();
+    }
+    final ByteBuffer buffer = MigrationUtils.readFileContent(filePath, this.buffers::acquire);
+    try {
+      final ByteContent content = new ByteContent(buffer);
+      final Replacements replacements = findReplacements(content);
+      if (replacements != null) {
+        MigrationUtils.replaceFileContent(
+            filePath, migrateContent(content, replacements).getSegments());
+      }
+      return Replacements.count(replacements);
+    } finally {
+      this.buffers.release(buffer.array());
+    }
+  }
+
+  /**
+   * Migrates the given file content in memory.
+   *
+   * @return the migrated content, or {@code null} if the content does not contain any old import
+   */
+  String migrateContent(final String content) {
+    return migrateContent(content, findReplacements(content));
+  }
+
+  /**
+   * Migrates the given file content in memory, replacing the given old imports found in it.
+   *
+   * @return the migrated content, or {@code null} if there are no old imports to replace
+   */
+  String migrateContent(final String content, final Replacements replacements) {
+    if (replacements == null) {
+      return null;
+    }
+    final StringBuilder stringBuffer = new StringBuilder(content.length());
+    int copiedUntil = 0;
+    for (int i = 0; i < replacements.size; i += Replacements.FIELDS) {
+      stringBuffer
+          .append(content, copiedUntil, replacements.values[i])
+          .append(this.replacements[replacements.values[i + 2]]);
+      copiedUntil = replacements.values[i + 1];
+    }
+    stringBuffer.append(content, copiedUntil, content.length());
+    return stringBuffer.toString();
+  }
+
+  /**
+   * Migrates the given file content in memory, without copying it: the migrated content is made of
+   * the unchanged ranges of the given one and of the new imports.
+   *
+   * <p>It must only be called if the contents {@link #canMigrateBytes() can be migrated as bytes}.
+   *
+   * @return the migrated content, or {@code null} if the content does not contain any old import
+   */
+  ByteContent migrateContent(final ByteContent content) {
+    return migrateContent(content, findReplacements(content));
+  }
+
+  /**
+   * Migrates the given file content as {@link #migrateContent(ByteContent)} does, replacing the
+   * given old imports found in it.
+   *
+   * @return the migrated content, or {@code null} if there are no old imports to replace
+   */
+  ByteContent migrateContent(final ByteContent content, final Replacements replacements) {
+    if (replacements == null) {
+      return null;
+    }
+    final List<ByteBuffer> segments = new ArrayList<>(2 * replacements.size / Replacements.FIELDS);
+    int copiedUntil = 0;
+    for (int i = 0; i < replacements.size; i += Replacements.FIELDS) {
+      content.addSlices(copiedUntil, replacements.values[i], segments);
+      segments.add(ByteBuffer.wrap(this.encodedReplacements[replacements.values[i + 2]]));
+      copiedUntil = replacements.values[i + 1];
+    }
+    content.addSlices(copiedUntil, content.length(), segments);
+    return new ByteContent(segments.toArray(ByteBuffer[]::new));
+  }
+
+  /** Whether the contents can be migrated {@link ChunkedMigration in chunks}. */
+  boolean canMigrateChunks() {
+    return this.asciiOldImports && this.pattern != null;
+  }
+
+  /**
+   * Starts the migration of a content read in chunks, which must only be called if the contents
+   * {@link #canMigrateChunks() can be migrated in chunks}.
+   */
+  ChunkedMigration startChunkedMigration() {
+    return new ChunkedMigration();
+  }
+
+  /**
+   * Finds the old imports of the given content to replace, counting the content as modified if
+   * there are some.
+   *
+   * @return the old imports, or {@code null} if the content does not contain any
+   */
+  Replacements findReplacements(final CharSequence content) {
+    if (!mayMatch(content)) {
+      return null;
+    }
+    final Replacements replacements;
+    if (this.oldImports != null) {
+      replacements = findTokenReplacements(content);
+    } else {
+      replacements = findMatcherReplacements(this.pattern.matcher(content));
+    }
+    if (replacements != null) {
+      this.info.incrementModifiedFiles();
+      this.info.addToMatchingCounter(replacements.size / Replacements.FIELDS);
+    }
+    return replacements;
+  }
+
+  private static Replacements findMatcherReplacements(final KeywordMatcher matcher) {
+    if (!matcher.find()) {
+      return null;
+    }
+    final Replacements replacements = new Replacements();
+    do {
+      // The character following the old import is not part of the match, it is copied as is
+      replacements.add(matcher.start(), matcher.end(), matcher.keywordIndex());
+    } while (matcher.find());
+    return replacements;
+  }
+
+  /**
+   * Finds the old imports of the given content with the {@link MatchingEngine#LEXER lexer} engine:
+   * the old import at the start of each token is replaced, the shortest one if several match.
+   *
+   * @return the old imports, or {@code null} if the content does not contain any
+   */
+  private Replacements findTokenReplacements(final CharSequence content) {
+    final JavaTokenScanner scanner =
+        new JavaTokenScanner(
+            content, this.settings.isScanComments(), this.settings.isScanStrings());
+    final int minLength = this.oldImports.getMinKeywordLength();
+    final int maxLength = this.oldImports.getMaxKeywordLength();
+    Replacements replacements = null;
+
+    while (scanner.next()) {
+      final int start = scanner.start();
+      final int end = scanner.end();
+      if (end - start < minLength) {
+        continue;
+      }
+      // An old import is the whole token or is followed by a dot, as in a static import
+      final int limit = Math.min(end, start + maxLength);
+      int hash = 0;
+      for (int i = start; i <= limit; ++i) {
+        final char c = i < end ? content.charAt(i) : 0;
+        if (i == end || c == '.') {
+          final int index =
+              i - start >= minLength ? this.oldImports.find(content, start, i, hash) : -1;
+          if (index >= 0) {
+            if (replacements == null) {
+              replacements = new Replacements();
+            }
+            replacements.add(start, i, index);
+            break;
+          }
+        }
+        hash = 31 * hash + c;
       }
+    }
+
+    return replacements;
+  }
+
+  /**
+   * Migration of a content read in chunks, replacing the same old imports as the migration of the
+   * whole content.
+   *
+   * <p>An old import is only replaced once the longest old import can be read from its start: the
+   * end of a chunk which could start an old import continuing in the next chunk is not migrated,
+   * and must be given again at the start of the next chunk. It is not thread-safe.
+   *
+   * @author ActiveViam
+   */
+  final class ChunkedMigration {
 
-      matcher.appendReplacement(stringBuffer, replacement);
+    private int replacementCount;
 
-      if (endWithBackslash) {
-        // Re-add the ending backslash after replacement
-        stringBuffer.append("\\");
+    private ChunkedMigration() {}
+
+    /** Returns the maximal length of the end of a chunk which is not migrated. */
+    int getMaxCarryLength() {
+      return FileMigrater.this.pattern.getMaxKeywordLength();
+    }
+
+    /**
+     * Migrates the given chunk, adding the buffers of its migrated bytes to the given list.
+     *
+     * @param lastChunk whether the chunk ends the content, so that it is migrated until its end
+     * @return the index from which the chunk is not migrated
+     */
+    int migrate(final ByteContent chunk, final boolean lastChunk, final List<ByteBuffer> migrated) {
+      final int length = chunk.length();
+      final int safeEnd = lastChunk ? length : Math.max(0, length - getMaxCarryLength());
+      final KeywordMatcher matcher = FileMigrater.this.pattern.matcher(chunk);
+      int copiedUntil = 0;
+      int migratedUntil = safeEnd;
+      while (matcher.find() && matcher.start() < safeEnd) {
+        chunk.addSlices(copiedUntil, matcher.start(), migrated);
+        migrated.add(
+            ByteBuffer.wrap(FileMigrater.this.encodedReplacements[matcher.keywordIndex()]));
+        copiedUntil = matcher.end();
+        // The search goes on after the character following the old import
+        migratedUntil = Math.max(safeEnd, matcher.end() + 1);
+        ++this.replacementCount;
       }
+      chunk.addSlices(copiedUntil, migratedUntil, migrated);
+      return migratedUntil;
+    }
 
-      ++matchingCounter;
+    /** Whether an old import has been replaced so far. */
+    boolean isModified() {
+      return this.replacementCount > 0;
     }
-    matcher.appendTail(stringBuffer);
 
-    this.info.addToMatchingCounter(matchingCounter);
+    /** Returns the number of old imports replaced so far. */
+    int getReplacementCount() {
+      return this.replacementCount;
+    }
 
-    return stringBuffer.toString();
+    /** Ends the migration, once the last chunk is migrated. */
+    void finish() {
+      if (isModified()) {
+        FileMigrater.this.info.incrementModifiedFiles();
+        FileMigrater.this.info.addToMatchingCounter(this.replacementCount);
+      }
+    }
   }
 
-  private String computeReplacementString(final Matcher matcher) {
-    return this.mapping.get(matcher.group(1)).concat(matcher.group(2));
+  /**
+   * Old imports found in a content, in increasing order: start, end and index of the new import of
+   * each one.
+   *
+   * @author ActiveViam
+   */
+  static final class Replacements {
+
+    private static final int FIELDS = 3;
+
+    private int[] values = new int[8 * FIELDS];
+
+    private int size = 0;
+
+    private Replacements() {}
+
+    /** Returns the number of old imports of the given replacements, which can be {@code null}. */
+    static int count(final Replacements replacements) {
+      return replacements != null ? replacements.size / FIELDS : 0;
+    }
+
+    private void add(final int start, final int end, final int replacementIndex) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+      }
+      this.values[this.size++] = start;
+      this.values[this.size++] = end;
+      this.values[this.size++] = replacementIndex;
+    }
   }
 }
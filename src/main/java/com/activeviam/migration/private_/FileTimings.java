@@ -0,0 +1,151 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Processing times of the files of a {@link SizeAwareScheduler} run, or of the files streamed
+ * through a {@link MigrationPipeline}, showing how the work was balanced between its threads.
+ *
+ * <p>Each file is recorded by the thread which processed it, the times must only be read once the
+ * run is over.
+ *
+ * @author ActiveViam
+ */
+final class FileTimings {
+
+  private Path[] files;
+
+  private long[] sizes;
+
+  private long[] fileNanos;
+
+  /** Number of files, the arrays growing when files are {@link #add added}. */
+  private int fileCount;
+
+  /** Time each thread spent processing files. */
+  private final long[] threadNanos;
+
+  /**
+   * Constructor.
+   *
+   * @param files the files to process
+   * @param sizes the sizes of the files, in bytes
+   * @param threads the number of threads processing the files
+   */
+  FileTimings(final Path[] files, final long[] sizes, final int threads) {
+    this.files = files;
+    this.sizes = sizes;
+    this.fileNanos = new long[files.length];
+    this.fileCount = files.length;
+    this.threadNanos = new long[threads];
+  }
+
+  /**
+   * Creates the timings of files which are not known in advance, {@link #add added} as they are
+   * processed.
+   *
+   * @param threads the number of threads processing the files
+   */
+  FileTimings(final int threads) {
+    this(new Path[0], new long[0], threads);
+  }
+
+  /** Returns the number of files. */
+  int size() {
+    return this.fileCount;
+  }
+
+  /** Returns the file of the given index. */
+  Path getFile(final int file) {
+    return this.files[file];
+  }
+
+  /** Returns the size in bytes of the file of the given index. */
+  long getSize(final int file) {
+    return this.sizes[file];
+  }
+
+  /** Records that the given thread processed the file of the given index in the given time. */
+  void record(final int file, final int thread, final long nanos) {
+    this.fileNanos[file] = nanos;
+    this.threadNanos[thread] += nanos;
+  }
+
+  /** Adds a file of the given size, processed by the given thread in the given time. */
+  synchronized void add(final Path file, final long size, final int thread, final long nanos) {
+    if (this.fileCount == this.files.length) {
+      final int capacity = Math.max(16, 2 * this.fileCount);
+      this.files = Arrays.copyOf(this.files, capacity);
+      this.sizes = Arrays.copyOf(this.sizes, capacity);
+      this.fileNanos = Arrays.copyOf(this.fileNanos, capacity);
+    }
+    this.files[this.fileCount] = file;
+    this.sizes[this.fileCount] = size;
+    this.fileNanos[this.fileCount] = nanos;
+    ++this.fileCount;
+    this.threadNanos[thread] += nanos;
+  }
+
+  /** Returns the processing time of the file of the given index. */
+  Duration getTime(final int file) {
+    return Duration.ofNanos(this.fileNanos[file]);
+  }
+
+  /** Returns the processing time below which are the given percentile of the files. */
+  Duration getPercentileTime(final double percentile) {
+    if (this.fileCount == 0) {
+      return Duration.ZERO;
+    }
+    final long[] sorted = Arrays.copyOf(this.fileNanos, this.fileCount);
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return Duration.ofNanos(sorted[Math.max(0, Math.min(sorted.length - 1, index))]);
+  }
+
+  /** Returns the index of the slowest file, {@code -1} if there are none. */
+  int getSlowestFile() {
+    int slowest = -1;
+    for (int i = 0; i < this.fileCount; ++i) {
+      if (slowest < 0 || this.fileNanos[i] > this.fileNanos[slowest]) {
+        slowest = i;
+      }
+    }
+    return slowest;
+  }
+
+  /**
+   * Returns the time of the busiest thread divided by the mean time of the threads, {@code 1} when
+   * the work is perfectly balanced.
+   */
+  double getImbalance() {
+    final long total = Arrays.stream(this.threadNanos).sum();
+    if (total == 0) {
+      return 1;
+    }
+    final long max = Arrays.stream(this.threadNanos).max().orElse(0);
+    return (double) max * this.threadNanos.length / total;
+  }
+
+  @Override
+  public String toString() {
+    final int slowest = getSlowestFile();
+    return "p50 "
+        + getPercentileTime(50)
+        + ", p99 "
+        + getPercentileTime(99)
+        + ", max "
+        + (slowest < 0 ? Duration.ZERO : getTime(slowest))
+        + (slowest < 0 ? "" : " (" + this.files[slowest] + ", " + this.sizes[slowest] + " bytes)")
+        + ", thread imbalance "
+        + String.format("%.2f", getImbalance());
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+/**
+ * Splits java source code into qualified name tokens, the maximal sequences of {@code
+ * [A-Za-z0-9_.]} characters, in a single pass and without allocating.
+ *
+ * <p>The scanner knows the boundaries of comments, string literals, text blocks and character
+ * literals, so that their content can be skipped, and so that quotes in comments or comment
+ * delimiters in strings are not misread. Escape sequences in literals split tokens.
+ *
+ * <p>It is not thread-safe, use one scanner per text.
+ *
+ * @author ActiveViam
+ */
+final class JavaTokenScanner {
+
+  private final CharSequence text;
+
+  private final int length;
+
+  private final boolean scanComments;
+
+  private final boolean scanStrings;
+
+  private int position = 0;
+
+  /** End of the comment or literal being scanned, before {@link #position} in code. */
+  private int regionEnd = 0;
+
+  /** Whether the region being scanned is a literal, in which backslashes escape a character. */
+  private boolean literalRegion;
+
+  private int start = -1;
+
+  private int end = -1;
+
+  /**
+   * Constructor.
+   *
+   * @param scanComments whether the tokens of comments are returned
+   * @param scanStrings whether the tokens of string, text block and character literals are returned
+   */
+  JavaTokenScanner(final CharSequence text, final boolean scanComments, final boolean scanStrings) {
+    this.text = text;
+    this.length = text.length();
+    this.scanComments = scanComments;
+    this.scanStrings = scanStrings;
+  }
+
+  /**
+   * Finds the next token.
+   *
+   * @return whether a token has been found
+   */
+  boolean next() {
+    final CharSequence text = this.text;
+    int i = this.position;
+    while (i < this.length) {
+      final char c = text.charAt(i);
+      if (isTokenCharacter(c)) {
+        final int limit = i < this.regionEnd ? this.regionEnd : this.length;
+        final int tokenStart = i;
+        do {
+          ++i;
+        } while (i < limit && isTokenCharacter(text.charAt(i)));
+        this.start = tokenStart;
+        this.end = i;
+        this.position = i;
+        return true;
+      }
+
+      if (i < this.regionEnd) {
+        // In a scanned comment or literal, only its end matters
+        i += c == '\\' && this.literalRegion ? 2 : 1;
+      } else if (c == '/' && i + 1 < this.length && text.charAt(i + 1) == '/') {
+        i = enterRegion(i + 2, skipLineComment(i + 2), this.scanComments, false);
+      } else if (c == '/' && i + 1 < this.length && text.charAt(i + 1) == '*') {
+        i = enterRegion(i + 2, skipBlockComment(i + 2), this.scanComments, false);
+      } else if (c == '"' && isTextBlockStart(i)) {
+        i = enterRegion(i + 3, skipLiteral(i + 3, '"', true), this.scanStrings, true);
+      } else if (c == '"' || c == '\'') {
+        i = enterRegion(i + 1, skipLiteral(i + 1, c, false), this.scanStrings, true);
+      } else {
+        ++i;
+      }
+    }
+    this.position = this.length;
+    this.start = -1;
+    this.end = -1;
+    return false;
+  }
+
+  /** Returns the start index of the last token found. */
+  int start() {
+    return this.start;
+  }
+
+  /** Returns the index after the last character of the last token found. */
+  int end() {
+    return this.end;
+  }
+
+  /** Whether the given character can be part of a qualified name token. */
+  static boolean isTokenCharacter(final char c) {
+    return KeywordAutomaton.isWordCharacter(c) || c == '.';
+  }
+
+  /** Returns where to continue scanning a comment or literal in {@code [from, to)}. */
+  private int enterRegion(
+      final int from, final int to, final boolean scanned, final boolean literal) {
+    if (!scanned) {
+      return to;
+    }
+    this.regionEnd = to;
+    this.literalRegion = literal;
+    return from;
+  }
+
+  private boolean isTextBlockStart(final int index) {
+    return index + 2 < this.length
+        && this.text.charAt(index + 1) == '"'
+        && this.text.charAt(index + 2) == '"';
+  }
+
+  /** Returns the index of the line break ending the line comment starting at the given index. */
+  private int skipLineComment(int index) {
+    while (index < this.length
+        && this.text.charAt(index) != '\n'
+        && this.text.charAt(index) != '\r') {
+      ++index;
+    }
+    return index;
+  }
+
+  /** Returns the index after the block comment whose content starts at the given index. */
+  private int skipBlockComment(int index) {
+    while (index + 1 < this.length) {
+      if (this.text.charAt(index) == '*' && this.text.charAt(index + 1) == '/') {
+        return index + 2;
+      }
+      ++index;
+    }
+    return this.length;
+  }
+
+  /**
+   * Returns the index after the literal whose content starts at the given index, or the index of
+   * the line break ending an unterminated one-line literal.
+   */
+  private int skipLiteral(int index, final char quote, final boolean textBlock) {
+    while (index < this.length) {
+      final char c = this.text.charAt(index);
+      if (c == '\\') {
+        index += 2;
+      } else if (c == quote && (!textBlock || isTextBlockStart(index))) {
+        return index + (textBlock ? 3 : 1);
+      } else if (!textBlock && (c == '\n' || c == '\r')) {
+        return index;
+      } else {
+        ++index;
+      }
+    }
+    return this.length;
+  }
+}
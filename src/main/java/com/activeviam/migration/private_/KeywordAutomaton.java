@@ -0,0 +1,423 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.util.private_.FlightEvents.PatternCompiled;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding the occurrences of a set of keywords in a text in linear time,
+ * whatever the number of keywords.
+ *
+ * <p>It finds the same occurrences as the regular expression {@code (k1|k2|...)([^A-Za-z0-9_])}
+ * where keywords are taken literally: a keyword must be followed by a character which is not
+ * alphanumeric or underscore, the leftmost occurrence wins, and between occurrences starting at the
+ * same position the first keyword in iteration order wins. The following character is consumed by
+ * the occurrence, the search starts again right after it.
+ *
+ * <p>This class is immutable and thread-safe, use {@link #matcher(CharSequence)} to search a text.
+ *
+ * @author ActiveViam
+ */
+public final class KeywordAutomaton {
+
+  private static final int ROOT = 0;
+
+  private static final int NO_NODE = -1;
+
+  private static final int ASCII_SIZE = 128;
+
+  /** Children of node {@code n} are stored in {@code [childOffsets[n], childOffsets[n + 1])}. */
+  private final int[] childOffsets;
+
+  /** Labels of the children, sorted for each node. */
+  private final char[] childLabels;
+
+  private final int[] childTargets;
+
+  /** Dense transitions of the root for ASCII characters, most of the text is read from there. */
+  private final int[] rootTransitions;
+
+  private final int[] failures;
+
+  private final int[] depths;
+
+  /** Index of the keyword ending at each node, or {@link #NO_NODE}. */
+  private final int[] keywordIndices;
+
+  /** Closest node along the failure links that ends a keyword, or {@link #NO_NODE}. */
+  private final int[] outputLinks;
+
+  private final int keywordCount;
+
+  private final int maxKeywordLength;
+
+  private KeywordAutomaton(
+      final int[] childOffsets,
+      final char[] childLabels,
+      final int[] childTargets,
+      final int[] failures,
+      final int[] depths,
+      final int[] keywordIndices,
+      final int[] outputLinks,
+      final int keywordCount,
+      final int maxKeywordLength) {
+    this.childOffsets = childOffsets;
+    this.childLabels = childLabels;
+    this.childTargets = childTargets;
+    this.failures = failures;
+    this.depths = depths;
+    this.keywordIndices = keywordIndices;
+    this.outputLinks = outputLinks;
+    this.keywordCount = keywordCount;
+    this.maxKeywordLength = maxKeywordLength;
+    this.rootTransitions = new int[ASCII_SIZE];
+    for (char c = 0; c < ASCII_SIZE; ++c) {
+      final int child = findChild(ROOT, c);
+      this.rootTransitions[c] = child == NO_NODE ? ROOT : child;
+    }
+  }
+
+  /**
+   * Compiles an automaton from the given keywords, each keyword being identified by its index in
+   * the iteration order of the collection. Empty keywords are ignored.
+   */
+  public static KeywordAutomaton compile(final Collection<String> keywords) {
+    final PatternCompiled event = new PatternCompiled();
+    event.begin();
+    final String[] keywordArray = keywords.toArray(String[]::new);
+
+    // Insert the keywords in lexicographic order so that the trie is built depth first, and the
+    // children of each node are created in increasing label order
+    final Integer[] sortedIndices = new Integer[keywordArray.length];
+    int totalLength = 0;
+    int maxKeywordLength = 0;
+    for (int i = 0; i < keywordArray.length; ++i) {
+      sortedIndices[i] = i;
+      totalLength += keywordArray[i].length();
+      maxKeywordLength = Math.max(maxKeywordLength, keywordArray[i].length());
+    }
+    Arrays.sort(
+        sortedIndices,
+        Comparator.<Integer, String>comparing(i -> keywordArray[i]).thenComparing(i -> i));
+
+    final int maxNodes = totalLength + 1;
+    final int[] parents = new int[maxNodes];
+    final char[] labels = new char[maxNodes];
+    final int[] depths = new int[maxNodes];
+    final int[] keywordIndices = new int[maxNodes];
+    Arrays.fill(keywordIndices, NO_NODE);
+    parents[ROOT] = NO_NODE;
+    int nodeCount = 1;
+
+    final int[] path = new int[maxKeywordLength + 1]; // path[d] is the node at depth d
+    String previous = "";
+    for (final int keywordIndex : sortedIndices) {
+      final String keyword = keywordArray[keywordIndex];
+      if (keyword.isEmpty()) {
+        continue;
+      }
+      int common = 0;
+      final int limit = Math.min(previous.length(), keyword.length());
+      while (common < limit && previous.charAt(common) == keyword.charAt(common)) {
+        ++common;
+      }
+      for (int d = common; d < keyword.length(); ++d) {
+        final int node = nodeCount++;
+        parents[node] = path[d];
+        labels[node] = keyword.charAt(d);
+        depths[node] = d + 1;
+        path[d + 1] = node;
+      }
+      final int end = path[keyword.length()];
+      if (keywordIndices[end] == NO_NODE) {
+        // Equal keywords are sorted by index, keep the first one
+        keywordIndices[end] = keywordIndex;
+      }
+      previous = keyword;
+    }
+
+    // Nodes are numbered depth first, so iterating in order keeps the children sorted by label
+    final int[] childOffsets = new int[nodeCount + 1];
+    for (int node = 1; node < nodeCount; ++node) {
+      ++childOffsets[parents[node] + 1];
+    }
+    for (int node = 0; node < nodeCount; ++node) {
+      childOffsets[node + 1] += childOffsets[node];
+    }
+    final int[] fillPositions = Arrays.copyOf(childOffsets, nodeCount);
+    final char[] childLabels = new char[Math.max(nodeCount - 1, 0)];
+    final int[] childTargets = new int[Math.max(nodeCount - 1, 0)];
+    for (int node = 1; node < nodeCount; ++node) {
+      final int position = fillPositions[parents[node]]++;
+      childLabels[position] = labels[node];
+      childTargets[position] = node;
+    }
+
+    final KeywordAutomaton automaton =
+        new KeywordAutomaton(
+            childOffsets,
+            childLabels,
+            childTargets,
+            new int[nodeCount],
+            Arrays.copyOf(depths, nodeCount),
+            Arrays.copyOf(keywordIndices, nodeCount),
+            new int[nodeCount],
+            keywordArray.length,
+            maxKeywordLength);
+    automaton.computeFailureLinks(parents, labels);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.pattern = "keywords";
+      event.keywords = keywordArray.length;
+      event.commit();
+    }
+    return automaton;
+  }
+
+  /** Computes the failure and output links with a breadth first traversal of the trie. */
+  private void computeFailureLinks(final int[] parents, final char[] labels) {
+    final int nodeCount = this.failures.length;
+    this.failures[ROOT] = ROOT;
+    this.outputLinks[ROOT] = NO_NODE;
+
+    final List<Integer> queue = new ArrayList<>(nodeCount);
+    for (int i = this.childOffsets[ROOT]; i < this.childOffsets[ROOT + 1]; ++i) {
+      queue.add(this.childTargets[i]);
+    }
+    for (int head = 0; head < queue.size(); ++head) {
+      final int node = queue.get(head);
+      final int parent = parents[node];
+      if (parent == ROOT) {
+        this.failures[node] = ROOT;
+      } else {
+        final char label = labels[node];
+        int state = this.failures[parent];
+        int target;
+        while ((target = findChild(state, label)) == NO_NODE && state != ROOT) {
+          state = this.failures[state];
+        }
+        this.failures[node] = target == NO_NODE ? ROOT : target;
+      }
+      final int failure = this.failures[node];
+      this.outputLinks[node] =
+          this.keywordIndices[failure] != NO_NODE ? failure : this.outputLinks[failure];
+
+      for (int i = this.childOffsets[node]; i < this.childOffsets[node + 1]; ++i) {
+        queue.add(this.childTargets[i]);
+      }
+    }
+  }
+
+  /** Writes this automaton, to be read back by {@link #read(ByteBuffer)}. */
+  void write(final DataOutputStream output) throws IOException {
+    output.writeInt(this.keywordCount);
+    output.writeInt(this.maxKeywordLength);
+    output.writeInt(this.failures.length);
+    writeInts(output, this.childOffsets);
+    for (final char label : this.childLabels) {
+      output.writeChar(label);
+    }
+    writeInts(output, this.childTargets);
+    writeInts(output, this.failures);
+    writeInts(output, this.depths);
+    writeInts(output, this.keywordIndices);
+    writeInts(output, this.outputLinks);
+  }
+
+  private static void writeInts(final DataOutputStream output, final int[] values)
+      throws IOException {
+    for (final int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  /**
+   * Reads an automaton written by {@link #write(DataOutputStream)} from the position of the given
+   * buffer, without compiling it again.
+   */
+  static KeywordAutomaton read(final ByteBuffer buffer) {
+    final int keywordCount = buffer.getInt();
+    final int maxKeywordLength = buffer.getInt();
+    final int nodeCount = buffer.getInt();
+    final int childCount = Math.max(nodeCount - 1, 0);
+    final int[] childOffsets = readInts(buffer, nodeCount + 1);
+    final char[] childLabels = new char[childCount];
+    buffer.asCharBuffer().get(childLabels);
+    buffer.position(buffer.position() + childCount * Character.BYTES);
+    return new KeywordAutomaton(
+        childOffsets,
+        childLabels,
+        readInts(buffer, childCount),
+        readInts(buffer, nodeCount),
+        readInts(buffer, nodeCount),
+        readInts(buffer, nodeCount),
+        readInts(buffer, nodeCount),
+        keywordCount,
+        maxKeywordLength);
+  }
+
+  private static int[] readInts(final ByteBuffer buffer, final int count) {
+    final int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + count * Integer.BYTES);
+    return values;
+  }
+
+  /** Returns the number of keywords this automaton was compiled from. */
+  public int getKeywordCount() {
+    return this.keywordCount;
+  }
+
+  /** Returns the length of the longest keyword. */
+  public int getMaxKeywordLength() {
+    return this.maxKeywordLength;
+  }
+
+  /** Creates a matcher searching the keywords in the given text. */
+  public KeywordMatcher matcher(final CharSequence text) {
+    return new KeywordMatcher(text);
+  }
+
+  private int findChild(final int node, final char label) {
+    int low = this.childOffsets[node];
+    int high = this.childOffsets[node + 1] - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final char middleLabel = this.childLabels[middle];
+      if (middleLabel < label) {
+        low = middle + 1;
+      } else if (middleLabel > label) {
+        high = middle - 1;
+      } else {
+        return this.childTargets[middle];
+      }
+    }
+    return NO_NODE;
+  }
+
+  private int nextState(int state, final char c) {
+    while (state != ROOT) {
+      final int child = findChild(state, c);
+      if (child != NO_NODE) {
+        return child;
+      }
+      state = this.failures[state];
+    }
+    if (c < ASCII_SIZE) {
+      return this.rootTransitions[c];
+    }
+    final int child = findChild(ROOT, c);
+    return child == NO_NODE ? ROOT : child;
+  }
+
+  /** Whether the given character can be part of a java identifier word ({@code [A-Za-z0-9_]}). */
+  static boolean isWordCharacter(final char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  /**
+   * Stateful search of the keywords of a {@link KeywordAutomaton} in a text, used like a {@link
+   * java.util.regex.Matcher}. It is not thread-safe.
+   *
+   * @author ActiveViam
+   */
+  public final class KeywordMatcher {
+
+    private final CharSequence text;
+
+    private int searchFrom = 0;
+
+    private int start = -1;
+
+    private int end = -1;
+
+    private int keywordIndex = NO_NODE;
+
+    private KeywordMatcher(final CharSequence text) {
+      this.text = text;
+    }
+
+    /**
+     * Finds the next occurrence of a keyword followed by a character which is not alphanumeric or
+     * underscore.
+     *
+     * @return whether an occurrence has been found
+     */
+    public boolean find() {
+      final CharSequence text = this.text;
+      final int length = text.length();
+      int bestStart = -1;
+      int bestEnd = -1;
+      int bestKeyword = NO_NODE;
+
+      int state = ROOT;
+      for (int i = this.searchFrom; i < length; ++i) {
+        state = nextState(state, text.charAt(i));
+        // No occurrence ending here or after can start before the best one found so far
+        if (bestStart >= 0 && i - KeywordAutomaton.this.depths[state] + 1 > bestStart) {
+          break;
+        }
+        if (i + 1 >= length || isWordCharacter(text.charAt(i + 1))) {
+          continue;
+        }
+        int node =
+            KeywordAutomaton.this.keywordIndices[state] != NO_NODE
+                ? state
+                : KeywordAutomaton.this.outputLinks[state];
+        for (; node != NO_NODE; node = KeywordAutomaton.this.outputLinks[node]) {
+          final int candidateStart = i - KeywordAutomaton.this.depths[node] + 1;
+          final int candidateKeyword = KeywordAutomaton.this.keywordIndices[node];
+          if (bestStart < 0
+              || candidateStart < bestStart
+              || (candidateStart == bestStart && candidateKeyword < bestKeyword)) {
+            bestStart = candidateStart;
+            bestEnd = i + 1;
+            bestKeyword = candidateKeyword;
+          }
+        }
+      }
+
+      if (bestStart < 0) {
+        this.searchFrom = length;
+        this.start = -1;
+        this.end = -1;
+        this.keywordIndex = NO_NODE;
+        return false;
+      }
+      this.start = bestStart;
+      this.end = bestEnd;
+      this.keywordIndex = bestKeyword;
+      this.searchFrom = bestEnd + 1; // The following character is consumed
+      return true;
+    }
+
+    /** Returns the start index of the last keyword found. */
+    public int start() {
+      return this.start;
+    }
+
+    /** Returns the index after the last character of the last keyword found. */
+    public int end() {
+      return this.end;
+    }
+
+    /** Returns the index of the last keyword found among the compiled keywords. */
+    public int keywordIndex() {
+      return this.keywordIndex;
+    }
+  }
+}
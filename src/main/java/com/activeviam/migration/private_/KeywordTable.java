@@ -0,0 +1,106 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.Collection;
+
+/**
+ * Open addressing hash table of keywords, looked up by a range of characters of a text so that no
+ * string is allocated for the lookup.
+ *
+ * <p>This class is immutable and thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class KeywordTable {
+
+  private static final int EMPTY = 0;
+
+  private final String[] keywords;
+
+  /** Index plus one of the keyword in each slot, or {@link #EMPTY}. */
+  private final int[] slots;
+
+  private final int mask;
+
+  private final int minKeywordLength;
+
+  private final int maxKeywordLength;
+
+  /**
+   * Creates the table of the given keywords, each keyword being identified by its index in the
+   * iteration order of the collection. The first index of duplicate keywords is kept.
+   */
+  KeywordTable(final Collection<String> keywords) {
+    this.keywords = keywords.toArray(String[]::new);
+    final int capacity = Integer.highestOneBit(Math.max(2 * this.keywords.length, 2) - 1) << 1;
+    this.slots = new int[capacity];
+    this.mask = capacity - 1;
+
+    int minKeywordLength = Integer.MAX_VALUE;
+    int maxKeywordLength = 0;
+    for (int i = 0; i < this.keywords.length; ++i) {
+      final String keyword = this.keywords[i];
+      if (find(keyword, 0, keyword.length(), keyword.hashCode()) < 0) {
+        int slot = spread(keyword.hashCode()) & this.mask;
+        while (this.slots[slot] != EMPTY) {
+          slot = (slot + 1) & this.mask;
+        }
+        this.slots[slot] = i + 1;
+      }
+      minKeywordLength = Math.min(minKeywordLength, keyword.length());
+      maxKeywordLength = Math.max(maxKeywordLength, keyword.length());
+    }
+    this.minKeywordLength = minKeywordLength;
+    this.maxKeywordLength = maxKeywordLength;
+  }
+
+  /**
+   * Returns the index of the keyword equal to {@code text[from, to)}, or -1 if there is none.
+   *
+   * @param hash the {@link String#hashCode() hash} of {@code text[from, to)}
+   */
+  int find(final CharSequence text, final int from, final int to, final int hash) {
+    final int length = to - from;
+    for (int slot = spread(hash) & this.mask; this.slots[slot] != EMPTY; ) {
+      final int index = this.slots[slot] - 1;
+      final String keyword = this.keywords[index];
+      if (keyword.length() == length
+          && keyword.hashCode() == hash
+          && regionEquals(keyword, text, from)) {
+        return index;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+    return -1;
+  }
+
+  private static boolean regionEquals(
+      final String keyword, final CharSequence text, final int from) {
+    for (int i = 0; i < keyword.length(); ++i) {
+      if (keyword.charAt(i) != text.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /** Returns the length of the shortest keyword, {@link Integer#MAX_VALUE} if there is none. */
+  int getMinKeywordLength() {
+    return this.minKeywordLength;
+  }
+
+  /** Returns the length of the longest keyword. */
+  int getMaxKeywordLength() {
+    return this.maxKeywordLength;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+/**
+ * Settings of the search of old imports and non-public API in file contents.
+ *
+ * @author ActiveViam
+ */
+public class MatchingSettings {
+
+  /** Settings of the {@link MatchingEngine#PATTERN pattern} engine. */
+  public static final MatchingSettings DEFAULT =
+      new MatchingSettings(MatchingEngine.PATTERN, true, true);
+
+  private final MatchingEngine engine;
+
+  private final boolean scanComments;
+
+  private final boolean scanStrings;
+
+  /**
+   * Constructor.
+   *
+   * @param engine the engine searching file contents
+   * @param scanComments whether comments are migrated and checked, only {@link
+   *     MatchingEngine#LEXER} can skip them
+   * @param scanStrings whether string and character literals are migrated and checked, only {@link
+   *     MatchingEngine#LEXER} can skip them
+   */
+  public MatchingSettings(
+      final MatchingEngine engine, final boolean scanComments, final boolean scanStrings) {
+    if (engine != MatchingEngine.LEXER && (!scanComments || !scanStrings)) {
+      throw new IllegalArgumentException(
+          "Only the " + MatchingEngine.LEXER + " engine can skip comments and strings.");
+    }
+    this.engine = engine;
+    this.scanComments = scanComments;
+    this.scanStrings = scanStrings;
+  }
+
+  /** Returns the engine searching file contents. */
+  public MatchingEngine getEngine() {
+    return this.engine;
+  }
+
+  /** Whether comments are migrated and checked. */
+  public boolean isScanComments() {
+    return this.scanComments;
+  }
+
+  /** Whether string and character literals are migrated and checked. */
+  public boolean isScanStrings() {
+    return this.scanStrings;
+  }
+
+  /**
+   * Returns a string identifying the results of these settings, empty for the {@link #DEFAULT}
+   * ones.
+   */
+  String getIdentity() {
+    return this.engine == MatchingEngine.PATTERN || this.engine == MatchingEngine.VECTOR
+        ? ""
+        : this.engine + " comments=" + this.scanComments + " strings=" + this.scanStrings;
+  }
+
+  /**
+   * Engine searching file contents.
+   *
+   * @author ActiveViam
+   */
+  public enum MatchingEngine {
+
+    /**
+     * Searches old imports with a {@link KeywordAutomaton} and non-public API with an {@link
+     * ApiRuleAutomaton}, anywhere in the content.
+     */
+    PATTERN,
+
+    /**
+     * Like {@link #PATTERN}, but finds the candidate occurrences of non-public packages with the
+     * JDK Vector API, and only runs the {@link ApiRuleAutomaton} on the qualified names around
+     * them. The results are the same as {@link #PATTERN}, which is used instead when the {@code
+     * jdk.incubator.vector} module is not enabled with {@code --add-modules}.
+     */
+    VECTOR,
+
+    /**
+     * Splits the content into qualified name tokens with a {@link JavaTokenScanner}, and checks
+     * each token against the mapping or the non-public packages without allocating. Only tokens
+     * starting with an old import or a package root are matched, and comments and strings can be
+     * skipped.
+     */
+    LEXER
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.util.private_.MigrationUtils;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * Persistent index of the files already processed by a {@link MigrationPipeline} with a given
+ * mapping, so that re-running a migration skips them.
+ *
+ * <p>Each file is recorded with the hash of its content after processing, and the non-public API
+ * use found in it. A file is skipped when its size and modification time did not change since it
+ * was recorded, or when the hash of its content is the recorded one.
+ *
+ * <p>There is one index file per mapping identity: library, versions, checksum of the mapping and
+ * {@link MatchingSettings}.
+ *
+ * @author ActiveViam
+ */
+public class MigrationCache {
+
+  private static final Logger LOGGER = Logger.getLogger(MigrationCache.class.getName());
+
+  /** To increment each time a change of the migration or of the API check changes their results. */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final String DEFAULT_CACHE_DIRECTORY = "java-api-migration-tool";
+
+  private static final String INDEX_FILE_TEMPLATE = "migration-%s.json";
+
+  private static final String HASH_ALGORITHM = "SHA-256";
+
+  /**
+   * Modification times closer than this to the start of the run are not trusted, since the file
+   * could still be modified within the same timestamp granularity.
+   */
+  private static final long RACY_MODIFICATION_MILLIS = 2_000;
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final Path indexFile;
+
+  private final String mappingIdentity;
+
+  private final long startTimeMillis = System.currentTimeMillis();
+
+  /** Entries of the previous runs, by absolute file path. */
+  private final Map<String, Entry> previousEntries;
+
+  /** Entries of the previous runs, updated by this run. */
+  private final Map<String, Entry> entries;
+
+  private MigrationCache(
+      final Path indexFile, final String mappingIdentity, final Map<String, Entry> entries) {
+    this.indexFile = indexFile;
+    this.mappingIdentity = mappingIdentity;
+    this.previousEntries = entries;
+    this.entries = new ConcurrentHashMap<>(entries);
+  }
+
+  /**
+   * Returns the default cache directory of the given project, inside its git directory.
+   *
+   * @return the directory, or {@code null} if the project is not in a git repository
+   */
+  public static Path getDefaultCacheDirectory(final String projectPath) {
+    final File gitDirectory =
+        new FileRepositoryBuilder().findGitDir(new File(projectPath)).getGitDir();
+    return gitDirectory == null ? null : gitDirectory.toPath().resolve(DEFAULT_CACHE_DIRECTORY);
+  }
+
+  /** Loads the index of the given mapping from the given cache directory, if there is one. */
+  public static MigrationCache load(
+      final Path cacheDirectory,
+      final String libraryName,
+      final String currentVersion,
+      final String targetVersion,
+      final Map<String, String> mapping) {
+    return load(
+        cacheDirectory,
+        libraryName,
+        currentVersion,
+        targetVersion,
+        mapping,
+        MatchingSettings.DEFAULT);
+  }
+
+  /**
+   * Loads the index of the given mapping searched with the given settings from the given cache
+   * directory, if there is one.
+   */
+  public static MigrationCache load(
+      final Path cacheDirectory,
+      final String libraryName,
+      final String currentVersion,
+      final String targetVersion,
+      final Map<String, String> mapping,
+      final MatchingSettings matchingSettings) {
+    final String mappingIdentity =
+        computeMappingIdentity(
+            libraryName, currentVersion, targetVersion, mapping, matchingSettings);
+    final Path indexFile =
+        cacheDirectory.resolve(
+            String.format(INDEX_FILE_TEMPLATE, mappingIdentity.substring(0, 16)));
+
+    Map<String, Entry> entries = Map.of();
+    if (Files.isRegularFile(indexFile)) {
+      try {
+        final Index index = OBJECT_MAPPER.readValue(indexFile.toFile(), Index.class);
+        if (mappingIdentity.equals(index.mappingIdentity)) {
+          entries = index.files;
+        }
+      } catch (final IOException e) {
+        // A corrupted index is only a cache miss
+        LOGGER.log(Level.WARNING, e, () -> "Ignoring unreadable migration cache " + indexFile);
+      }
+    }
+    return new MigrationCache(indexFile, mappingIdentity, entries);
+  }
+
+  private static String computeMappingIdentity(
+      final String libraryName,
+      final String currentVersion,
+      final String targetVersion,
+      final Map<String, String> mapping,
+      final MatchingSettings matchingSettings) {
+    final MessageDigest digest = createDigest();
+    final StringBuilder sb =
+        new StringBuilder()
+            .append(FORMAT_VERSION)
+            .append('\n')
+            .append(libraryName)
+            .append('\n')
+            .append(currentVersion)
+            .append('\n')
+            .append(targetVersion)
+            .append('\n');
+    // Default settings add nothing, so that the indexes written before they existed stay valid
+    if (!matchingSettings.getIdentity().isEmpty()) {
+      sb.append(matchingSettings.getIdentity()).append('\n');
+    }
+    digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+    mapping.forEach(
+        (oldImport, newImport) ->
+            digest.update((oldImport + ' ' + newImport + '\n').getBytes(StandardCharsets.UTF_8)));
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /** Returns the hash of the given file content. */
+  static String hash(final byte[] content) {
+    return HexFormat.of().formatHex(createDigest().digest(content));
+  }
+
+  /** Returns the hash of the content given to the digest, which is reset. */
+  static String hash(final MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /** Returns the hash of the file content made of the remaining bytes of the given buffers. */
+  static String hash(final ByteBuffer... content) {
+    final MessageDigest digest = createDigest();
+    for (final ByteBuffer buffer : content) {
+      digest.update(buffer);
+    }
+    return hash(digest);
+  }
+
+  /** Creates a digest hashing file contents. */
+  static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the entry of the given file if its size and modification time did not change since it
+   * was recorded, {@code null} otherwise.
+   */
+  Entry getUnmodifiedEntry(final Path filePath, final BasicFileAttributes attributes) {
+    final Entry entry = this.previousEntries.get(getKey(filePath));
+    return entry != null
+            && entry.lastModified >= 0
+            && entry.lastModified == attributes.lastModifiedTime().toMillis()
+            && entry.size == attributes.size()
+        ? entry
+        : null;
+  }
+
+  /** Whether the given file was recorded by the previous run. */
+  boolean contains(final Path filePath) {
+    return this.previousEntries.containsKey(getKey(filePath));
+  }
+
+  /**
+   * Returns the entry of the given file if the given hash is the recorded one, {@code null}
+   * otherwise.
+   */
+  Entry getEntry(final Path filePath, final String hash) {
+    final Entry entry = this.previousEntries.get(getKey(filePath));
+    return entry != null && entry.hash.equals(hash) ? entry : null;
+  }
+
+  /**
+   * Records the given file as processed, with the hash and the attributes of its current content.
+   */
+  void record(
+      final Path filePath,
+      final String hash,
+      final BasicFileAttributes attributes,
+      final List<String> apiUsages) {
+    final long lastModified = attributes.lastModifiedTime().toMillis();
+    this.entries.put(
+        getKey(filePath),
+        new Entry(
+            hash,
+            attributes.size(),
+            lastModified < this.startTimeMillis - RACY_MODIFICATION_MILLIS ? lastModified : -1,
+            apiUsages));
+  }
+
+  /** Writes the index, with the files recorded by this run. */
+  void save() {
+    try {
+      Files.createDirectories(this.indexFile.getParent());
+      MigrationUtils.replaceFileContent(
+          this.indexFile,
+          OBJECT_MAPPER.writeValueAsBytes(
+              new Index(this.mappingIdentity, new TreeMap<>(this.entries))));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String getKey(final Path filePath) {
+    return filePath.toAbsolutePath().normalize().toString();
+  }
+
+  /**
+   * Serialized form of the index.
+   *
+   * @author ActiveViam
+   */
+  private static class Index {
+
+    @JsonProperty private final String mappingIdentity;
+
+    @JsonProperty private final Map<String, Entry> files;
+
+    @JsonCreator
+    private Index(
+        @JsonProperty("mappingIdentity") final String mappingIdentity,
+        @JsonProperty("files") final Map<String, Entry> files) {
+      this.mappingIdentity = mappingIdentity;
+      this.files = files;
+    }
+  }
+
+  /**
+   * A file recorded in the index.
+   *
+   * @author ActiveViam
+   */
+  static class Entry {
+
+    /** Hash of the content of the file after processing. */
+    @JsonProperty private final String hash;
+
+    @JsonProperty private final long size;
+
+    /** Modification time of the file after processing, or -1 if it cannot be trusted. */
+    @JsonProperty private final long lastModified;
+
+    /** Non-public API use in the file after processing. */
+    @JsonProperty private final List<String> apiUsages;
+
+    @JsonCreator
+    private Entry(
+        @JsonProperty("hash") final String hash,
+        @JsonProperty("size") final long size,
+        @JsonProperty("lastModified") final long lastModified,
+        @JsonProperty("apiUsages") final List<String> apiUsages) {
+      this.hash = hash;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.apiUsages = apiUsages;
+    }
+
+    /** Returns the hash of the content of the file after processing. */
+    String getHash() {
+      return this.hash;
+    }
+
+    /** Returns the non-public API use in the file after processing. */
+    List<String> getApiUsages() {
+      return this.apiUsages;
+    }
+  }
+}
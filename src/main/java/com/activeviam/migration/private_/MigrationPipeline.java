@@ -0,0 +1,637 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.migration.private_.ExecutionSettings.IoThreadMode;
+import com.activeviam.migration.private_.FileMigrater.Replacements;
+import com.activeviam.migration.private_.MigrationCache.Entry;
+import com.activeviam.migration.private_.RunMetrics.FileOutcome;
+import com.activeviam.migration.private_.RunMetrics.Measure;
+import com.activeviam.migration.private_.RunMetrics.Phase;
+import com.activeviam.util.private_.FlightEvents.FileProcessed;
+import com.activeviam.util.private_.JavaFileFinder;
+import com.activeviam.util.private_.MigrationUtils;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Migrates files and checks their use of non-public API in a single pass.
+ *
+ * <p>Each file is read once, migrated in memory by a {@link FileMigrater}, checked by an {@link
+ * ApiChecker} on its migrated content, and written only if the migration changed it. A list of
+ * files is processed the largest first by a {@link SizeAwareScheduler}.
+ *
+ * <p>Unless the mapping has non-ASCII old imports, files are processed as {@link ByteContent
+ * bytes}: they are read in arrays taken from a {@link BufferPool}, searched without being decoded,
+ * and written back with a gathering write of their unchanged ranges and new imports, so that their
+ * encoding is kept. Files larger than a given size are read, migrated, checked and written chunk by
+ * chunk by a {@link ChunkedFileProcessor}, so that the memory they take is bounded.
+ *
+ * <p>With a {@link MigrationCache}, files already processed with the same mapping by a previous run
+ * are skipped, and their non-public API use is taken from the cache.
+ *
+ * <p>The files of a project can also be {@link #migrateAndCheckApi(JavaFileFinder, String, Map,
+ * String, MigrationCache, ExecutionSettings) streamed}: they are then discovered, read, processed
+ * and written by distinct stages running concurrently. The largest of the files discovered so far
+ * is read first, and the files between their read and their write have at most a given total size
+ * in memory, as with a {@link SizeAwareScheduler}.
+ *
+ * <p>The time and allocations of each {@link Phase} of a run are recorded in its {@link
+ * RunMetrics}, and the migration and the check of each file are recorded as {@link FileProcessed}
+ * flight events.
+ *
+ * @author ActiveViam
+ */
+public class MigrationPipeline {
+
+  private static final String NAME = "migration";
+
+  private final FileMigrater migrater;
+
+  /** The checker of the library API, {@code null} if the library has none. */
+  private final ApiChecker checker;
+
+  /** The cache of the files already processed, {@code null} if there is none. */
+  private final MigrationCache cache;
+
+  /** The arrays in which files are read, {@code null} if contents must be decoded. */
+  private final BufferPool buffers;
+
+  /** The processor of the large files, {@code null} if contents cannot be processed in chunks. */
+  private final ChunkedFileProcessor chunkedFileProcessor;
+
+  /** The size in bytes from which files are processed in chunks. */
+  private final long chunkedFileSize;
+
+  /** The size in bytes of the chunks of the files processed in chunks. */
+  private final int chunkSize;
+
+  /** The budget of the files held between their read and their write, {@code null} for lists. */
+  private final BytesInFlight bytesInFlight;
+
+  /** The processing times of the streamed files, {@code null} for lists. */
+  private final FileTimings fileTimings;
+
+  private final AtomicInteger processWorkerCounter = new AtomicInteger();
+
+  /** Index of each thread of the process stage, to which the time of its files is attributed. */
+  private final ThreadLocal<Integer> processWorker =
+      ThreadLocal.withInitial(this.processWorkerCounter::getAndIncrement);
+
+  private final RunMetrics metrics = new RunMetrics(NAME, RunMetrics.DEFAULT_SLOWEST_FILES);
+
+  /**
+   * Migrates the given files according to the given mapping between old and new imports, and spots
+   * usage of non-public API of the given library in the migrated files.
+   */
+  public static MigrationResult migrateAndCheckApi(
+      final List<Path> files, final Map<String, String> mapping, final String libraryName) {
+    return migrateAndCheckApi(files, mapping, libraryName, null);
+  }
+
+  /**
+   * Migrates and checks the given files as {@link #migrateAndCheckApi(List, Map, String)} does,
+   * skipping the files already processed according to the given cache, which is updated.
+   *
+   * @param cache the cache of the files already processed, can be {@code null}
+   */
+  public static MigrationResult migrateAndCheckApi(
+      final List<Path> files,
+      final Map<String, String> mapping,
+      final String libraryName,
+      final MigrationCache cache) {
+    final MigrationPipeline pipeline =
+        new MigrationPipeline(
+            mapping,
+            libraryName,
+            cache,
+            MatchingSettings.DEFAULT,
+            Runtime.getRuntime().availableProcessors(),
+            ExecutionSettings.DEFAULT_CHUNKED_FILE_SIZE,
+            ExecutionSettings.DEFAULT_CHUNK_SIZE,
+            null,
+            null);
+    return pipeline.run(
+        libraryName,
+        () ->
+            pipeline.migrater.info.setFileTimings(
+                SizeAwareScheduler.create(NAME).run(files, pipeline::processFile)));
+  }
+
+  /**
+   * Migrates and checks the java files of the given project as {@link #migrateAndCheckApi(List,
+   * Map, String, MigrationCache)} does, while they are discovered.
+   *
+   * <p>Files go through a discovery, a read, a processing and a write stage, connected by bounded
+   * queues and running with the given settings. The discovered files wait in front of the read
+   * stage from the largest to the smallest.
+   *
+   * @param finder the finder of the java files of the project
+   * @param cache the cache of the files already processed, can be {@code null}
+   */
+  public static MigrationResult migrateAndCheckApi(
+      final JavaFileFinder finder,
+      final String projectPath,
+      final Map<String, String> mapping,
+      final String libraryName,
+      final MigrationCache cache,
+      final ExecutionSettings settings) {
+    return migrateAndCheckApi(
+        finder, projectPath, mapping, libraryName, cache, MatchingSettings.DEFAULT, settings);
+  }
+
+  /**
+   * Migrates and checks the java files of the given project as {@link
+   * #migrateAndCheckApi(JavaFileFinder, String, Map, String, MigrationCache, ExecutionSettings)}
+   * does, searching file contents with the given matching settings.
+   *
+   * @param cache the cache of the files already processed with the same matching settings, can be
+   *     {@code null}
+   */
+  public static MigrationResult migrateAndCheckApi(
+      final JavaFileFinder finder,
+      final String projectPath,
+      final Map<String, String> mapping,
+      final String libraryName,
+      final MigrationCache cache,
+      final MatchingSettings matchingSettings,
+      final ExecutionSettings settings) {
+    // Files in the queues and in the threads of each stage are held in arrays of the pool
+    final MigrationPipeline pipeline =
+        new MigrationPipeline(
+            mapping,
+            libraryName,
+            cache,
+            matchingSettings,
+            2 * settings.getQueueCapacity()
+                + settings.getReadThreads()
+                + settings.getProcessThreads()
+                + settings.getWriteThreads(),
+            settings.getChunkedFileSize(),
+            settings.getChunkSize(),
+            new BytesInFlight(BytesInFlight.DEFAULT_MAX_BYTES),
+            new FileTimings(settings.getProcessThreads()));
+    final boolean virtualIoThreads = settings.getIoThreadMode() == IoThreadMode.VIRTUAL;
+    final StagedExecutor executor =
+        new StagedExecutor(
+                NAME,
+                settings.getQueueCapacity(),
+                Comparator.comparingLong((DiscoveredFile file) -> file.size).reversed())
+            .<DiscoveredFile, PendingFile>addStage(
+                "read", settings.getReadThreads(), virtualIoThreads, pipeline::read)
+            .addStage("process", settings.getProcessThreads(), pipeline::process)
+            .addStage("write", settings.getWriteThreads(), virtualIoThreads, pipeline::write);
+    return pipeline.run(
+        libraryName,
+        () -> {
+          executor.<DiscoveredFile>run(
+              consumer -> pipeline.discover(finder, projectPath, consumer));
+          pipeline.migrater.info.setFileTimings(pipeline.fileTimings);
+        });
+  }
+
+  private MigrationPipeline(
+      final Map<String, String> mapping,
+      final String libraryName,
+      final MigrationCache cache,
+      final MatchingSettings matchingSettings,
+      final int bufferPoolCapacity,
+      final long chunkedFileSize,
+      final int chunkSize,
+      final BytesInFlight bytesInFlight,
+      final FileTimings fileTimings) {
+    this.migrater = new FileMigrater(List.of(), mapping, matchingSettings);
+    this.checker = ApiChecker.createApiChecker(libraryName, List.of(), matchingSettings);
+    this.cache = cache;
+    this.buffers = this.migrater.canMigrateBytes() ? new BufferPool(bufferPoolCapacity) : null;
+    this.chunkedFileProcessor =
+        this.buffers != null && ChunkedFileProcessor.canProcessChunks(this.migrater, this.checker)
+            ? new ChunkedFileProcessor(this.migrater, this.checker, this.buffers, chunkSize)
+            : null;
+    this.chunkedFileSize = chunkedFileSize;
+    this.chunkSize = chunkSize;
+    this.bytesInFlight = bytesInFlight;
+    this.fileTimings = fileTimings;
+  }
+
+  private MigrationResult run(final String libraryName, final Runnable processFiles) {
+    final Duration executionTime = MigrationUtils.runAndGetTime(processFiles);
+    if (this.cache != null) {
+      this.cache.save();
+    }
+    this.migrater.info.setExecutionTime(executionTime);
+    if (this.checker != null) {
+      this.checker.info.setExecutionTime(executionTime);
+    }
+    this.metrics.setTotalTime(executionTime);
+
+    return new MigrationResult(
+        this.migrater.info,
+        this.metrics,
+        this.checker != null
+            ? this.checker.getReport()
+            : ApiChecker.getMissingApiCheckerMessage(libraryName));
+  }
+
+  /**
+   * Gives the java files of the given project to the given consumer, measuring the time spent
+   * finding them but not the time the consumer waits for the next stage.
+   */
+  private void discover(
+      final JavaFileFinder finder,
+      final String projectPath,
+      final Consumer<DiscoveredFile> consumer) {
+    final Measure[] discovery = {this.metrics.start(Phase.DISCOVERY)};
+    finder.forEachJavaFile(
+        projectPath,
+        (filePath, attributes) -> {
+          discovery[0].stop();
+          consumer.accept(new DiscoveredFile(filePath, attributes.size()));
+          discovery[0] = this.metrics.start(Phase.DISCOVERY);
+        });
+    discovery[0].stop();
+  }
+
+  private void processFile(final Path filePath) {
+    final PendingFile file = read(filePath);
+    if (file != null) {
+      write(process(file));
+    }
+  }
+
+  /**
+   * Reads the given discovered file, once the files held in memory leave room for it.
+   *
+   * @return the file to process, or {@code null} if the cache knows it is already processed
+   */
+  private PendingFile read(final DiscoveredFile discoveredFile) {
+    // A file processed in chunks only holds a chunk in memory
+    final long heldSize =
+        this.chunkedFileProcessor != null && discoveredFile.size >= this.chunkedFileSize
+            ? this.chunkSize
+            : discoveredFile.size;
+    final int permits;
+    try {
+      permits = this.bytesInFlight.acquire(heldSize);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to read a file", e);
+    }
+    final PendingFile file = read(discoveredFile.path);
+    if (file == null) {
+      this.bytesInFlight.release(permits);
+    } else {
+      file.permits = permits;
+    }
+    return file;
+  }
+
+  /**
+   * Reads the given file.
+   *
+   * @return the file to process, or {@code null} if the cache knows it is already processed
+   */
+  private PendingFile read(final Path filePath) {
+    this.migrater.info.incrementProcessedFiles();
+    if (this.checker != null) {
+      this.checker.info.incrementProcessedFiles();
+    }
+
+    final Measure measure = this.metrics.start(Phase.READ);
+    if (this.cache == null) {
+      final PendingFile file =
+          isChunkedFile(filePath, null)
+              ? new PendingFile(filePath, null, null, null)
+              : readContent(filePath, null);
+      file.nanos += measure.stop();
+      return file;
+    }
+
+    // Avoid reading the file if it is unchanged since the previous run
+    final BasicFileAttributes attributes = readAttributes(filePath);
+    final Entry unmodifiedEntry = this.cache.getUnmodifiedEntry(filePath, attributes);
+    if (unmodifiedEntry != null) {
+      skipCachedFile(filePath, unmodifiedEntry);
+      this.metrics.recordFile(filePath, attributes.size(), measure.stop(), FileOutcome.SKIPPED);
+      return null;
+    }
+    final PendingFile file;
+    if (isChunkedFile(filePath, attributes)) {
+      // The content is only read when it is processed, it is hashed beforehand in chunks too
+      file = new PendingFile(filePath, null, null, attributes);
+      if (this.cache.contains(filePath)) {
+        file.hash = this.chunkedFileProcessor.hash(filePath);
+        this.metrics.addBytesRead(attributes.size());
+      }
+    } else {
+      file = readContent(filePath, attributes);
+    }
+    final Entry entry = this.cache.getEntry(filePath, file.hash);
+    if (entry != null) {
+      this.cache.record(filePath, file.hash, attributes, entry.getApiUsages());
+      skipCachedFile(filePath, entry);
+      releaseBuffer(file);
+      this.metrics.recordFile(filePath, attributes.size(), measure.stop(), FileOutcome.SKIPPED);
+      return null;
+    }
+    file.nanos += measure.stop();
+    return file;
+  }
+
+  /**
+   * Whether the given file is large enough to be processed in chunks.
+   *
+   * @param attributes the attributes of the file, can be {@code null} if they are not read yet
+   */
+  private boolean isChunkedFile(final Path filePath, final BasicFileAttributes attributes) {
+    if (this.chunkedFileProcessor == null) {
+      return false;
+    }
+    final long size = attributes != null ? attributes.size() : readAttributes(filePath).size();
+    return size >= this.chunkedFileSize;
+  }
+
+  /** Reads the content of the given file, and hashes it if there is a cache. */
+  private PendingFile readContent(final Path filePath, final BasicFileAttributes attributes) {
+    if (this.buffers == null) {
+      // The old imports cannot be searched in the bytes, the content must be decoded
+      final byte[] bytes = MigrationUtils.getFileBytes(filePath);
+      final PendingFile file =
+          new PendingFile(filePath, MigrationUtils.decodeFileContent(bytes), null, attributes);
+      file.hash = this.cache != null ? MigrationCache.hash(bytes) : null;
+      file.size = bytes.length;
+      this.metrics.addBytesRead(bytes.length);
+      return file;
+    }
+    final ByteBuffer buffer = MigrationUtils.readFileContent(filePath, this.buffers::acquire);
+    final ByteContent content = new ByteContent(buffer);
+    final PendingFile file = new PendingFile(filePath, content, buffer.array(), attributes);
+    file.hash = this.cache != null ? MigrationCache.hash(content.getSegments()) : null;
+    file.size = content.length();
+    this.metrics.addBytesRead(content.length());
+    return file;
+  }
+
+  /** Migrates the content of the given file in memory, and checks the migrated content. */
+  private PendingFile process(final PendingFile file) {
+    file.processWorker = this.processWorker.get();
+    final Measure match = this.metrics.start(Phase.MATCH);
+    final FileProcessed matchEvent = new FileProcessed();
+    matchEvent.begin();
+    if (file.content == null) {
+      // The file is read, migrated, checked and written chunk by chunk
+      final ChunkedFileProcessor.Result result =
+          this.chunkedFileProcessor.process(file.path, this.cache != null);
+      file.hash = result.getHash();
+      file.rewritten = result.isRewritten();
+      file.apiUsages = result.getApiUsages();
+      file.size = result.getBytesRead();
+      this.metrics.addBytesRead(result.getBytesRead());
+      this.metrics.addBytesWritten(result.getBytesWritten());
+      file.nanos += match.stop();
+      // The file is checked while it is migrated, there is a single event for both
+      commitEvent(matchEvent, this.migrater, file, result.getReplacementCount());
+      return file;
+    }
+    final Replacements replacements = this.migrater.findReplacements(file.content);
+    file.newContent =
+        file.content instanceof ByteContent
+            ? this.migrater.migrateContent((ByteContent) file.content, replacements)
+            : this.migrater.migrateContent((String) file.content, replacements);
+    file.nanos += match.stop();
+    commitEvent(matchEvent, this.migrater, file, Replacements.count(replacements));
+
+    final Measure check = this.metrics.start(Phase.API_CHECK);
+    final FileProcessed checkEvent = new FileProcessed();
+    checkEvent.begin();
+    final CharSequence checkedContent = file.newContent != null ? file.newContent : file.content;
+    file.apiUsages =
+        this.checker != null ? this.checker.checkContent(file.path, checkedContent) : List.of();
+    file.nanos += check.stop();
+    if (this.checker != null) {
+      commitEvent(checkEvent, this.checker, file, file.apiUsages.size());
+    }
+    return file;
+  }
+
+  /** Ends the given event of the processing of the given file, and commits it if recorded. */
+  private static void commitEvent(
+      final FileProcessed event,
+      final AFilesProcessor<?> processor,
+      final PendingFile file,
+      final int matches) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.processor = processor.info.getName();
+      event.path = file.path.toString();
+      event.size = file.size;
+      event.matches = matches;
+      event.commit();
+    }
+  }
+
+  /** Writes the given file if its content changed, and records it in the cache. */
+  private PendingFile write(final PendingFile file) {
+    final Measure measure = this.metrics.start(Phase.WRITE);
+    try {
+      if (file.newContent == null) {
+        if (this.cache != null) {
+          this.cache.record(
+              file.path,
+              file.hash,
+              file.rewritten ? readAttributes(file.path) : file.attributes,
+              file.apiUsages);
+        }
+        recordFile(file, measure, file.rewritten ? FileOutcome.CHANGED : FileOutcome.UNCHANGED);
+        return null;
+      }
+      final ByteBuffer[] newContent = getBuffers(file.newContent);
+      long written = 0;
+      for (final ByteBuffer buffer : newContent) {
+        written += buffer.remaining();
+      }
+      MigrationUtils.replaceFileContent(file.path, newContent);
+      this.metrics.addBytesWritten(written);
+      if (this.cache != null) {
+        this.cache.record(
+            file.path,
+            MigrationCache.hash(getBuffers(file.newContent)),
+            readAttributes(file.path),
+            file.apiUsages);
+      }
+      recordFile(file, measure, FileOutcome.CHANGED);
+      return null;
+    } finally {
+      releaseBuffer(file);
+      if (this.bytesInFlight != null) {
+        this.bytesInFlight.release(file.permits);
+      }
+    }
+  }
+
+  private void recordFile(final PendingFile file, final Measure write, final FileOutcome outcome) {
+    file.nanos += write.stop();
+    this.metrics.recordFile(file.path, file.size, file.nanos, outcome);
+    if (this.fileTimings != null) {
+      this.fileTimings.add(file.path, file.size, file.processWorker, file.nanos);
+    }
+  }
+
+  /** Returns new buffers of the bytes of the given content, ready to be written. */
+  private static ByteBuffer[] getBuffers(final CharSequence content) {
+    return content instanceof ByteContent
+        ? ((ByteContent) content).getSegments()
+        : new ByteBuffer[] {ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8))};
+  }
+
+  /** Gives back the array of the given file to the pool, once its contents are not used anymore. */
+  private void releaseBuffer(final PendingFile file) {
+    if (file.buffer != null) {
+      this.buffers.release(file.buffer);
+    }
+  }
+
+  private void skipCachedFile(final Path filePath, final Entry entry) {
+    this.migrater.info.incrementCachedFiles();
+    if (this.checker != null) {
+      this.checker.info.incrementCachedFiles();
+      this.checker.addMatchingPatterns(filePath, entry.getApiUsages());
+    }
+  }
+
+  private static BasicFileAttributes readAttributes(final Path filePath) {
+    try {
+      return Files.readAttributes(filePath, BasicFileAttributes.class);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * A file going through the stages of the pipeline.
+   *
+   * @author ActiveViam
+   */
+  private static class PendingFile {
+
+    private final Path path;
+
+    /**
+     * Content, a {@link ByteContent} read in {@link #buffer} or a decoded {@link String}, {@code
+     * null} if the file is processed in chunks.
+     */
+    private final CharSequence content;
+
+    /** Array of the pool holding the content, {@code null} if it has been decoded. */
+    private final byte[] buffer;
+
+    /** Attributes of the file when it was read, only needed by the cache. */
+    private final BasicFileAttributes attributes;
+
+    /** Hash of the content, only computed for the cache. */
+    private String hash;
+
+    /** Migrated content, {@code null} if the content does not need to be migrated. */
+    private CharSequence newContent;
+
+    /** Whether the file has already been rewritten by the processing of its chunks. */
+    private boolean rewritten;
+
+    /** Size of the content, in bytes. */
+    private long size;
+
+    /** Time spent on the file by all the stages, in nanoseconds. */
+    private long nanos;
+
+    private List<String> apiUsages;
+
+    /** Permits of the {@link BytesInFlight} taken by the file, {@code 0} for lists. */
+    private int permits;
+
+    /** Index of the thread of the process stage which processed the file. */
+    private int processWorker;
+
+    private PendingFile(
+        final Path path,
+        final CharSequence content,
+        final byte[] buffer,
+        final BasicFileAttributes attributes) {
+      this.path = path;
+      this.content = content;
+      this.buffer = buffer;
+      this.attributes = attributes;
+    }
+  }
+
+  /**
+   * A java file found by the discovery stage.
+   *
+   * @author ActiveViam
+   */
+  private static class DiscoveredFile {
+
+    private final Path path;
+
+    /** Size of the file when it was found, in bytes. */
+    private final long size;
+
+    private DiscoveredFile(final Path path, final long size) {
+      this.path = path;
+      this.size = size;
+    }
+  }
+
+  /**
+   * Result of a {@link MigrationPipeline}.
+   *
+   * @author ActiveViam
+   */
+  public static class MigrationResult {
+
+    private final PatternMatcherInfo migrationInfo;
+
+    private final RunMetrics metrics;
+
+    private final String apiCheckReport;
+
+    /** Constructor. */
+    MigrationResult(
+        final PatternMatcherInfo migrationInfo,
+        final RunMetrics metrics,
+        final String apiCheckReport) {
+      this.migrationInfo = migrationInfo;
+      this.metrics = metrics;
+      this.apiCheckReport = apiCheckReport;
+    }
+
+    /** Returns the {@link PatternMatcherInfo} of the migration. */
+    public PatternMatcherInfo getMigrationInfo() {
+      return this.migrationInfo;
+    }
+
+    /** Returns the {@link RunMetrics performance metrics} of the run. */
+    public RunMetrics getMetrics() {
+      return this.metrics;
+    }
+
+    /** Returns the report of the API check, listing the non-public API use of each file. */
+    public String getApiCheckReport() {
+      return this.apiCheckReport;
+    }
+  }
+}
@@ -9,26 +9,43 @@ package com.activeviam.migration.private_;
 
 import com.activeviam.util.private_.MigrationUtils;
 import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Metadata information about a pattern matching process on a list of files.
  *
+ * <p>Counters can be updated concurrently by the threads processing the files.
+ *
  * @author ActiveViam
  */
 public class PatternMatcherInfo {
 
   private final String name;
 
-  private final int numFiles;
+  private final LongAdder numFiles = new LongAdder();
 
   private Duration executionTime;
 
-  private int matchingCounter = 0;
+  private final LongAdder matchingCounter = new LongAdder();
+
+  private final LongAdder modifiedFiles = new LongAdder();
+
+  private final LongAdder cachedFiles = new LongAdder();
+
+  private final LongAdder prefilteredFiles = new LongAdder();
+
+  /** Processing times of the files, {@code null} if they were not scheduled by size. */
+  private FileTimings fileTimings;
 
   /** Constructor. */
   PatternMatcherInfo(final String name, final int numFiles) {
     this.name = name;
-    this.numFiles = numFiles;
+    this.numFiles.add(numFiles);
+  }
+
+  /** Returns the name of the process. */
+  String getName() {
+    return this.name;
   }
 
   /** Sets the total time it took to migrate all files. */
@@ -36,9 +53,34 @@ public class PatternMatcherInfo {
     this.executionTime = executionTime;
   }
 
+  /** Sets the processing times of the files. */
+  void setFileTimings(final FileTimings fileTimings) {
+    this.fileTimings = fileTimings;
+  }
+
   /** Increases the matching counter to the given value. */
   void addToMatchingCounter(final int counter) {
-    this.matchingCounter += counter;
+    this.matchingCounter.add(counter);
+  }
+
+  /** Counts one more processed file, for processes which do not know their files in advance. */
+  void incrementProcessedFiles() {
+    this.numFiles.increment();
+  }
+
+  /** Counts one more file whose content has been modified. */
+  void incrementModifiedFiles() {
+    this.modifiedFiles.increment();
+  }
+
+  /** Counts one more file skipped because the cache knows it is already processed. */
+  void incrementCachedFiles() {
+    this.cachedFiles.increment();
+  }
+
+  /** Counts one more file skipped because it does not reference the library. */
+  void incrementPrefilteredFiles() {
+    this.prefilteredFiles.increment();
   }
 
   @Override
@@ -47,12 +89,24 @@ public class PatternMatcherInfo {
         + " INFO"
         + MigrationUtils.LINE_SEPARATOR
         + "Number of processed files: "
-        + this.numFiles
+        + this.numFiles.sum()
         + MigrationUtils.LINE_SEPARATOR
         + "Total execution time: "
         + this.executionTime
         + MigrationUtils.LINE_SEPARATOR
         + "Total matching patterns: "
-        + this.matchingCounter;
+        + this.matchingCounter.sum()
+        + MigrationUtils.LINE_SEPARATOR
+        + "Number of modified files: "
+        + this.modifiedFiles.sum()
+        + MigrationUtils.LINE_SEPARATOR
+        + "Number of files skipped by the cache: "
+        + this.cachedFiles.sum()
+        + MigrationUtils.LINE_SEPARATOR
+        + "Number of files skipped by the prefilter: "
+        + this.prefilteredFiles.sum()
+        + (this.fileTimings != null
+            ? MigrationUtils.LINE_SEPARATOR + "File processing times: " + this.fileTimings
+            : "");
   }
 }
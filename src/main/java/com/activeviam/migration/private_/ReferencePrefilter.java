@@ -0,0 +1,98 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Cheap test rejecting the file contents which cannot match a {@link AFilesProcessor processor},
+ * because they do not reference any package of the library.
+ *
+ * <p>A content is rejected when it does not contain any of the package prefixes of the processor,
+ * searched with {@link String#indexOf(String)}, which the JVM vectorizes, or directly in the bytes
+ * of a {@link ByteContent}. The prefixes are necessary parts of any match, so that a rejected
+ * content would not have matched anyway.
+ *
+ * <p>This class is immutable and thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class ReferencePrefilter {
+
+  /** Number of segments of the package roots of qualified names, such as {@code com.company}. */
+  private static final int ROOT_SEGMENTS = 2;
+
+  /** Beyond this number of package roots, shorter roots are searched to bound the scans. */
+  private static final int MAX_PREFIXES = 8;
+
+  private final String[] prefixes;
+
+  private ReferencePrefilter(final Collection<String> prefixes) {
+    // A prefix starting with another one is redundant, the shorter one is enough
+    final List<String> minimalPrefixes = new ArrayList<>();
+    for (final String prefix : new TreeSet<>(prefixes)) {
+      if (minimalPrefixes.isEmpty()
+          || !prefix.startsWith(minimalPrefixes.get(minimalPrefixes.size() - 1))) {
+        minimalPrefixes.add(prefix);
+      }
+    }
+    this.prefixes = minimalPrefixes.toArray(String[]::new);
+  }
+
+  /** Creates the prefilter of the given package roots, which must be followed by a dot. */
+  static ReferencePrefilter ofPackageRoots(final Collection<String> packageRoots) {
+    final List<String> prefixes = new ArrayList<>(packageRoots.size());
+    for (final String packageRoot : packageRoots) {
+      prefixes.add(packageRoot + '.');
+    }
+    return new ReferencePrefilter(prefixes);
+  }
+
+  /** Creates the prefilter of the given qualified names, from the roots of their packages. */
+  static ReferencePrefilter ofQualifiedNames(final Collection<String> qualifiedNames) {
+    ReferencePrefilter prefilter = null;
+    for (int segments = ROOT_SEGMENTS; segments > 0; --segments) {
+      final TreeSet<String> roots = new TreeSet<>();
+      for (final String qualifiedName : qualifiedNames) {
+        roots.add(getRoot(qualifiedName, segments));
+      }
+      prefilter = new ReferencePrefilter(roots);
+      if (prefilter.prefixes.length <= MAX_PREFIXES) {
+        break;
+      }
+    }
+    return prefilter;
+  }
+
+  /** Returns the first segments of the given qualified name, with their trailing dot if any. */
+  private static String getRoot(final String qualifiedName, final int segments) {
+    int end = -1;
+    for (int i = 0; i < segments; ++i) {
+      end = qualifiedName.indexOf('.', end + 1);
+      if (end < 0) {
+        return qualifiedName;
+      }
+    }
+    return qualifiedName.substring(0, end + 1);
+  }
+
+  /** Whether the given content may match, {@code false} if it can be skipped. */
+  boolean mayMatch(final CharSequence content) {
+    for (final String prefix : this.prefixes) {
+      if (content instanceof ByteContent
+          ? ((ByteContent) content).contains(prefix)
+          : content.toString().contains(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
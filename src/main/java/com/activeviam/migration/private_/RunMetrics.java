@@ -0,0 +1,404 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import com.activeviam.util.private_.JsonUtils;
+import com.activeviam.util.private_.MigrationUtils;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Performance metrics of a migration run, broken down by {@link Phase}, to follow its throughput
+ * across releases.
+ *
+ * <p>Each phase records its time, the bytes it allocated, as reported by the {@link
+ * com.sun.management.ThreadMXBean}, and the busy time of the threads running it. Files are counted
+ * by {@link FileOutcome}, and the slowest ones are kept.
+ *
+ * <p>Metrics can be recorded concurrently by the threads processing the files, and are {@link
+ * #writeJson(Path) written} as JSON once the run is over.
+ *
+ * @author ActiveViam
+ */
+public final class RunMetrics {
+
+  /** Default number of slowest files kept. */
+  static final int DEFAULT_SLOWEST_FILES = 10;
+
+  /** The bean measuring the allocations of threads, {@code null} if the JVM cannot. */
+  private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+  private final String name;
+
+  private final int slowestFileCount;
+
+  private final Map<Phase, LongAdder> phaseNanos = createPhaseCounters();
+
+  private final Map<Phase, LongAdder> phaseAllocatedBytes = createPhaseCounters();
+
+  private final Map<String, LongAdder> threadNanos = new ConcurrentHashMap<>();
+
+  private final Map<FileOutcome, LongAdder> files = new EnumMap<>(FileOutcome.class);
+
+  private final LongAdder bytesRead = new LongAdder();
+
+  private final LongAdder bytesWritten = new LongAdder();
+
+  /** The slowest files, the fastest of them first. */
+  private final PriorityQueue<FileTime> slowestFiles =
+      new PriorityQueue<>(Comparator.comparingLong(FileTime::getNanos));
+
+  private Duration totalTime = Duration.ZERO;
+
+  /**
+   * Constructor.
+   *
+   * @param name the name of the run
+   * @param slowestFileCount the number of slowest files to keep
+   */
+  RunMetrics(final String name, final int slowestFileCount) {
+    this.name = name;
+    this.slowestFileCount = slowestFileCount;
+    for (final FileOutcome outcome : FileOutcome.values()) {
+      this.files.put(outcome, new LongAdder());
+    }
+  }
+
+  /** Starts measuring the given phase in the current thread. */
+  Measure start(final Phase phase) {
+    return new Measure(phase);
+  }
+
+  /** Records that the current thread spent the given time and allocated bytes in the phase. */
+  private void record(final Phase phase, final long nanos, final long allocatedBytes) {
+    this.phaseNanos.get(phase).add(nanos);
+    if (allocatedBytes >= 0) {
+      this.phaseAllocatedBytes.get(phase).add(allocatedBytes);
+    }
+    this.threadNanos
+        .computeIfAbsent(Thread.currentThread().getName(), k -> new LongAdder())
+        .add(nanos);
+  }
+
+  /** Counts the given number of bytes read from the files. */
+  void addBytesRead(final long bytes) {
+    this.bytesRead.add(bytes);
+  }
+
+  /** Counts the given number of bytes written to the files. */
+  void addBytesWritten(final long bytes) {
+    this.bytesWritten.add(bytes);
+  }
+
+  /**
+   * Records a processed file.
+   *
+   * @param size the size of the file, in bytes
+   * @param nanos the time spent processing the file in all phases
+   */
+  void recordFile(final Path file, final long size, final long nanos, final FileOutcome outcome) {
+    this.files.get(outcome).increment();
+    synchronized (this.slowestFiles) {
+      if (this.slowestFiles.size() < this.slowestFileCount) {
+        this.slowestFiles.add(new FileTime(file, size, nanos));
+      } else if (this.slowestFileCount > 0 && this.slowestFiles.peek().getNanos() < nanos) {
+        this.slowestFiles.poll();
+        this.slowestFiles.add(new FileTime(file, size, nanos));
+      }
+    }
+  }
+
+  /** Sets the total time of the run. */
+  void setTotalTime(final Duration totalTime) {
+    this.totalTime = totalTime;
+  }
+
+  /** Returns the time spent in the given phase, summed over all threads. */
+  Duration getPhaseTime(final Phase phase) {
+    return Duration.ofNanos(this.phaseNanos.get(phase).sum());
+  }
+
+  /** Returns the bytes allocated in the given phase, {@code 0} if the JVM cannot measure them. */
+  long getPhaseAllocatedBytes(final Phase phase) {
+    return this.phaseAllocatedBytes.get(phase).sum();
+  }
+
+  /** Returns the number of files with the given outcome. */
+  long getFileCount(final FileOutcome outcome) {
+    return this.files.get(outcome).sum();
+  }
+
+  /** Returns the slowest files, the slowest first. */
+  List<FileTime> getSlowestFiles() {
+    final List<FileTime> slowest;
+    synchronized (this.slowestFiles) {
+      slowest = new ArrayList<>(this.slowestFiles);
+    }
+    slowest.sort(Comparator.comparingLong(FileTime::getNanos).reversed());
+    return slowest;
+  }
+
+  /** Writes the metrics to the given JSON file. */
+  public void writeJson(final Path file) {
+    JsonUtils.writeJson(file, toJson());
+  }
+
+  /** Returns the metrics as a tree of maps and lists, as written in JSON. */
+  Map<String, Object> toJson() {
+    final long processedFiles = this.files.values().stream().mapToLong(LongAdder::sum).sum();
+    final double seconds = this.totalTime.toNanos() / 1e9;
+
+    final Map<String, Object> json = new LinkedHashMap<>();
+    json.put("name", this.name);
+    json.put("totalTimeNanos", this.totalTime.toNanos());
+
+    final Map<String, Object> fileCounts = new LinkedHashMap<>();
+    fileCounts.put("processed", processedFiles);
+    for (final FileOutcome outcome : FileOutcome.values()) {
+      fileCounts.put(outcome.getKey(), getFileCount(outcome));
+    }
+    json.put("files", fileCounts);
+
+    final Map<String, Object> bytes = new LinkedHashMap<>();
+    bytes.put("read", this.bytesRead.sum());
+    bytes.put("written", this.bytesWritten.sum());
+    json.put("bytes", bytes);
+
+    final Map<String, Object> throughput = new LinkedHashMap<>();
+    throughput.put("filesPerSecond", seconds > 0 ? processedFiles / seconds : 0);
+    throughput.put("bytesReadPerSecond", seconds > 0 ? this.bytesRead.sum() / seconds : 0);
+    json.put("throughput", throughput);
+
+    final Map<String, Object> phases = new LinkedHashMap<>();
+    for (final Phase phase : Phase.values()) {
+      final Map<String, Object> phaseJson = new LinkedHashMap<>();
+      phaseJson.put("timeNanos", this.phaseNanos.get(phase).sum());
+      phaseJson.put(
+          "allocatedBytes", THREAD_BEAN != null ? this.phaseAllocatedBytes.get(phase).sum() : null);
+      phases.put(phase.getKey(), phaseJson);
+    }
+    json.put("phases", phases);
+
+    final Map<String, Object> threads = new TreeMap<>();
+    this.threadNanos.forEach((thread, nanos) -> threads.put(thread, nanos.sum()));
+    json.put("threadBusyNanos", threads);
+
+    final List<Object> slowest = new ArrayList<>();
+    for (final FileTime file : getSlowestFiles()) {
+      final Map<String, Object> fileJson = new LinkedHashMap<>();
+      fileJson.put("path", file.getFile().toString());
+      fileJson.put("bytes", file.getSize());
+      fileJson.put("timeNanos", file.getNanos());
+      slowest.add(fileJson);
+    }
+    json.put("slowestFiles", slowest);
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder(this.name).append(" METRICS");
+    for (final Phase phase : Phase.values()) {
+      builder
+          .append(MigrationUtils.LINE_SEPARATOR)
+          .append("Time in ")
+          .append(phase.getKey())
+          .append(": ")
+          .append(getPhaseTime(phase));
+      if (THREAD_BEAN != null) {
+        builder.append(", ").append(getPhaseAllocatedBytes(phase)).append(" bytes allocated");
+      }
+    }
+    return builder
+        .append(MigrationUtils.LINE_SEPARATOR)
+        .append("Bytes read: ")
+        .append(this.bytesRead.sum())
+        .append(", written: ")
+        .append(this.bytesWritten.sum())
+        .append(MigrationUtils.LINE_SEPARATOR)
+        .append("Files skipped: ")
+        .append(getFileCount(FileOutcome.SKIPPED))
+        .append(", changed: ")
+        .append(getFileCount(FileOutcome.CHANGED))
+        .append(", unchanged: ")
+        .append(getFileCount(FileOutcome.UNCHANGED))
+        .toString();
+  }
+
+  private static Map<Phase, LongAdder> createPhaseCounters() {
+    final Map<Phase, LongAdder> counters = new EnumMap<>(Phase.class);
+    for (final Phase phase : Phase.values()) {
+      counters.put(phase, new LongAdder());
+    }
+    return counters;
+  }
+
+  private static com.sun.management.ThreadMXBean getThreadBean() {
+    try {
+      if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+        final com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+          return bean;
+        }
+      }
+    } catch (final LinkageError e) {
+      // The jdk.management module is not available
+    }
+    return null;
+  }
+
+  /** Returns the bytes allocated by the current thread, {@code -1} if they cannot be measured. */
+  private static long getAllocatedBytes() {
+    // Virtual threads are not supported, and give -1 too
+    return THREAD_BEAN != null ? THREAD_BEAN.getCurrentThreadAllocatedBytes() : -1;
+  }
+
+  /**
+   * Phase of a migration run.
+   *
+   * @author ActiveViam
+   */
+  enum Phase {
+    /** Finding the files of the project. */
+    DISCOVERY,
+    /** Reading the files, and looking them up in the cache. */
+    READ,
+    /**
+     * Searching and replacing the old imports, including the whole processing of the files
+     * processed in chunks.
+     */
+    MATCH,
+    /** Checking the use of non-public API. */
+    API_CHECK,
+    /** Writing the migrated files. */
+    WRITE;
+
+    /** Returns the name of the phase in the reports. */
+    String getKey() {
+      return toCamelCase(name());
+    }
+  }
+
+  /**
+   * What happened to a processed file.
+   *
+   * @author ActiveViam
+   */
+  enum FileOutcome {
+    /** Skipped because the cache knows it is already processed. */
+    SKIPPED,
+    /** Migrated and written. */
+    CHANGED,
+    /** Checked, but without old imports to migrate. */
+    UNCHANGED;
+
+    /** Returns the name of the outcome in the reports. */
+    String getKey() {
+      return toCamelCase(name());
+    }
+  }
+
+  private static String toCamelCase(final String constant) {
+    final StringBuilder builder = new StringBuilder();
+    boolean upper = false;
+    for (final char c : constant.toLowerCase(Locale.ROOT).toCharArray()) {
+      if (c == '_') {
+        upper = true;
+      } else {
+        builder.append(upper ? Character.toUpperCase(c) : c);
+        upper = false;
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Measure of a phase in a thread, started by {@link #start(Phase)}.
+   *
+   * @author ActiveViam
+   */
+  final class Measure {
+
+    private final Phase phase;
+
+    private final long startNanos;
+
+    private final long startAllocatedBytes;
+
+    private Measure(final Phase phase) {
+      this.phase = phase;
+      this.startAllocatedBytes = getAllocatedBytes();
+      this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stops the measure and records it, in the thread which started it.
+     *
+     * @return the time since the measure started, in nanoseconds
+     */
+    long stop() {
+      final long nanos = System.nanoTime() - this.startNanos;
+      final long allocatedBytes = getAllocatedBytes();
+      record(
+          this.phase,
+          nanos,
+          this.startAllocatedBytes >= 0 && allocatedBytes >= 0
+              ? allocatedBytes - this.startAllocatedBytes
+              : -1);
+      return nanos;
+    }
+  }
+
+  /**
+   * Processing time of a file.
+   *
+   * @author ActiveViam
+   */
+  static final class FileTime {
+
+    private final Path file;
+
+    private final long size;
+
+    private final long nanos;
+
+    private FileTime(final Path file, final long size, final long nanos) {
+      this.file = file;
+      this.size = size;
+      this.nanos = nanos;
+    }
+
+    /** Returns the path of the file. */
+    Path getFile() {
+      return this.file;
+    }
+
+    /** Returns the size of the file, in bytes. */
+    long getSize() {
+      return this.size;
+    }
+
+    /** Returns the time spent processing the file, in nanoseconds. */
+    long getNanos() {
+      return this.nanos;
+    }
+  }
+}
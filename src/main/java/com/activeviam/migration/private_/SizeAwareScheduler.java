@@ -0,0 +1,173 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs a task on each file of a list with a fixed number of threads, scheduling the files by size
+ * so that a few large files do not decide the total time.
+ *
+ * <p>Files are processed from the largest to the smallest, each thread taking the next file as soon
+ * as it is done with the previous one: the large files start first, and the small ones fill the
+ * gaps at the end, so that all the threads finish at about the same time.
+ *
+ * <p>The files processed at the same time have at most a given total size, a larger file being
+ * processed alone, so that the memory holding their contents stays bounded.
+ *
+ * <p>If a task fails, the files not started yet are not processed, and the failure is thrown by
+ * {@link #run(List, Consumer)}.
+ *
+ * @author ActiveViam
+ */
+final class SizeAwareScheduler {
+
+  private final String name;
+
+  private final int parallelism;
+
+  private final long maxBytesInFlight;
+
+  /**
+   * Constructor.
+   *
+   * @param name the name of the scheduler, used to name its threads
+   * @param parallelism the number of threads processing files
+   * @param maxBytesInFlight the maximal total size of the files processed at the same time
+   */
+  SizeAwareScheduler(final String name, final int parallelism, final long maxBytesInFlight) {
+    if (parallelism <= 0 || maxBytesInFlight <= 0) {
+      throw new IllegalArgumentException(
+          "The parallelism and the bytes in flight must be positive: "
+              + parallelism
+              + ", "
+              + maxBytesInFlight);
+    }
+    this.name = name;
+    this.parallelism = parallelism;
+    this.maxBytesInFlight = maxBytesInFlight;
+  }
+
+  /** Creates a scheduler with one thread per CPU and the default bytes in flight. */
+  static SizeAwareScheduler create(final String name) {
+    return new SizeAwareScheduler(
+        name, Runtime.getRuntime().availableProcessors(), BytesInFlight.DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * Runs the given task on each of the given files, and waits until all are processed.
+   *
+   * @return the processing times of the files
+   */
+  FileTimings run(final List<Path> files, final Consumer<Path> task) {
+    final Path[] paths = files.toArray(Path[]::new);
+    final long[] sizes =
+        Arrays.stream(paths).parallel().mapToLong(SizeAwareScheduler::size).toArray();
+    final Integer[] order = new Integer[paths.length];
+    Arrays.setAll(order, i -> i);
+    Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+    final Path[] sortedPaths = new Path[paths.length];
+    final long[] sortedSizes = new long[paths.length];
+    for (int i = 0; i < order.length; ++i) {
+      sortedPaths[i] = paths[order[i]];
+      sortedSizes[i] = sizes[order[i]];
+    }
+
+    final int threads = Math.max(1, Math.min(this.parallelism, paths.length));
+    final FileTimings timings = new FileTimings(sortedPaths, sortedSizes, threads);
+    final BytesInFlight bytesInFlight = new BytesInFlight(this.maxBytesInFlight);
+    final AtomicInteger nextFile = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final List<Callable<Void>> workers = new ArrayList<>(threads);
+    for (int k = 0; k < threads; ++k) {
+      final int worker = k;
+      workers.add(
+          () -> {
+            runWorker(worker, task, timings, bytesInFlight, nextFile, failure);
+            return null;
+          });
+    }
+
+    final AtomicInteger threadCounter = new AtomicInteger();
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, this.name + "-" + threadCounter.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      executor.invokeAll(workers);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure.compareAndSet(null, e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final Throwable throwable = failure.get();
+    if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    } else if (throwable instanceof Error) {
+      throw (Error) throwable;
+    } else if (throwable != null) {
+      throw new RuntimeException(throwable);
+    }
+    return timings;
+  }
+
+  private void runWorker(
+      final int worker,
+      final Consumer<Path> task,
+      final FileTimings timings,
+      final BytesInFlight bytesInFlight,
+      final AtomicInteger nextFile,
+      final AtomicReference<Throwable> failure) {
+    try {
+      int file;
+      while (failure.get() == null && (file = nextFile.getAndIncrement()) < timings.size()) {
+        final int permits = bytesInFlight.acquire(timings.getSize(file));
+        try {
+          final long start = System.nanoTime();
+          task.accept(timings.getFile(file));
+          timings.record(file, worker, System.nanoTime() - start);
+        } finally {
+          bytesInFlight.release(permits);
+        }
+      }
+    } catch (final Throwable e) {
+      failure.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Returns the size of the given file, {@code 0} if it cannot be read so that the task reports the
+   * error.
+   */
+  private static long size(final Path file) {
+    try {
+      return Files.size(file);
+    } catch (final IOException e) {
+      return 0;
+    }
+  }
+}
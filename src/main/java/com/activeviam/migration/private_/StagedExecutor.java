@@ -0,0 +1,298 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a producer and a chain of stages, each one on its own threads, connected by bounded queues.
+ *
+ * <p>Items flow from one stage to the next as soon as they are produced, and a stage blocks when
+ * the queue of the next one is full, so that the number of items in flight is bounded. The first
+ * stage can also take the produced items in a given order rather than in their production order.
+ *
+ * <p>If the producer or a stage fails, all the threads are interrupted and the failure is thrown by
+ * {@link #run(Consumer)}.
+ *
+ * @author ActiveViam
+ */
+final class StagedExecutor {
+
+  private static final Logger LOGGER = Logger.getLogger(StagedExecutor.class.getName());
+
+  /** Marks the end of the items of a queue. */
+  private static final Object END = new Object();
+
+  private final String name;
+
+  private final int queueCapacity;
+
+  /** Order of the items waiting in front of the first stage, {@code null} to keep their order. */
+  private final Comparator<Object> firstStageOrder;
+
+  private final List<Stage> stages = new ArrayList<>();
+
+  private final List<ExecutorService> executors = new ArrayList<>();
+
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /**
+   * Constructor.
+   *
+   * @param name the name of the executor, used to name its threads
+   * @param queueCapacity the maximal number of items waiting in front of each stage
+   */
+  StagedExecutor(final String name, final int queueCapacity) {
+    this(name, queueCapacity, null);
+  }
+
+  /**
+   * Constructor of an executor whose first stage takes the produced items in the given order.
+   *
+   * <p>The queue in front of the first stage is then unbounded, so that the producer never waits
+   * and the first stage always takes the first of all the items produced so far.
+   *
+   * @param name the name of the executor, used to name its threads
+   * @param queueCapacity the maximal number of items waiting in front of each following stage
+   * @param firstStageOrder the order in which the first stage takes the produced items
+   */
+  @SuppressWarnings("unchecked")
+  StagedExecutor(final String name, final int queueCapacity, final Comparator<?> firstStageOrder) {
+    this.name = name;
+    this.queueCapacity = queueCapacity;
+    this.firstStageOrder =
+        firstStageOrder == null ? null : endLast((Comparator<Object>) firstStageOrder);
+  }
+
+  /** Returns the given order, followed by the end of the items. */
+  private static Comparator<Object> endLast(final Comparator<Object> order) {
+    return (first, second) ->
+        first == END
+            ? (second == END ? 0 : 1)
+            : (second == END ? -1 : order.compare(first, second));
+  }
+
+  /**
+   * Adds a stage after the previous ones.
+   *
+   * @param stageName the name of the stage, used to name its threads
+   * @param parallelism the number of threads of the stage
+   * @param function the function applied to each item, returning the item to give to the next
+   *     stage, or {@code null} to drop it
+   */
+  <I, O> StagedExecutor addStage(
+      final String stageName, final int parallelism, final Function<I, O> function) {
+    return addStage(stageName, parallelism, false, function);
+  }
+
+  /**
+   * Adds a stage after the previous ones, as {@link #addStage(String, int, Function)} does.
+   *
+   * @param virtualThreads whether the stage runs on virtual threads, if they are supported
+   */
+  @SuppressWarnings("unchecked")
+  <I, O> StagedExecutor addStage(
+      final String stageName,
+      final int parallelism,
+      final boolean virtualThreads,
+      final Function<I, O> function) {
+    final BlockingQueue<Object> input =
+        this.stages.isEmpty() && this.firstStageOrder != null
+            ? new PriorityBlockingQueue<>(this.queueCapacity, this.firstStageOrder)
+            : new ArrayBlockingQueue<>(this.queueCapacity);
+    this.stages.add(
+        new Stage(
+            stageName, parallelism, virtualThreads, (Function<Object, Object>) function, input));
+    return this;
+  }
+
+  /**
+   * Runs the given producer in a dedicated thread, feeding the first stage with the items it gives
+   * to its consumer, and waits until all items went through all stages.
+   */
+  <T> void run(final Consumer<Consumer<T>> producer) {
+    // Create all the threads first, so that a failure can interrupt all of them
+    final ExecutorService producerExecutor = createExecutor("producer", 1, false);
+    final List<ExecutorService> stageExecutors = new ArrayList<>();
+    for (final Stage stage : this.stages) {
+      stageExecutors.add(createExecutor(stage.name, stage.parallelism, stage.virtualThreads));
+    }
+
+    final BlockingQueue<Object> firstQueue = this.stages.get(0).input;
+    producerExecutor.execute(
+        () -> {
+          try {
+            producer.accept(item -> put(firstQueue, item));
+            put(firstQueue, END);
+          } catch (final Throwable e) {
+            fail(e);
+          }
+        });
+    for (int i = 0; i < this.stages.size(); ++i) {
+      final Stage stage = this.stages.get(i);
+      final BlockingQueue<Object> output =
+          i + 1 < this.stages.size() ? this.stages.get(i + 1).input : null;
+      for (int k = 0; k < stage.parallelism; ++k) {
+        stageExecutors.get(i).execute(() -> runWorker(stage, output));
+      }
+    }
+
+    try {
+      for (final ExecutorService executor : this.executors) {
+        executor.shutdown();
+      }
+      for (final ExecutorService executor : this.executors) {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          // Keep waiting, stages have no time limit
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    }
+
+    final Throwable throwable = this.failure.get();
+    if (throwable instanceof RuntimeException) {
+      throw (RuntimeException) throwable;
+    } else if (throwable != null) {
+      throw new RuntimeException(throwable);
+    }
+  }
+
+  private void runWorker(final Stage stage, final BlockingQueue<Object> output) {
+    try {
+      while (true) {
+        final Object item = stage.input.take();
+        if (item == END) {
+          // Let the other workers of the stage see the end too
+          stage.input.put(END);
+          break;
+        }
+        final Object result = stage.function.apply(item);
+        if (result != null && output != null) {
+          put(output, result);
+        }
+      }
+      if (stage.remainingWorkers.decrementAndGet() == 0 && output != null) {
+        put(output, END);
+      }
+    } catch (final InterruptedException e) {
+      // Interrupted because of a failure, which is already recorded
+    } catch (final Throwable e) {
+      fail(e);
+    }
+  }
+
+  private static void put(final BlockingQueue<Object> queue, final Object item) {
+    try {
+      queue.put(item);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while queuing an item", e);
+    }
+  }
+
+  private void fail(final Throwable throwable) {
+    if (this.failure.compareAndSet(null, throwable)) {
+      this.executors.forEach(ExecutorService::shutdownNow);
+    }
+  }
+
+  private ExecutorService createExecutor(
+      final String stageName, final int threads, final boolean virtualThreads) {
+    final String threadPrefix = this.name + "-" + stageName + "-";
+    ThreadFactory threadFactory = virtualThreads ? createVirtualThreadFactory(threadPrefix) : null;
+    if (threadFactory == null) {
+      if (virtualThreads) {
+        LOGGER.log(
+            Level.WARNING,
+            () -> "Virtual threads are not supported, using platform threads for " + stageName);
+      }
+      final AtomicInteger threadCounter = new AtomicInteger();
+      threadFactory =
+          runnable -> {
+            final Thread thread =
+                new Thread(runnable, threadPrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          };
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+    this.executors.add(executor);
+    return executor;
+  }
+
+  /**
+   * Returns a factory of virtual threads named with the given prefix, or {@code null} if the
+   * running Java version does not support them.
+   *
+   * <p>Virtual threads are created by reflection, since the tool is compiled for Java 17.
+   */
+  private static ThreadFactory createVirtualThreadFactory(final String threadPrefix) {
+    try {
+      final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      final Object namedBuilder =
+          builderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(builder, threadPrefix, 1L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+    } catch (final ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A stage of a {@link StagedExecutor}.
+   *
+   * @author ActiveViam
+   */
+  private static class Stage {
+
+    private final String name;
+
+    private final int parallelism;
+
+    private final boolean virtualThreads;
+
+    private final Function<Object, Object> function;
+
+    private final BlockingQueue<Object> input;
+
+    private final AtomicInteger remainingWorkers;
+
+    private Stage(
+        final String name,
+        final int parallelism,
+        final boolean virtualThreads,
+        final Function<Object, Object> function,
+        final BlockingQueue<Object> input) {
+      this.name = name;
+      this.parallelism = parallelism;
+      this.virtualThreads = virtualThreads;
+      this.function = function;
+      this.input = input;
+      this.remainingWorkers = new AtomicInteger(parallelism);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import java.util.List;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Finds the occurrences of a few ASCII keywords in a {@link ByteContent} with the JDK Vector API,
+ * comparing the first and last bytes of each keyword with a whole vector of positions at once, and
+ * only verifying the positions where both are equal.
+ *
+ * <p>The bytes of the segments of the content are scanned in place, without decoding them: the
+ * bytes of a multibyte UTF-8 character are all greater than 127, so that they never match an ASCII
+ * keyword.
+ *
+ * <p>This class requires the {@code jdk.incubator.vector} module, it must only be loaded when
+ * {@link ApiChecker#isVectorApiSupported()} is {@code true}.
+ *
+ * <p>This class is immutable and thread-safe.
+ *
+ * @author ActiveViam
+ */
+final class VectorizedKeywordScanner {
+
+  /** Preferred species of the platform, with at most 64 lanes so that a mask fits in a long. */
+  private static final VectorSpecies<Byte> SPECIES =
+      ByteVector.SPECIES_PREFERRED.length() <= Long.SIZE
+          ? ByteVector.SPECIES_PREFERRED
+          : ByteVector.SPECIES_512;
+
+  private final String[] keywords;
+
+  private final byte[] firstBytes;
+
+  private final byte[] lastBytes;
+
+  /** Greatest offset of the last byte of a keyword from its first one. */
+  private final int maxLastOffset;
+
+  /** Creates the scanner of the given non-empty ASCII keywords. */
+  VectorizedKeywordScanner(final List<String> keywords) {
+    this.keywords = keywords.toArray(String[]::new);
+    this.firstBytes = new byte[this.keywords.length];
+    this.lastBytes = new byte[this.keywords.length];
+    int maxLastOffset = 0;
+    for (int k = 0; k < this.keywords.length; ++k) {
+      final String keyword = this.keywords[k];
+      this.firstBytes[k] = (byte) keyword.charAt(0);
+      this.lastBytes[k] = (byte) keyword.charAt(keyword.length() - 1);
+      maxLastOffset = Math.max(maxLastOffset, keyword.length() - 1);
+    }
+    this.maxLastOffset = maxLastOffset;
+  }
+
+  /**
+   * Returns the start index of the first occurrence of a keyword in {@code content[from, length)},
+   * or -1 if there is none.
+   */
+  int find(final ByteContent content, final int from) {
+    final int segmentCount = content.getSegmentCount();
+    final int firstSegment = from < content.length() ? content.findSegment(from) : segmentCount;
+    for (int segment = firstSegment; segment < segmentCount; ++segment) {
+      final int start = content.getSegmentStart(segment);
+      final int end = content.getSegmentStart(segment + 1);
+      // Index in the array of the segment of an index of the content
+      final int shift = content.getSegmentOffset(segment) - start;
+      final int found =
+          find(content.getSegmentArray(segment), Math.max(from, start) + shift, end + shift);
+      final int inside = found >= 0 ? found - shift : end;
+      // The keywords starting before the end of the segment and ending in the next ones
+      for (int i = Math.max(from, end - this.maxLastOffset); i < inside; ++i) {
+        if (startsWithKeyword(content, i)) {
+          return i;
+        }
+      }
+      if (found >= 0) {
+        return inside;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the index of the first occurrence of a keyword entirely in {@code array[from, to)}, or
+   * -1 if there is none.
+   */
+  private int find(final byte[] array, final int from, final int to) {
+    final int lanes = SPECIES.length();
+    int i = from;
+    for (; i + this.maxLastOffset + lanes <= to; i += lanes) {
+      long candidates = findCandidates(array, i).toLong();
+      while (candidates != 0) {
+        final int index = i + Long.numberOfTrailingZeros(candidates);
+        if (startsWithKeyword(array, index, to)) {
+          return index;
+        }
+        candidates &= candidates - 1;
+      }
+    }
+    for (; i < to; ++i) {
+      if (startsWithKeyword(array, i, to)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the lanes of the positions starting at the given index which may start a keyword. */
+  private VectorMask<Byte> findCandidates(final byte[] array, final int index) {
+    final ByteVector firsts = ByteVector.fromArray(SPECIES, array, index);
+    VectorMask<Byte> candidates = SPECIES.maskAll(false);
+    for (int k = 0; k < this.keywords.length; ++k) {
+      final ByteVector lasts =
+          ByteVector.fromArray(SPECIES, array, index + this.keywords[k].length() - 1);
+      candidates = candidates.or(firsts.eq(this.firstBytes[k]).and(lasts.eq(this.lastBytes[k])));
+    }
+    return candidates;
+  }
+
+  private boolean startsWithKeyword(final byte[] array, final int index, final int to) {
+    for (final String keyword : this.keywords) {
+      if (index + keyword.length() <= to && regionEquals(keyword, array, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionEquals(final String keyword, final byte[] array, final int from) {
+    for (int i = 0; i < keyword.length(); ++i) {
+      if (keyword.charAt(i) != array[from + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean startsWithKeyword(final ByteContent content, final int index) {
+    for (final String keyword : this.keywords) {
+      if (index + keyword.length() <= content.length() && regionEquals(keyword, content, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionEquals(
+      final String keyword, final ByteContent content, final int from) {
+    for (int i = 0; i < keyword.length(); ++i) {
+      if (keyword.charAt(i) != content.charAt(from + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * The java files of a project added or modified since a git reference, in its working tree or in
+ * its index.
+ *
+ * <p>The tree of the reference, the index and the working tree are walked together. A file of the
+ * working tree is changed when its content is not the one of the reference, the content of a file
+ * whose stat data match its index entry being the indexed one, so that only the modified files are
+ * hashed. The untracked files are changed unless they are ignored.
+ *
+ * @author ActiveViam
+ */
+final class ChangedFiles {
+
+  private static final int REFERENCE_TREE = 0;
+
+  private static final int INDEX_TREE = 1;
+
+  private static final int WORKING_TREE = 2;
+
+  /** The changed files, relative to the project. */
+  private final Set<Path> files = new HashSet<>();
+
+  /** The directories containing changed files, relative to the project. */
+  private final Set<Path> directories = new HashSet<>();
+
+  private ChangedFiles() {}
+
+  /** Lists the java files of the given project changed since the given reference. */
+  static ChangedFiles since(final Path projectDirectory, final String reference) {
+    final File projectFile = projectDirectory.toAbsolutePath().normalize().toFile();
+    final FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(projectFile);
+    if (builder.getGitDir() == null) {
+      throw new IllegalArgumentException(
+          "Cannot list the files changed since " + reference + ": not in a git repository.");
+    }
+    try (final Repository repository = builder.readEnvironment().build()) {
+      final ObjectId treeId = repository.resolve(reference + "^{tree}");
+      if (treeId == null) {
+        throw new IllegalArgumentException("Unknown git reference: " + reference);
+      }
+      final Path workTree = repository.getWorkTree().toPath().toAbsolutePath().normalize();
+      final String prefix = toGitPath(workTree.relativize(projectFile.toPath()));
+      final ChangedFiles changedFiles = new ChangedFiles();
+      changedFiles.collect(repository, treeId, prefix);
+      return changedFiles;
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void collect(final Repository repository, final ObjectId treeId, final String prefix)
+      throws IOException {
+    try (final ObjectReader reader = repository.newObjectReader();
+        final TreeWalk walk = new TreeWalk(repository, reader)) {
+      final CanonicalTreeParser referenceTree = new CanonicalTreeParser();
+      referenceTree.reset(reader, treeId);
+      walk.addTree(referenceTree);
+      walk.addTree(new DirCacheIterator(repository.readDirCache()));
+      walk.addTree(new FileTreeIterator(repository));
+      final TreeFilter javaFiles = PathSuffixFilter.create(MigrationUtils.JAVA_SUFFIX);
+      walk.setFilter(
+          prefix.isEmpty()
+              ? javaFiles
+              : AndTreeFilter.create(PathFilter.create(prefix), javaFiles));
+      walk.setRecursive(true);
+
+      while (walk.next()) {
+        if (isChanged(walk, reader)) {
+          final String path = walk.getPathString();
+          add(Path.of(prefix.isEmpty() ? path : path.substring(prefix.length() + 1)));
+        }
+      }
+    }
+  }
+
+  private static boolean isChanged(final TreeWalk walk, final ObjectReader reader)
+      throws IOException {
+    final WorkingTreeIterator workingTree = walk.getTree(WORKING_TREE, WorkingTreeIterator.class);
+    if (workingTree == null || !FileMode.REGULAR_FILE.equals(walk.getRawMode(WORKING_TREE))) {
+      return false;
+    }
+    final DirCacheIterator index = walk.getTree(INDEX_TREE, DirCacheIterator.class);
+    if (index == null && workingTree.isEntryIgnored()) {
+      return false;
+    }
+    if (walk.getRawMode(REFERENCE_TREE) == FileMode.TYPE_MISSING) {
+      return true;
+    }
+    final ObjectId contentId =
+        index != null && !workingTree.isModified(index.getDirCacheEntry(), true, reader)
+            ? index.getEntryObjectId()
+            : workingTree.getEntryObjectId();
+    return !contentId.equals(walk.getObjectId(REFERENCE_TREE));
+  }
+
+  private void add(final Path file) {
+    this.files.add(file);
+    for (Path directory = file.getParent(); directory != null; directory = directory.getParent()) {
+      if (!this.directories.add(directory)) {
+        break;
+      }
+    }
+  }
+
+  /** Whether the given file, relative to the project, is changed. */
+  boolean contains(final Path file) {
+    return this.files.contains(file);
+  }
+
+  /** Whether the given directory, relative to the project, contains changed files. */
+  boolean mayContain(final Path directory) {
+    return this.directories.contains(directory);
+  }
+
+  private static String toGitPath(final Path path) {
+    return path.toString().replace(path.getFileSystem().getSeparator(), "/");
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Command line arguments of a launcher class, split between positional arguments and options.
+ *
+ * <p>Options are written {@code --name=value}, or {@code --name} for flags, and can be placed
+ * anywhere among the positional arguments.
+ *
+ * @author ActiveViam
+ */
+public class CommandLineOptions {
+
+  private static final String OPTION_PREFIX = "--";
+
+  private final String[] arguments;
+
+  private final Map<String, String> options;
+
+  private CommandLineOptions(final String[] arguments, final Map<String, String> options) {
+    this.arguments = arguments;
+    this.options = options;
+  }
+
+  /**
+   * Parses the given command line arguments.
+   *
+   * @param args the command line arguments
+   * @param knownOptions the names of the accepted options, without prefix
+   * @throws IllegalArgumentException if an option is unknown
+   */
+  public static CommandLineOptions parse(final String[] args, final Set<String> knownOptions) {
+    final List<String> arguments = new ArrayList<>();
+    final Map<String, String> options = new HashMap<>();
+    for (final String arg : args) {
+      if (!arg.startsWith(OPTION_PREFIX)) {
+        arguments.add(arg);
+        continue;
+      }
+      final int separatorIndex = arg.indexOf('=');
+      final String name =
+          arg.substring(OPTION_PREFIX.length(), separatorIndex < 0 ? arg.length() : separatorIndex);
+      if (!knownOptions.contains(name)) {
+        throw new IllegalArgumentException(
+            "Unknown option: " + arg + ", expected one of " + knownOptions + ".");
+      }
+      options.put(name, separatorIndex < 0 ? "" : arg.substring(separatorIndex + 1));
+    }
+    return new CommandLineOptions(arguments.toArray(String[]::new), options);
+  }
+
+  /** Returns the positional arguments, in order. */
+  public String[] getArguments() {
+    return this.arguments;
+  }
+
+  /** Whether the given option has been provided. */
+  public boolean hasOption(final String name) {
+    return this.options.containsKey(name);
+  }
+
+  /** Returns the value of the given option, or the given default value if it is not provided. */
+  public String getOption(final String name, final String defaultValue) {
+    return this.options.getOrDefault(name, defaultValue);
+  }
+
+  /**
+   * Returns the integer value of the given option, or the given default value if it is not
+   * provided.
+   */
+  public int getIntOption(final String name, final int defaultValue) {
+    final String value = this.options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Option --" + name + " expects an integer, got: " + value, e);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the mapping generation and of the migration, to find where the
+ * time of a slow run goes with the standard JFR tools, from a {@link FlightRecording} or any other
+ * recording.
+ *
+ * <p>Events are only committed when a recording enables them, and do not record stack traces, so
+ * that their cost is negligible otherwise.
+ *
+ * @author ActiveViam
+ */
+public final class FlightEvents {
+
+  private static final String CATEGORY = "ActiveViam";
+
+  private FlightEvents() {}
+
+  /**
+   * Processing of a file by a processor, such as the migration or the API check.
+   *
+   * @author ActiveViam
+   */
+  @Name("com.activeviam.FileProcessed")
+  @Label("File Processed")
+  @Category({CATEGORY, "Migration"})
+  @StackTrace(false)
+  public static final class FileProcessed extends Event {
+
+    @Label("Processor")
+    public String processor;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+
+    @Label("Matches")
+    @Description("Old imports replaced or non-public API uses found")
+    public int matches;
+  }
+
+  /**
+   * Build of an automaton searching file contents.
+   *
+   * @author ActiveViam
+   */
+  @Name("com.activeviam.PatternCompiled")
+  @Label("Pattern Compiled")
+  @Category({CATEGORY, "Migration"})
+  @StackTrace(false)
+  public static final class PatternCompiled extends Event {
+
+    @Label("Pattern")
+    @Description("What the automaton searches, such as old imports or API rules")
+    public String pattern;
+
+    @Label("Keywords")
+    @Description("Number of keywords or rules the automaton is built from")
+    public int keywords;
+  }
+
+  /**
+   * Load of a mapping between old and new imports.
+   *
+   * @author ActiveViam
+   */
+  @Name("com.activeviam.MappingLoaded")
+  @Label("Mapping Loaded")
+  @Category({CATEGORY, "Migration"})
+  @StackTrace(false)
+  public static final class MappingLoaded extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Compiled")
+    @Description("Whether the compiled artifact of the csv file was loaded")
+    public boolean compiled;
+
+    @Label("Entries")
+    public int entries;
+  }
+
+  /**
+   * Phase of the generation of a mapping from a git repository.
+   *
+   * @author ActiveViam
+   */
+  @Name("com.activeviam.MappingGenerationPhase")
+  @Label("Mapping Generation Phase")
+  @Category({CATEGORY, "Mapping"})
+  @StackTrace(false)
+  public static final class MappingGenerationPhase extends Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Version")
+    @Description("Version fetched, or versions compared")
+    public String version;
+
+    @Label("Count")
+    @Description("Number of refs fetched, diff entries or mapping entries produced")
+    public int count;
+  }
+}
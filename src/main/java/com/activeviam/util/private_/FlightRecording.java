@@ -0,0 +1,83 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Java Flight Recorder recording of a run, written to a file when it is closed.
+ *
+ * <p>It records the {@link FlightEvents} of the tool along with the events of the {@code default}
+ * JFR configuration, which is designed to run in production.
+ *
+ * @author ActiveViam
+ */
+public final class FlightRecording implements AutoCloseable {
+
+  private static final Logger LOGGER = Logger.getLogger(FlightRecording.class.getName());
+
+  private static final String CONFIGURATION = "default";
+
+  /** Recording of a run which is not recorded. */
+  private static final FlightRecording NONE = new FlightRecording(null, null);
+
+  /** The recording, {@code null} if the run is not recorded. */
+  private final Recording recording;
+
+  private final Path file;
+
+  private FlightRecording(final Recording recording, final Path file) {
+    this.recording = recording;
+    this.file = file;
+  }
+
+  /**
+   * Starts a recording if the given option, whose value is the file of the recording, is in the
+   * given command line options.
+   *
+   * @return the recording, which does nothing if the option is absent
+   */
+  public static FlightRecording startIfAsked(
+      final CommandLineOptions options, final String option) {
+    return options.hasOption(option) ? start(Path.of(options.getOption(option, null))) : NONE;
+  }
+
+  /** Starts a recording, which is written to the given file when it is closed. */
+  public static FlightRecording start(final Path file) {
+    final Recording recording;
+    try {
+      recording = new Recording(Configuration.getConfiguration(CONFIGURATION));
+      recording.setName(file.getFileName().toString());
+      recording.setToDisk(true);
+      recording.setDestination(file);
+    } catch (final IOException | ParseException e) {
+      throw new RuntimeException(e);
+    }
+    recording.start();
+    LOGGER.log(Level.INFO, () -> "Flight recording started, it will be written to " + file);
+    return new FlightRecording(recording, file);
+  }
+
+  /** Stops the recording and writes it to its file. */
+  @Override
+  public void close() {
+    if (this.recording == null) {
+      return;
+    }
+    // Stopping a recording with a destination writes it
+    this.recording.stop();
+    this.recording.close();
+    LOGGER.log(Level.INFO, () -> "Flight recording written to " + this.file);
+  }
+}
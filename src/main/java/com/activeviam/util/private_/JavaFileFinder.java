@@ -0,0 +1,333 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+/**
+ * Finds the java files of a project, without descending into the directories that cannot contain
+ * files to migrate.
+ *
+ * <p>A directory is skipped with all its content when:
+ *
+ * <ul>
+ *   <li>it is a version control, IDE or dependency directory, such as {@code .git}, {@code .idea}
+ *       or {@code node_modules}, or a directory of generated sources
+ *   <li>it is a build output directory, such as {@code target} or {@code build}, outside of a
+ *       {@code src} directory, where such names are likely to be packages
+ *   <li>it is ignored by a {@code .gitignore} file of the project or of its parent directories, up
+ *       to the root of its git repository
+ *   <li>its path relative to the project matches one of the exclusion globs
+ * </ul>
+ *
+ * <p>A java file is found when it is not ignored by a {@code .gitignore} file, does not match any
+ * exclusion glob, and matches one of the inclusion globs if there are some.
+ *
+ * <p>With a git reference, only the java files added or modified since this reference, in the
+ * working tree or in the index, are found, and the directories without such files are skipped.
+ *
+ * @author ActiveViam
+ */
+public class JavaFileFinder {
+
+  /** Finder without any user inclusion or exclusion. */
+  public static final JavaFileFinder DEFAULT = new JavaFileFinder(List.of(), List.of());
+
+  /** Names of the directories always skipped. */
+  private static final Set<String> EXCLUDED_DIRECTORIES =
+      Set.of(
+          ".git",
+          ".hg",
+          ".svn",
+          ".idea",
+          ".vscode",
+          ".gradle",
+          ".mvn",
+          "node_modules",
+          "generated-sources",
+          "generated-test-sources");
+
+  /** Names of the build output directories, skipped when they are outside of a source directory. */
+  private static final Set<String> BUILD_DIRECTORIES = Set.of("target", "build", "out", "bin");
+
+  private static final String SOURCE_DIRECTORY = "src";
+
+  private static final String GIT_DIRECTORY = ".git";
+
+  private static final String GIT_IGNORE_FILE = ".gitignore";
+
+  private final List<PathMatcher> includes;
+
+  private final List<PathMatcher> excludes;
+
+  /** The git reference since which the files are changed, or {@code null} for all files. */
+  private final String since;
+
+  /**
+   * Constructor.
+   *
+   * @param includes globs of the files to find, relative to the project, all files if empty
+   * @param excludes globs of the files and directories to skip, relative to the project
+   */
+  public JavaFileFinder(final List<String> includes, final List<String> excludes) {
+    this(includes, excludes, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param includes globs of the files to find, relative to the project, all files if empty
+   * @param excludes globs of the files and directories to skip, relative to the project
+   * @param since the git reference since which the files to find are added or modified, or {@code
+   *     null} to find all the files
+   */
+  public JavaFileFinder(
+      final List<String> includes, final List<String> excludes, final String since) {
+    this.includes = compileGlobs(includes);
+    this.excludes = compileGlobs(excludes);
+    this.since = since;
+  }
+
+  private static List<PathMatcher> compileGlobs(final List<String> globs) {
+    final List<PathMatcher> matchers = new ArrayList<>(globs.size());
+    for (final String glob : globs) {
+      matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+    return matchers;
+  }
+
+  /**
+   * Gives each java file inside the given directory and its sub-directories to the given consumer,
+   * as soon as it is found.
+   */
+  public void forEachJavaFile(final String directory, final Consumer<Path> consumer) {
+    forEachJavaFile(directory, (file, attributes) -> consumer.accept(file));
+  }
+
+  /**
+   * Gives each java file inside the given directory and its sub-directories to the given consumer,
+   * with its attributes read while visiting the directory, as soon as it is found.
+   */
+  public void forEachJavaFile(
+      final String directory, final BiConsumer<Path, BasicFileAttributes> consumer) {
+    final Path root = Paths.get(directory);
+    final ChangedFiles changedFiles =
+        this.since == null ? null : ChangedFiles.since(root, this.since);
+    try {
+      Files.walkFileTree(root, new JavaFileVisitor(root, changedFiles, consumer));
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns the ignore rules of the given directory, or {@code null} if it has none. */
+  private static IgnoreNode loadIgnoreNode(final Path directory) throws IOException {
+    final Path ignoreFile = directory.resolve(GIT_IGNORE_FILE);
+    if (!Files.isRegularFile(ignoreFile)) {
+      return null;
+    }
+    final IgnoreNode node = new IgnoreNode();
+    try (final InputStream input = Files.newInputStream(ignoreFile)) {
+      node.parse(input);
+    }
+    return node.getRules().isEmpty() ? null : node;
+  }
+
+  /**
+   * Returns the ignore rules of the parent directories of the given project, from the closest to
+   * the root of its git repository.
+   */
+  private static List<IgnoreRules> loadParentIgnoreRules(final Path root) throws IOException {
+    final List<IgnoreRules> rules = new ArrayList<>();
+    if (Files.exists(root.resolve(GIT_DIRECTORY))) {
+      return rules;
+    }
+    final Path absoluteRoot = root.toAbsolutePath().normalize();
+    for (Path parent = absoluteRoot.getParent(); parent != null; parent = parent.getParent()) {
+      final IgnoreNode node = loadIgnoreNode(parent);
+      if (node != null) {
+        rules.add(new IgnoreRules(root, toGitPath(parent.relativize(absoluteRoot)) + "/", node));
+      }
+      if (Files.exists(parent.resolve(GIT_DIRECTORY))) {
+        return rules;
+      }
+    }
+    // The project is not in a git repository, the .gitignore files above it do not apply
+    return List.of();
+  }
+
+  private static String toGitPath(final Path path) {
+    return path.toString().replace(path.getFileSystem().getSeparator(), "/");
+  }
+
+  /**
+   * The rules of a {@code .gitignore} file, applying to the content of its directory.
+   *
+   * @author ActiveViam
+   */
+  private static class IgnoreRules {
+
+    private final Path directory;
+
+    /**
+     * Path of {@link #directory} relative to the directory of the rules, empty if they are the
+     * same.
+     */
+    private final String prefix;
+
+    private final IgnoreNode node;
+
+    private IgnoreRules(final Path directory, final String prefix, final IgnoreNode node) {
+      this.directory = directory;
+      this.prefix = prefix;
+      this.node = node;
+    }
+
+    /**
+     * Returns whether the given path is ignored by these rules, or {@code null} if no rule matches
+     * it.
+     */
+    private Boolean isIgnored(final Path path, final boolean isDirectory) {
+      return this.node.checkIgnored(
+          this.prefix + toGitPath(this.directory.relativize(path)), isDirectory);
+    }
+  }
+
+  /**
+   * Visits the files of a project.
+   *
+   * @author ActiveViam
+   */
+  private class JavaFileVisitor extends SimpleFileVisitor<Path> {
+
+    private final Path root;
+
+    /** The files changed since the git reference, or {@code null} to visit all files. */
+    private final ChangedFiles changedFiles;
+
+    private final BiConsumer<Path, BasicFileAttributes> consumer;
+
+    /** Ignore rules applying to the visited directory, from the closest one. */
+    private final Deque<IgnoreRules> ignoreRules = new ArrayDeque<>();
+
+    /** Directories whose rules are in {@link #ignoreRules}. */
+    private final Deque<Path> ignoreRuleDirectories = new ArrayDeque<>();
+
+    /** Number of visited {@code src} directories containing the visited directory. */
+    private int sourceDepth;
+
+    private JavaFileVisitor(
+        final Path root,
+        final ChangedFiles changedFiles,
+        final BiConsumer<Path, BasicFileAttributes> consumer)
+        throws IOException {
+      this.root = root;
+      this.changedFiles = changedFiles;
+      this.consumer = consumer;
+      for (final IgnoreRules rules : loadParentIgnoreRules(root)) {
+        this.ignoreRules.addLast(rules);
+      }
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+        throws IOException {
+      if (!dir.equals(this.root)) {
+        final String name = dir.getFileName().toString();
+        if (EXCLUDED_DIRECTORIES.contains(name)
+            || (this.sourceDepth == 0 && BUILD_DIRECTORIES.contains(name))
+            || (this.changedFiles != null
+                && !this.changedFiles.mayContain(this.root.relativize(dir)))
+            || isIgnored(dir, true)
+            || matchesAny(JavaFileFinder.this.excludes, dir)) {
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+      }
+
+      if (SOURCE_DIRECTORY.equals(String.valueOf(dir.getFileName()))) {
+        ++this.sourceDepth;
+      }
+      final IgnoreNode node = loadIgnoreNode(dir);
+      if (node != null) {
+        this.ignoreRules.addFirst(new IgnoreRules(dir, "", node));
+        this.ignoreRuleDirectories.addFirst(dir);
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(final Path dir, final IOException exc)
+        throws IOException {
+      if (exc != null) {
+        throw exc;
+      }
+      if (SOURCE_DIRECTORY.equals(String.valueOf(dir.getFileName()))) {
+        --this.sourceDepth;
+      }
+      if (dir.equals(this.ignoreRuleDirectories.peekFirst())) {
+        this.ignoreRules.removeFirst();
+        this.ignoreRuleDirectories.removeFirst();
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+      if (attrs.isRegularFile()
+          && file.getFileName().toString().endsWith(MigrationUtils.JAVA_SUFFIX)
+          && (this.changedFiles == null || this.changedFiles.contains(this.root.relativize(file)))
+          && (JavaFileFinder.this.includes.isEmpty()
+              || matchesAny(JavaFileFinder.this.includes, file))
+          && !matchesAny(JavaFileFinder.this.excludes, file)
+          && !isIgnored(file, false)) {
+        this.consumer.accept(file, attrs);
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    private boolean isIgnored(final Path path, final boolean isDirectory) {
+      for (final IgnoreRules rules : this.ignoreRules) {
+        final Boolean ignored = rules.isIgnored(path, isDirectory);
+        if (ignored != null) {
+          return ignored;
+        }
+      }
+      return false;
+    }
+
+    private boolean matchesAny(final List<PathMatcher> matchers, final Path path) {
+      if (matchers.isEmpty()) {
+        return false;
+      }
+      final Path relativePath = this.root.relativize(path);
+      for (final PathMatcher matcher : matchers) {
+        if (matcher.matches(relativePath)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
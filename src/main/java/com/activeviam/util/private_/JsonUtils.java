@@ -10,6 +10,7 @@ package com.activeviam.util.private_;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,6 +26,15 @@ public class JsonUtils {
     }
   }
 
+  /** Writes the given value, made of maps, lists and scalars, to the given JSON file. */
+  public static void writeJson(final Path path, final Object value) {
+    try {
+      new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), value);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public static InputStream getResourceAsStream(final String path) {
     return Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
   }
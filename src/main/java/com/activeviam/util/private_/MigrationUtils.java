@@ -12,12 +12,21 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * Utility class.
@@ -60,37 +69,176 @@ public class MigrationUtils {
 
   /** Retrieves all the java files inside the given directory and its sub-directories. */
   public static List<Path> getAllJavaFiles(final String directory) {
+    final List<Path> files = new ArrayList<>();
+    forEachJavaFile(directory, files::add);
+    return files;
+  }
+
+  /**
+   * Gives each java file inside the given directory and its sub-directories to the given consumer,
+   * as soon as it is found, skipping the directories which cannot contain files to migrate.
+   *
+   * @see JavaFileFinder
+   */
+  public static void forEachJavaFile(final String directory, final Consumer<Path> consumer) {
+    JavaFileFinder.DEFAULT.forEachJavaFile(directory, consumer);
+  }
+
+  /** Returns the whole content of the given file as a single String. */
+  public static String getFileContent(final Path filePath) {
     try {
-      return Files.walk(Paths.get(directory))
-          .filter(Files::isRegularFile)
-          .filter(path -> path.toString().endsWith(JAVA_SUFFIX))
-          .toList();
+      return Files.readString(filePath);
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  /** Returns the whole content of the given file as a single String. */
-  public static String getFileContent(final Path filePath) {
+  /** Returns the whole content of the given file as bytes. */
+  public static byte[] getFileBytes(final Path filePath) {
     try {
-      return Files.readString(filePath);
+      return Files.readAllBytes(filePath);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Reads the whole content of the given file in an array of the given provider, which is called
+   * with the size of the file.
+   *
+   * @return the buffer of the array, limited to the content of the file
+   */
+  public static ByteBuffer readFileContent(
+      final Path filePath, final IntFunction<byte[]> bufferProvider) {
+    try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      final int size = Math.toIntExact(channel.size());
+      final ByteBuffer buffer = ByteBuffer.wrap(bufferProvider.apply(size), 0, size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Read until the end of the file
+      }
+      return buffer.flip();
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Decodes the given file content, like {@link #getFileContent(Path)} does.
+   *
+   * @throws RuntimeException if the content is not valid UTF-8
+   */
+  public static String decodeFileContent(final byte[] bytes) {
+    try {
+      return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+    } catch (final CharacterCodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Replaces the whole content of the given file with the given content.
+   *
+   * <p>The content is written in a temporary file of the same directory which is then moved in
+   * place atomically, so that the file is never left partially written. The permissions of the
+   * replaced file are kept.
+   */
+  public static void replaceFileContent(final Path filePath, final String newContent) {
+    replaceFileContent(filePath, newContent.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Replaces the whole content of the given file with the given bytes, as {@link
+   * #replaceFileContent(Path, String)} does.
+   */
+  public static void replaceFileContent(final Path filePath, final byte[] newContent) {
+    replaceFileContent(filePath, ByteBuffer.wrap(newContent));
+  }
+
+  /**
+   * Replaces the whole content of the given file with the remaining bytes of the given buffers,
+   * written with a gathering write, as {@link #replaceFileContent(Path, String)} does.
+   */
+  public static void replaceFileContent(final Path filePath, final ByteBuffer... newContent) {
+    Path temporaryFile = null;
+    try {
+      temporaryFile = createReplacementFile(filePath);
+      try (final FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+        write(channel, newContent);
+      }
+      moveReplacementFile(temporaryFile, filePath);
     } catch (final IOException e) {
+      deleteQuietly(temporaryFile);
       throw new RuntimeException(e);
     }
   }
 
-  /** Replaces the whole content of the given file with the given content. */
-  public static void replaceFileContent(final File file, final String newContent) {
-    generateFile(file, writer -> writer.write(newContent));
+  /** Writes all the remaining bytes of the given buffers with gathering writes. */
+  public static void write(final FileChannel channel, final ByteBuffer... content)
+      throws IOException {
+    long remaining = 0;
+    for (final ByteBuffer buffer : content) {
+      remaining += buffer.remaining();
+    }
+    while (remaining > 0) {
+      remaining -= channel.write(content);
+    }
+  }
+
+  /**
+   * Creates an empty temporary file in the directory of the given file, to be written and then
+   * {@link #moveReplacementFile(Path, Path) moved} in place of the file.
+   */
+  public static Path createReplacementFile(final Path filePath) throws IOException {
+    final Path directory = filePath.toAbsolutePath().getParent();
+    return Files.createTempFile(directory, "." + filePath.getFileName(), ".tmp");
   }
 
   /**
-   * Creates a file and writes in it with the given {@link IWriteInstructions instructions}, or
-   * overwrites the file if it already exists.
+   * Replaces the given file with the given temporary file, atomically if the file system supports
+   * it. The permissions of the replaced file are kept.
+   */
+  public static void moveReplacementFile(final Path temporaryFile, final Path filePath)
+      throws IOException {
+    copyPermissions(filePath, temporaryFile);
+    try {
+      Files.move(
+          temporaryFile,
+          filePath,
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (final AtomicMoveNotSupportedException e) {
+      Files.move(temporaryFile, filePath, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void copyPermissions(final Path source, final Path target) throws IOException {
+    final PosixFileAttributeView sourceView =
+        Files.getFileAttributeView(source, PosixFileAttributeView.class);
+    final PosixFileAttributeView targetView =
+        Files.getFileAttributeView(target, PosixFileAttributeView.class);
+    if (sourceView != null && targetView != null && Files.exists(source)) {
+      targetView.setPermissions(sourceView.readAttributes().permissions());
+    }
+  }
+
+  /** Deletes the given file if it exists, ignoring failures. */
+  public static void deleteQuietly(final Path path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (final IOException e) {
+        // Nothing more can be done, the original exception is more relevant
+      }
+    }
+  }
+
+  /**
+   * Creates a file and writes in it with the given {@link IWriteInstructions instructions} in
+   * UTF-8, or overwrites the file if it already exists.
    */
   public static void generateFile(final File file, final IWriteInstructions writeInstructions) {
     MigrationUtils.createDirectoriesIfNeeded(file);
-    try (final FileWriter writer = new FileWriter(file, false)) {
+    try (final FileWriter writer = new FileWriter(file, StandardCharsets.UTF_8, false)) {
       writeInstructions.accept(writer);
     } catch (final IOException e) {
       throw new RuntimeException(e);
@@ -141,6 +289,11 @@ public class MigrationUtils {
       final String directoryPath, final boolean print, final String... command) {
     final ProcessBuilder processBuilder = new ProcessBuilder(command);
     processBuilder.directory(new File(directoryPath));
+    if (!print) {
+      // The output is not read, so it must not fill the pipes and block the process
+      processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+      processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+    }
 
     try {
       final Process process = processBuilder.start();
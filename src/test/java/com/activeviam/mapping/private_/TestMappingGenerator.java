@@ -0,0 +1,251 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.mapping.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestMappingGenerator {
+
+  @TempDir Path directory;
+
+  @Test
+  void testOnlyMainJavaSourcesAreMapped() throws IOException, GitAPIException {
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store { int store; }");
+      write("core/src/main/java/com/qfs/Other.java", "class Other { int other; }");
+      write("core/src/test/java/com/qfs/StoreTest.java", "class StoreTest { int test; }");
+      write("core/src/main/resources/com/qfs/Resource.java", "class Resource {}");
+      write("docs/readme.txt", "Store");
+      commit(git, "1.0");
+
+      move("core/src/main/java/com/qfs/Store.java", "core/src/main/java/com/activeviam/Store.java");
+      // Renamed with a new content, it is only paired with the deleted file by its name
+      Files.delete(this.directory.resolve("core/src/main/java/com/qfs/Other.java"));
+      write("core/src/main/java/com/activeviam/internal/Other.java", "interface Other {}");
+      move(
+          "core/src/test/java/com/qfs/StoreTest.java",
+          "core/src/test/java/com/activeviam/StoreTest.java");
+      move(
+          "core/src/main/resources/com/qfs/Resource.java",
+          "core/src/main/resources/com/activeviam/Resource.java");
+      commit(git, "2.0");
+    }
+
+    final Map<String, String> mapping =
+        MappingGenerator.generateMapping(this.directory.toString(), "1.0", "2.0").getMapping();
+
+    assertThat(mapping)
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "com.qfs.Store", "com.activeviam.Store",
+                "com.qfs.Other", "com.activeviam.internal.Other"));
+  }
+
+  @Test
+  void testMovesArePairedByStages() throws IOException, GitAPIException {
+    final String content =
+        "package com.qfs;\n\nclass Renamed {\n" + "  int field;\n".repeat(20) + "}\n";
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store { int store; }");
+      write("core/src/main/java/com/qfs/Renamed.java", content);
+      // Two files with the same name are not paired by their name
+      write("core/src/main/java/com/qfs/a/Twin.java", "class Twin { int a; }");
+      write("core/src/main/java/com/qfs/b/Twin.java", "class Twin { int b; }");
+      commit(git, "1.0");
+
+      move(
+          "core/src/main/java/com/qfs/Store.java",
+          "core/src/main/java/com/activeviam/DataStore.java");
+      Files.delete(this.directory.resolve("core/src/main/java/com/qfs/Renamed.java"));
+      write(
+          "core/src/main/java/com/activeviam/NewName.java",
+          content.replace("package com.qfs;", "package com.activeviam;"));
+      Files.delete(this.directory.resolve("core/src/main/java/com/qfs/a/Twin.java"));
+      Files.delete(this.directory.resolve("core/src/main/java/com/qfs/b/Twin.java"));
+      write("core/src/main/java/com/activeviam/a/Twin.java", "interface Twin {}");
+      write("core/src/main/java/com/activeviam/b/Twin.java", "enum Twin {}");
+      commit(git, "2.0");
+    }
+
+    final Mapping mapping =
+        MappingGenerator.generateMapping(this.directory.toString(), "1.0", "2.0", 0);
+
+    assertThat(mapping.getMapping())
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "com.qfs.Store", "com.activeviam.DataStore",
+                "com.qfs.Renamed", "com.activeviam.NewName"));
+    assertThat(mapping.getInfo().getPhaseTimes())
+        .containsKeys("pairExactContents", "pairUniqueNames", "pairSimilarContents");
+  }
+
+  @Test
+  void testMappingIsCachedByTrees() throws IOException, GitAPIException {
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store { int store; }");
+      commit(git, "1.0");
+      move("core/src/main/java/com/qfs/Store.java", "core/src/main/java/com/activeviam/Store.java");
+      commit(git, "2.0");
+      // Another tag of the same sources
+      git.tag().setName("2.0-sb3").call();
+    }
+    final Path cacheDirectory = this.directory.resolve("cache");
+
+    final Mapping generated =
+        MappingGenerator.generateMapping(
+            this.directory.toString(), "1.0", "2.0", -1, cacheDirectory);
+    final Mapping cached =
+        MappingGenerator.generateMapping(
+            this.directory.toString(), "1.0", "2.0-sb3", -1, cacheDirectory);
+
+    assertThat(generated.getInfo().getPhaseTimes()).containsKey("getDiffEntries");
+    assertThat(cached.getInfo().getPhaseTimes())
+        .containsKey("readCache")
+        .doesNotContainKey("getDiffEntries");
+    assertThat(cached.getMapping())
+        .isEqualTo(generated.getMapping())
+        .containsExactlyEntriesOf(Map.of("com.qfs.Store", "com.activeviam.Store"));
+    assertThat(cached.getInfo().getTargetVersion()).isEqualTo("2.0-sb3");
+
+    // Another rename limit may pair other files
+    assertThat(
+            MappingGenerator.generateMapping(
+                    this.directory.toString(), "1.0", "2.0", 0, cacheDirectory)
+                .getInfo()
+                .getPhaseTimes())
+        .containsKey("getDiffEntries");
+  }
+
+  @Test
+  void testMappingsOfSeveralVersionsAreGeneratedAtOnce() throws IOException, GitAPIException {
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store { int store; }");
+      write("core/src/main/java/com/qfs/Other.java", "class Other { int other; }");
+      commit(git, "1.0");
+      move("core/src/main/java/com/qfs/Store.java", "core/src/main/java/com/activeviam/Store.java");
+      commit(git, "1.1");
+      move("core/src/main/java/com/qfs/Other.java", "core/src/main/java/com/activeviam/Other.java");
+      commit(git, "2.0");
+    }
+
+    final List<Mapping> mappings =
+        MappingGenerator.generateMappings(
+            this.directory.toString(), List.of("1.0", "1.1"), "2.0", -1, null);
+
+    assertThat(mappings)
+        .extracting(mapping -> mapping.getInfo().getCurrentVersion())
+        .containsExactly("1.0", "1.1");
+    assertThat(mappings.get(0).getMapping())
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "com.qfs.Store", "com.activeviam.Store",
+                "com.qfs.Other", "com.activeviam.Other"));
+    assertThat(mappings.get(1).getMapping())
+        .containsExactlyEntriesOf(Map.of("com.qfs.Other", "com.activeviam.Other"));
+  }
+
+  @Test
+  void testKeysAreUniqueAmongTheAddedFilesOnly() throws IOException, GitAPIException {
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store {}");
+      write("core/src/main/java/com/qfs/Kept.java", "class Store {}");
+      commit(git, "1.0");
+      // The target has two files with this content, but only one of them is added
+      move("core/src/main/java/com/qfs/Store.java", "core/src/main/java/com/activeviam/Data.java");
+      commit(git, "2.0");
+    }
+
+    final Mapping mapping =
+        MappingGenerator.generateMapping(this.directory.toString(), "1.0", "2.0", 0, null);
+
+    assertThat(mapping.getMapping())
+        .containsExactlyEntriesOf(Map.of("com.qfs.Store", "com.activeviam.Data"));
+  }
+
+  @Test
+  void testMissingVersionsAreFetched(@TempDir final Path remoteDirectory)
+      throws IOException, GitAPIException {
+    try (final Git git = Git.init().setDirectory(this.directory.toFile()).call()) {
+      write("core/src/main/java/com/qfs/Store.java", "class Store { int store; }");
+      commit(git, "1.0");
+      move("core/src/main/java/com/qfs/Store.java", "core/src/main/java/com/activeviam/Store.java");
+      commit(git, "2.0");
+      git.branchCreate().setName("release").call();
+    }
+    // The remote repository is a bare clone, the local one only knows its url
+    final Path originDirectory = remoteDirectory.resolve("origin.git");
+    Git.cloneRepository()
+        .setURI(this.directory.toUri().toString())
+        .setDirectory(originDirectory.toFile())
+        .setBare(true)
+        .setCloneAllBranches(true)
+        .call()
+        .close();
+    final Path localDirectory = remoteDirectory.resolve("local");
+    try (final Git git = Git.init().setDirectory(localDirectory.toFile()).call()) {
+      final StoredConfig config = git.getRepository().getConfig();
+      config.setString("remote", "origin", "url", originDirectory.toUri().toString());
+      config.save();
+    }
+
+    final Mapping mapping =
+        MappingGenerator.generateMapping(localDirectory.toString(), "1.0", "release", -1, null);
+
+    assertThat(mapping.getMapping())
+        .containsExactlyEntriesOf(Map.of("com.qfs.Store", "com.activeviam.Store"));
+    try (final Repository repository = MappingGenerator.getRepository(localDirectory.toString())) {
+      assertThat(repository.getRefDatabase().getRefs())
+          .extracting(Ref::getName)
+          .containsExactlyInAnyOrder("refs/tags/1.0", "refs/heads/release");
+    }
+  }
+
+  @Test
+  void testSubtreesWithoutMainSourcesAreSkipped() {
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core")).isTrue();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src")).isTrue();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/main")).isTrue();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/main/java/com")).isTrue();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/main/resources")).isFalse();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/test")).isFalse();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/test/java/com")).isFalse();
+    assertThat(JavaSourceTreeFilter.mayContainMainSources("core/src/other")).isTrue();
+  }
+
+  private void write(final String path, final String content) throws IOException {
+    final Path file = this.directory.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+  }
+
+  private void move(final String source, final String target) throws IOException {
+    final Path targetFile = this.directory.resolve(target);
+    Files.createDirectories(targetFile.getParent());
+    Files.move(this.directory.resolve(source), targetFile);
+  }
+
+  private static void commit(final Git git, final String tag) throws GitAPIException {
+    git.add().addFilepattern(".").call();
+    git.add().addFilepattern(".").setUpdate(true).call();
+    git.commit().setMessage(tag).setSign(false).call();
+    git.tag().setName(tag).call();
+  }
+}
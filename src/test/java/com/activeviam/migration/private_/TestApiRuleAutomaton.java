@@ -0,0 +1,143 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class TestApiRuleAutomaton {
+
+  /** Regular expression of the API check before it was compiled from rules. */
+  private static final Pattern ACTIVEPIVOT_PATTERN =
+      Pattern.compile(
+          "(com\\.qfs|com\\.quartetfs|com\\.activeviam|io\\.atoti)\\.[A-Za-z0-9\\_\\.]*"
+              + "(internal|private_)[A-Za-z0-9\\_\\.]*[^A-Za-z0-9_]");
+
+  private static final List<String> FRAGMENTS =
+      List.of(
+          "com.qfs",
+          "com.activeviam",
+          "io.atoti",
+          "com.quartetfs",
+          "com",
+          ".",
+          ".",
+          "internal",
+          "private_",
+          "intern",
+          "store",
+          "x",
+          " ",
+          ";",
+          "\n",
+          "<",
+          "\u00e9");
+
+  @Test
+  void testParseRules() {
+    final ApiRules rules =
+        ApiRules.parse(
+            List.of(
+                "# Comment",
+                "",
+                "root com.company",
+                "  forbid   impl",
+                "allow com.company.impl.A"));
+
+    assertThat(rules.getPackageRoots()).containsExactly("com.company");
+    assertThat(rules.getNonPublicPackages()).containsExactly("impl");
+    assertThat(rules.getAllowedNames()).containsExactly("com.company.impl.A");
+    assertThatThrownBy(() -> ApiRules.parse(List.of("root com.company", "deny impl")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Line 2");
+    assertThatThrownBy(() -> ApiRules.parse(List.of("root com.company*")))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testAutomatonFindsLikeRegularExpression() {
+    final ApiRuleAutomaton automaton = new ActivePivotApiChecker(List.of()).pattern;
+    final Random random = new Random(42);
+    int matchCount = 0;
+    for (int i = 0; i < 5_000; ++i) {
+      final StringBuilder content = new StringBuilder();
+      final int fragmentCount = random.nextInt(100);
+      for (int j = 0; j < fragmentCount; ++j) {
+        content.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+      }
+
+      final List<String> expected = new ArrayList<>();
+      final Matcher matcher = ACTIVEPIVOT_PATTERN.matcher(content);
+      while (matcher.find()) {
+        expected.add(matcher.group());
+      }
+      assertThat(find(automaton, content.toString())).as(content.toString()).isEqualTo(expected);
+      matchCount += expected.size();
+    }
+    assertThat(matchCount).isPositive();
+  }
+
+  @Test
+  void testAllowedNamesAreSkipped() {
+    final ApiRules rules =
+        ApiRules.parse(
+            List.of("root com.company", "forbid internal", "allow com.company.internal.Public"));
+    final String content =
+        String.join(
+            "\n",
+            "import com.company.internal.Public;",
+            "import com.company.internal.PublicImpl;",
+            "com.company.internal.Public.method();",
+            "");
+
+    assertThat(find(rules.compile(), content)).containsExactly("com.company.internal.PublicImpl;");
+    for (final MatchingSettings settings :
+        List.of(
+            MatchingSettings.DEFAULT,
+            new MatchingSettings(MatchingSettings.MatchingEngine.LEXER, true, true))) {
+      assertThat(new TestApiChecker(rules, settings).checkContent(Path.of("A.java"), content))
+          .containsExactly("com.company.internal.PublicImpl;");
+    }
+  }
+
+  @Test
+  void testLongQualifiedNamesAreReadInLinearTime() {
+    final String content =
+        "com.qfs." + "a.".repeat(200_000) + "internal" + "b.".repeat(200_000) + "c";
+
+    assertThat(find(new ActivePivotApiChecker(List.of()).pattern, content))
+        .singleElement()
+        .satisfies(match -> assertThat(match).hasSize(content.length() - 1));
+    assertThat(find(new ActivePivotApiChecker(List.of()).pattern, content.replace('.', ' ')))
+        .isEmpty();
+  }
+
+  private static List<String> find(final ApiRuleAutomaton automaton, final String content) {
+    final ApiRuleAutomaton.ApiRuleMatcher matcher = automaton.matcher(content);
+    final List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      matches.add(matcher.group());
+    }
+    return matches;
+  }
+
+  private static final class TestApiChecker extends ApiChecker {
+
+    private TestApiChecker(final ApiRules rules, final MatchingSettings settings) {
+      super("TEST API CHECK", List.of(), rules, settings);
+    }
+  }
+}
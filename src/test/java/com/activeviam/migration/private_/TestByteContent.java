@@ -0,0 +1,112 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class TestByteContent {
+
+  private static final Map<String, String> MAPPING =
+      new TreeMap<>(
+          Map.of(
+              "com.qfs.store.IStore",
+              "com.activeviam.database.internal.IStore",
+              "com.qfs.Old",
+              "com.activeviam.New\u00e9"));
+
+  private static final List<String> FRAGMENTS =
+      List.of(
+          "com.qfs.store.IStore",
+          "com.qfs.Old",
+          "com.qfs.internal.Impl",
+          "import ",
+          ";\n",
+          ".",
+          " ",
+          "\"",
+          "//",
+          "\u00e9",
+          "\u20ac",
+          " \ud83d\ude00");
+
+  @Test
+  void testSegmentsAreReadAsOneContent() {
+    final ByteContent content =
+        new ByteContent(
+            ByteBuffer.wrap("xxcom.q".getBytes(StandardCharsets.UTF_8), 2, 5),
+            ByteBuffer.wrap(new byte[0]),
+            ByteBuffer.wrap("fs.internal \u00e9!".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(content.length()).isEqualTo(20);
+    assertThat(content.charAt(4)).isEqualTo('q');
+    assertThat(content.charAt(5)).isEqualTo('f');
+    assertThat(content.charAt(0)).isEqualTo('c');
+    assertThat(content.contains("q.fs")).isFalse();
+    assertThat(content.contains("qfs.int")).isTrue();
+    assertThat(content.subSequence(4, 10).toString()).isEqualTo("qfs.in");
+    assertThat(content.decode(0, 18)).isEqualTo("com.qfs.internal \u00e9");
+    assertThat(content.toString()).isEqualTo("com.qfs.internal \u00e9!");
+  }
+
+  @Test
+  void testBytesAreMigratedAndCheckedLikeChars() {
+    final Random random = new Random(42);
+    for (final MatchingEngine engine : List.of(MatchingEngine.PATTERN, MatchingEngine.LEXER)) {
+      final MatchingSettings settings = new MatchingSettings(engine, true, true);
+      final FileMigrater migrater = new FileMigrater(List.of(), MAPPING, settings);
+      final ApiChecker checker = new ActivePivotApiChecker(List.of(), settings);
+      assertThat(migrater.canMigrateBytes()).isTrue();
+
+      for (int i = 0; i < 1_000; ++i) {
+        final StringBuilder builder = new StringBuilder();
+        final int fragmentCount = random.nextInt(50);
+        for (int j = 0; j < fragmentCount; ++j) {
+          builder.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+        }
+        final String content = builder.toString();
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+        final String migrated = migrater.migrateContent(content);
+        final ByteContent migratedBytes =
+            migrater.migrateContent(new ByteContent(bytes, bytes.length));
+        if (migrated == null) {
+          assertThat(migratedBytes).isNull();
+        } else {
+          assertThat(toBytes(migratedBytes)).isEqualTo(migrated.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final Path file = Path.of("File.java");
+        assertThat(
+                checker.checkContent(
+                    file,
+                    migratedBytes != null ? migratedBytes : new ByteContent(bytes, bytes.length)))
+            .isEqualTo(checker.checkContent(file, migrated != null ? migrated : content));
+      }
+    }
+  }
+
+  private static byte[] toBytes(final ByteContent content) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (final ByteBuffer segment : content.getSegments()) {
+      output.write(
+          segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+    }
+    return output.toByteArray();
+  }
+}
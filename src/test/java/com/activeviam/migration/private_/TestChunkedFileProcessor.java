@@ -0,0 +1,168 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestChunkedFileProcessor {
+
+  private static final Map<String, String> MAPPING =
+      new TreeMap<>(
+          Map.of(
+              "com.qfs.store.IStore",
+              "com.activeviam.database.api.IStore",
+              "com.qfs.store.IStoreVersion",
+              "com.activeviam.database.api.IStoreVersion",
+              "com.qfs.Old",
+              "com.activeviam.New\u00e9"));
+
+  private static final List<String> FRAGMENTS =
+      List.of(
+          "com.qfs.store.IStore",
+          "com.qfs.store.IStoreVersion",
+          "com.qfs.Old",
+          "com.qfs.internal.Impl",
+          "com.activeviam.",
+          "private_",
+          "import ",
+          ";\n",
+          ".",
+          " ",
+          "x",
+          "\u00e9",
+          "\u20ac",
+          " \ud83d\ude00");
+
+  @TempDir private Path directory;
+
+  @Test
+  void testChunksAreProcessedLikeWholeFile() throws IOException {
+    final Random random = new Random(42);
+    final Path file = this.directory.resolve("Large.java");
+    for (final MatchingEngine engine : List.of(MatchingEngine.PATTERN, MatchingEngine.VECTOR)) {
+      final MatchingSettings settings = new MatchingSettings(engine, true, true);
+      for (int i = 0; i < 300; ++i) {
+        final StringBuilder builder = new StringBuilder();
+        final int fragmentCount = random.nextInt(300);
+        for (int j = 0; j < fragmentCount; ++j) {
+          builder.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+        }
+        final byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        final FileMigrater migrater = new FileMigrater(List.of(), MAPPING, settings);
+        final ApiChecker checker = new ActivePivotApiChecker(List.of(), settings);
+        final ByteContent migrated =
+            migrater.migrateContent(new ByteContent(content, content.length));
+        final byte[] expected = migrated != null ? toBytes(migrated) : content;
+        final List<String> expectedUses =
+            checker.checkContent(file, new ByteContent(expected, expected.length));
+
+        Files.write(file, content);
+        final ChunkedFileProcessor.Result result =
+            new ChunkedFileProcessor(
+                    new FileMigrater(List.of(), MAPPING, settings),
+                    new ActivePivotApiChecker(List.of(), settings),
+                    new BufferPool(1),
+                    1 + random.nextInt(64))
+                .process(file, true);
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(expected);
+        assertThat(result.isRewritten()).isEqualTo(migrated != null);
+        assertThat(result.getApiUsages()).isEqualTo(expectedUses);
+        assertThat(result.getHash()).isEqualTo(MigrationCache.hash(expected));
+      }
+    }
+  }
+
+  @Test
+  void testFileWithoutOldImportIsNotRewritten() throws IOException {
+    final Path file = this.directory.resolve("Unchanged.java");
+    Files.writeString(file, "import com.activeviam.internal.Impl;\n".repeat(1_000));
+    final FileTime lastModified = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(file, lastModified);
+
+    final ChunkedFileProcessor.Result result =
+        new ChunkedFileProcessor(
+                new FileMigrater(List.of(), MAPPING),
+                new ActivePivotApiChecker(List.of()),
+                new BufferPool(1),
+                1024)
+            .process(file, false);
+
+    assertThat(result.isRewritten()).isFalse();
+    assertThat(result.getHash()).isNull();
+    assertThat(result.getApiUsages()).hasSize(1_000);
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(lastModified);
+    try (final var files = Files.list(this.directory)) {
+      assertThat(files).containsExactly(file);
+    }
+  }
+
+  @Test
+  void testCarryOfLongQualifiedNamesIsBounded() throws IOException {
+    final int chunkSize = 64;
+    final Path file = this.directory.resolve("Blob.java");
+    final String content =
+        "import com.activeviam.private_.A;\n"
+            + "String blob = \""
+            + "a".repeat(100_000)
+            + "\";\n"
+            + "com.activeviam."
+            + "b".repeat(10_000)
+            + ".internal.B;\n"
+            + "com.activeviam."
+            + "c".repeat(10_000)
+            + ";\n"
+            + "com.activeviam.internal."
+            + "d".repeat(10_000);
+    final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    Files.write(file, bytes);
+
+    final List<String> expectedUses =
+        new ActivePivotApiChecker(List.of())
+            .checkContent(file, new ByteContent(bytes, bytes.length));
+    assertThat(expectedUses).hasSize(3);
+
+    final ApiChecker.ChunkedCheck check =
+        new ActivePivotApiChecker(List.of()).startChunkedCheck(chunkSize);
+    byte[] carry = new byte[0];
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      final int end = Math.min(offset + chunkSize, bytes.length);
+      final ByteContent chunk =
+          new ByteContent(ByteBuffer.wrap(carry), ByteBuffer.wrap(bytes, offset, end - offset));
+      final int carryStart = check.check(chunk, end == bytes.length);
+      carry = chunk.toByteArray(carryStart, chunk.length());
+      assertThat(carry.length).isLessThanOrEqualTo(chunkSize);
+    }
+    assertThat(check.finish(file)).isEqualTo(expectedUses);
+  }
+
+  private static byte[] toBytes(final ByteContent content) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (final ByteBuffer segment : content.getSegments()) {
+      output.write(
+          segment.array(), segment.arrayOffset() + segment.position(), segment.remaining());
+    }
+    return output.toByteArray();
+  }
+}
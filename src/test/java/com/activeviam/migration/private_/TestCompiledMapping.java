@@ -0,0 +1,68 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.mapping.private_.CsvMapping;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class TestCompiledMapping {
+
+  @Test
+  void testWrittenMappingIsReadBack() throws IOException {
+    final TreeMap<String, String> mapping =
+        new TreeMap<>(
+            Map.of(
+                "com.qfs.store.IStore", "com.activeviam.database.internal.IStore",
+                "com.qfs.store.IStoreVersion", "com.activeviam.database.internal.IStoreVersion",
+                "com.quartetfs.\u00e9t\u00e9.Unicode", "com.activeviam.\u00e9t\u00e9.Unicode"));
+
+    final CompiledMapping compiledMapping = writeAndRead(mapping);
+
+    assertThat(compiledMapping).isEqualTo(mapping);
+    assertThat(compiledMapping.keySet()).containsExactlyElementsOf(mapping.keySet());
+    assertThat(compiledMapping.get("com.qfs.store.IStoreVersion"))
+        .isEqualTo("com.activeviam.database.internal.IStoreVersion");
+    assertThat(compiledMapping.get("com.qfs.store.Unknown")).isNull();
+  }
+
+  @Test
+  void testReadAutomatonMigratesLikeCompiledOne() throws IOException {
+    final Map<String, String> mapping =
+        new TreeMap<>(CsvMapping.loadMappingFromFile("activepivot", "6.0.16", "6.1.0"));
+    final String content =
+        String.join("\n", List.of(mapping.keySet().toArray(String[]::new)).subList(0, 200))
+            + "\nimport java.util.List;\n";
+
+    final String expected = new FileMigrater(List.of(), mapping).migrateContent(content);
+
+    assertThat(new FileMigrater(List.of(), writeAndRead(mapping)).migrateContent(content))
+        .isNotNull()
+        .isEqualTo(expected);
+  }
+
+  @Test
+  void testBuildGeneratesArtifacts() {
+    assertThat(CsvMapping.loadMappingFromFile("activepivot", "6.0.16", "6.1.0"))
+        .isInstanceOf(CompiledMapping.class);
+  }
+
+  private static CompiledMapping writeAndRead(final Map<String, String> mapping)
+      throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    CompiledMapping.write(new TreeMap<>(mapping), output);
+    return CompiledMapping.read(ByteBuffer.wrap(output.toByteArray()));
+  }
+}
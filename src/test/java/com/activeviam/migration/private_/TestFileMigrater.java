@@ -11,6 +11,7 @@ import com.activeviam.util.private_.MigrationUtils;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -71,6 +72,17 @@ class TestFileMigrater {
     checkMigratedFile(BACKSLASH_TEMPLATE);
   }
 
+  @Test
+  void testFileWithoutOldImportIsNotRewritten() throws IOException {
+    generateTestFile("import java.util.List; // %s.toString");
+    final FileTime lastModifiedTime = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(TEST_FILE_PATH, lastModifiedTime);
+
+    FileMigrater.migrateFiles(List.of(TEST_FILE_PATH), Map.of("a.b.Other", "a.c.Other"));
+
+    Assertions.assertEquals(lastModifiedTime, Files.getLastModifiedTime(TEST_FILE_PATH));
+  }
+
   private static void generateTestFile(final String lineTemplate) {
     MigrationUtils.generateFile(
         TEST_FILE_PATH.toFile(),
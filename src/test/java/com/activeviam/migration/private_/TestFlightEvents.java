@@ -0,0 +1,71 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.util.private_.FlightRecording;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestFlightEvents {
+
+  private static final Map<String, String> MAPPING =
+      Map.of("com.qfs.store.IStore", "com.activeviam.database.internal.IStore");
+
+  @TempDir Path directory;
+
+  @Test
+  void testMigrationIsRecorded() throws IOException {
+    final Path migratedFile =
+        Files.writeString(
+            this.directory.resolve("Migrated.java"),
+            "import com.qfs.store.IStore;\nimport com.qfs.store.IStore;\n");
+    final Path untouchedFile =
+        Files.writeString(this.directory.resolve("Untouched.java"), "import java.util.List;\n");
+    final Path recordingFile = this.directory.resolve("migration.jfr");
+
+    try (final FlightRecording recording = FlightRecording.start(recordingFile)) {
+      FileMigrater.migrateFiles(List.of(migratedFile, untouchedFile), MAPPING);
+      MigrationPipeline.migrateAndCheckApi(List.of(untouchedFile), MAPPING, "activepivot");
+    }
+
+    final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+    final List<RecordedEvent> fileEvents = getEvents(events, "com.activeviam.FileProcessed");
+    assertThat(fileEvents)
+        .anySatisfy(
+            event -> {
+              assertThat(event.getString("processor")).isEqualTo("MIGRATION");
+              assertThat(event.getString("path")).isEqualTo(migratedFile.toString());
+              assertThat(event.getLong("size")).isEqualTo(58);
+              assertThat(event.getInt("matches")).isEqualTo(2);
+            })
+        .anySatisfy(
+            event -> {
+              assertThat(event.getString("path")).isEqualTo(untouchedFile.toString());
+              assertThat(event.getInt("matches")).isZero();
+            });
+    // The pipeline records the migration and the check of the file
+    assertThat(fileEvents).hasSize(4);
+    assertThat(getEvents(events, "com.activeviam.PatternCompiled"))
+        .extracting(event -> event.getString("pattern"))
+        .contains("keywords", "API rules");
+  }
+
+  private static List<RecordedEvent> getEvents(
+      final List<RecordedEvent> events, final String name) {
+    return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.mapping.private_.CsvMapping;
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class TestJavaTokenScanner {
+
+  private static final String CODE =
+      String.join(
+          "\n",
+          "import a.b.Class;",
+          "// Don't use a.b.Class \"here\"",
+          "/* a.b.Class's comment */",
+          "String s = \"a.b.Class // not a comment\" + 'a' + '\\'';",
+          "String t = \"\"\"",
+          "    a.b.Class \\\"\"\" still in the text block",
+          "    \"\"\";",
+          "a.b.Class.staticMethod(a.b.ClassImpl.class);");
+
+  private static final Map<String, String> MAPPING =
+      new TreeMap<>(Map.of("a.b.Class", "a.c.Class", "a.b.ClassImpl", "a.c.d.ClassImpl"));
+
+  private static final MatchingSettings LEXER =
+      new MatchingSettings(MatchingEngine.LEXER, true, true);
+
+  @Test
+  void testTokensOfAllRegions() {
+    assertThat(scan(CODE, true, true))
+        .containsSubsequence(
+            "import", "a.b.Class", "Don", "t", "use", "a.b.Class", "here", "a.b.Class", "s")
+        .containsSubsequence("a.b.Class", "not", "a", "comment", "a")
+        .containsSubsequence("t", "a.b.Class", "still", "in", "the", "text", "block")
+        .endsWith("a.b.Class.staticMethod", "a.b.ClassImpl.class");
+  }
+
+  @Test
+  void testTokensOfCodeOnly() {
+    assertThat(scan(CODE, false, false))
+        .containsExactly(
+            "import",
+            "a.b.Class",
+            "String",
+            "s",
+            "String",
+            "t",
+            "a.b.Class.staticMethod",
+            "a.b.ClassImpl.class");
+  }
+
+  @Test
+  void testLexerSkipsCommentsAndStrings() {
+    final String migrated =
+        new FileMigrater(
+                List.of(), MAPPING, new MatchingSettings(MatchingEngine.LEXER, false, false))
+            .migrateContent(CODE);
+
+    assertThat(migrated)
+        .startsWith("import a.c.Class;\n// Don't use a.b.Class \"here\"")
+        .contains("\"a.b.Class // not a comment\"")
+        .endsWith("a.c.Class.staticMethod(a.c.d.ClassImpl.class);");
+    assertThat(new FileMigrater(List.of(), MAPPING, LEXER).migrateContent(CODE))
+        .doesNotContain("a.b.Class");
+  }
+
+  @Test
+  void testLexerMigratesLikePatternEngine() {
+    final Map<String, String> mapping =
+        new TreeMap<>(CsvMapping.loadMappingFromFile("activepivot", "6.0.16", "6.1.0"));
+    final List<String> keys = new ArrayList<>(mapping.keySet());
+    final Random random = new Random(42);
+    final StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 2_000; ++i) {
+      final String key = keys.get(random.nextInt(keys.size()));
+      switch (random.nextInt(4)) {
+        case 0 -> content.append("import ").append(key).append(";\n");
+        case 1 -> content.append("import static ").append(key).append(".method;\n");
+        case 2 -> content.append("final ").append(key).append("<String> field = null;\n");
+        default -> content.append("// See {@link ").append(key).append("}\n");
+      }
+    }
+
+    assertThat(new FileMigrater(List.of(), mapping, LEXER).migrateContent(content.toString()))
+        .isEqualTo(new FileMigrater(List.of(), mapping).migrateContent(content.toString()));
+  }
+
+  @Test
+  void testLexerChecksApiLikePatternEngine() {
+    final String content =
+        String.join(
+            "\n",
+            "import com.qfs.store.internal.Store;",
+            "import com.activeviam.database.private_.Impl;",
+            "import com.activeviam.database.api.IDatabase;",
+            "final io.atoti.internal.Foo<com.quartetfs.biz.internal.Bar> foo;",
+            "");
+    final Path file = Path.of("File.java");
+
+    assertThat(new ActivePivotApiChecker(List.of(), LEXER).checkContent(file, content))
+        .isEqualTo(new ActivePivotApiChecker(List.of()).checkContent(file, content))
+        .hasSize(4);
+  }
+
+  private static List<String> scan(
+      final String text, final boolean scanComments, final boolean scanStrings) {
+    final JavaTokenScanner scanner = new JavaTokenScanner(text, scanComments, scanStrings);
+    final List<String> tokens = new ArrayList<>();
+    while (scanner.next()) {
+      tokens.add(text.substring(scanner.start(), scanner.end()));
+    }
+    return tokens;
+  }
+}
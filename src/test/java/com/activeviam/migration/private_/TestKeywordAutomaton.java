@@ -0,0 +1,101 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.mapping.private_.CsvMapping;
+import com.activeviam.migration.private_.KeywordAutomaton.KeywordMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class TestKeywordAutomaton {
+
+  private static final String[] SEPARATORS = {" ", ";", ".", "\\", "(", "<", "\n", "x", "_", "1"};
+
+  @Test
+  void testFirstKeywordWinsAtSamePosition() {
+    final Map<String, String> mapping =
+        new TreeMap<>(Map.of("a.b.C", "x.C", "a.b.C.Inner", "y.Inner", "a.b.CImpl", "z.CImpl"));
+
+    assertThat(findAll(mapping, "a.b.C.Inner; a.b.CImpl a.b.C;"))
+        .isEqualTo(findAllWithRegex(mapping, "a.b.C.Inner; a.b.CImpl a.b.C;"))
+        .containsExactly("0:a.b.C", "13:a.b.CImpl", "23:a.b.C");
+  }
+
+  @Test
+  void testKeywordAtEndOfTextIsIgnored() {
+    final Map<String, String> mapping = new TreeMap<>(Map.of("a.b.C", "x.C"));
+
+    assertThat(findAll(mapping, "import a.b.C")).isEmpty();
+    assertThat(findAll(mapping, "a.b.C;a.b.C")).containsExactly("0:a.b.C");
+  }
+
+  @Test
+  void testFollowingCharacterIsConsumed() {
+    final Map<String, String> mapping = new TreeMap<>(Map.of("a", "b", "a.c", "d"));
+
+    assertThat(findAll(mapping, "a;a.c;")).isEqualTo(findAllWithRegex(mapping, "a;a.c;"));
+  }
+
+  @Test
+  void testSameResultsAsRegexWithRealMapping() {
+    final Map<String, String> mapping =
+        CsvMapping.loadMappingFromFile("activepivot", "6.0.16", "6.1.0");
+    final List<String> keys = new ArrayList<>(mapping.keySet());
+    final Random random = new Random(42);
+
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2_000; ++i) {
+      final String key = keys.get(random.nextInt(keys.size()));
+      switch (random.nextInt(4)) {
+        case 0 -> text.append(key, 0, 1 + random.nextInt(key.length()));
+        case 1 -> text.append("my").append(key);
+        default -> text.append(key);
+      }
+      text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+    }
+
+    assertThat(findAll(mapping, text)).isEqualTo(findAllWithRegex(mapping, text));
+  }
+
+  private static List<String> findAll(final Map<String, String> mapping, final CharSequence text) {
+    final List<String> keys = new ArrayList<>(mapping.keySet());
+    final KeywordMatcher matcher = KeywordAutomaton.compile(keys).matcher(text);
+    final List<String> result = new ArrayList<>();
+    while (matcher.find()) {
+      assertThat(text.subSequence(matcher.start(), matcher.end()))
+          .hasToString(keys.get(matcher.keywordIndex()));
+      result.add(matcher.start() + ":" + keys.get(matcher.keywordIndex()));
+    }
+    return result;
+  }
+
+  /** The pattern {@link FileMigrater} used before the automaton, with literal keys. */
+  private static List<String> findAllWithRegex(
+      final Map<String, String> mapping, final CharSequence text) {
+    final Pattern pattern =
+        Pattern.compile(
+            "("
+                + mapping.keySet().stream().map(Pattern::quote).collect(Collectors.joining("|"))
+                + ")([^A-Za-z0-9_])");
+    final Matcher matcher = pattern.matcher(text);
+    final List<String> result = new ArrayList<>();
+    while (matcher.find()) {
+      result.add(matcher.start() + ":" + matcher.group(1));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.migration.private_.ExecutionSettings.IoThreadMode;
+import com.activeviam.migration.private_.MigrationPipeline.MigrationResult;
+import com.activeviam.util.private_.JavaFileFinder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestMigrationPipeline {
+
+  private static final Map<String, String> MAPPING =
+      Map.of("com.qfs.store.IStore", "com.activeviam.database.internal.IStore");
+
+  @TempDir Path directory;
+
+  @Test
+  void testApiIsCheckedOnMigratedContent() throws IOException {
+    final Path migratedFile =
+        Files.writeString(this.directory.resolve("Migrated.java"), "import com.qfs.store.IStore;");
+    final Path untouchedFile =
+        Files.writeString(this.directory.resolve("Untouched.java"), "import java.util.List;");
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            List.of(migratedFile, untouchedFile), MAPPING, "activepivot");
+
+    assertThat(migratedFile).hasContent("import com.activeviam.database.internal.IStore;");
+    assertThat(untouchedFile).hasContent("import java.util.List;");
+    assertThat(result.getMigrationInfo().toString())
+        .contains("Total matching patterns: 1")
+        .contains("Number of modified files: 1");
+    assertThat(result.getApiCheckReport())
+        .contains("Migrated.java")
+        .contains("com.activeviam.database.internal.IStore;")
+        .doesNotContain("Untouched.java");
+  }
+
+  @Test
+  void testEncodingOfFilesIsKept() throws IOException {
+    // "\u00e9t\u00e9" in ISO-8859-1, which is not valid UTF-8
+    final byte[] latin1Comment = {'/', '/', ' ', (byte) 0xE9, 't', (byte) 0xE9, '\n'};
+    final byte[] content =
+        concat(latin1Comment, "import com.qfs.store.IStore;\n".getBytes(), latin1Comment);
+    final Path file = Files.write(this.directory.resolve("Latin1.java"), content);
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            MAPPING,
+            "activepivot",
+            null,
+            new ExecutionSettings(1, 1, 1, 1));
+
+    assertThat(Files.readAllBytes(file))
+        .isEqualTo(
+            concat(
+                latin1Comment,
+                "import com.activeviam.database.internal.IStore;\n".getBytes(),
+                latin1Comment));
+    assertThat(result.getApiCheckReport()).contains("com.activeviam.database.internal.IStore;");
+  }
+
+  private static byte[] concat(final byte[]... arrays) {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    for (final byte[] array : arrays) {
+      output.writeBytes(array);
+    }
+    return output.toByteArray();
+  }
+
+  @Test
+  void testResultsOfConcurrentFilesAreAggregated() throws IOException {
+    final int numFiles = 500;
+    final List<Path> files = new ArrayList<>();
+    for (int i = numFiles - 1; i >= 0; --i) {
+      files.add(
+          Files.writeString(
+              this.directory.resolve(String.format("File%03d.java", i)),
+              "import com.qfs.store.IStore;\nimport com.qfs.store.IStore;\n"));
+    }
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(files, MAPPING, "activepivot");
+
+    assertThat(result.getMigrationInfo().toString())
+        .contains("Total matching patterns: " + 2 * numFiles)
+        .contains("Number of modified files: " + numFiles);
+    final String report = result.getApiCheckReport();
+    assertThat(report).contains("Total matching patterns: " + 2 * numFiles);
+    for (int i = 1; i < numFiles; ++i) {
+      assertThat(report.indexOf(String.format("File%03d.java", i - 1)))
+          .isLessThan(report.indexOf(String.format("File%03d.java", i)));
+    }
+  }
+
+  @Test
+  void testCachedFilesAreSkipped(@TempDir final Path cacheDirectory) throws IOException {
+    final Path migratedFile =
+        Files.writeString(this.directory.resolve("Migrated.java"), "import com.qfs.store.IStore;");
+    final Path untouchedFile =
+        Files.writeString(this.directory.resolve("Untouched.java"), "import java.util.List;");
+    final List<Path> files = List.of(migratedFile, untouchedFile);
+
+    final MigrationResult firstResult =
+        MigrationPipeline.migrateAndCheckApi(
+            files, MAPPING, "activepivot", loadCache(cacheDirectory));
+    assertThat(firstResult.getMigrationInfo().toString())
+        .contains("Number of files skipped by the cache: 0");
+
+    final MigrationResult secondResult =
+        MigrationPipeline.migrateAndCheckApi(
+            files, MAPPING, "activepivot", loadCache(cacheDirectory));
+    assertThat(secondResult.getMigrationInfo().toString())
+        .contains("Total matching patterns: 0")
+        .contains("Number of files skipped by the cache: 2");
+    assertThat(getApiUsePerFile(secondResult)).isEqualTo(getApiUsePerFile(firstResult));
+
+    // A file modified since the previous run is processed again
+    Files.writeString(untouchedFile, "import com.qfs.store.IStore;");
+    final MigrationResult thirdResult =
+        MigrationPipeline.migrateAndCheckApi(
+            files, MAPPING, "activepivot", loadCache(cacheDirectory));
+    assertThat(thirdResult.getMigrationInfo().toString())
+        .contains("Total matching patterns: 1")
+        .contains("Number of files skipped by the cache: 1");
+    assertThat(untouchedFile).hasContent("import com.activeviam.database.internal.IStore;");
+
+    // Another mapping does not use the same cache
+    final MigrationResult otherMappingResult =
+        MigrationPipeline.migrateAndCheckApi(
+            files,
+            Map.of("a.b.C", "a.c.C"),
+            "activepivot",
+            MigrationCache.load(
+                cacheDirectory, "activepivot", "1.0", "2.0", Map.of("a.b.C", "a.c.C")));
+    assertThat(otherMappingResult.getMigrationInfo().toString())
+        .contains("Number of files skipped by the cache: 0");
+  }
+
+  private static String getApiUsePerFile(final MigrationResult result) {
+    final String report = result.getApiCheckReport();
+    return report.substring(report.indexOf("Non-public API use in each file:"));
+  }
+
+  private static MigrationCache loadCache(final Path cacheDirectory) {
+    return MigrationCache.load(cacheDirectory, "activepivot", "1.0", "2.0", MAPPING);
+  }
+
+  @Test
+  void testStreamedFilesAreMigrated() throws IOException {
+    final int numFiles = 100;
+    for (int i = 0; i < numFiles; ++i) {
+      final Path subDirectory = Files.createDirectories(this.directory.resolve("module" + i % 7));
+      Files.writeString(
+          subDirectory.resolve("File" + i + ".java"),
+          i % 2 == 0 ? "import com.qfs.store.IStore;" : "import java.util.List;");
+    }
+    Files.writeString(this.directory.resolve("NotJava.txt"), "import com.qfs.store.IStore;");
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            MAPPING,
+            "activepivot",
+            null,
+            new ExecutionSettings(2, 3, 2, 1));
+
+    assertThat(result.getMigrationInfo().toString())
+        .contains("Number of processed files: " + numFiles)
+        .contains("Number of modified files: " + numFiles / 2)
+        .contains("File processing times: p50");
+    assertThat(this.directory.resolve("module0/File0.java"))
+        .hasContent("import com.activeviam.database.internal.IStore;");
+    assertThat(this.directory.resolve("NotJava.txt")).hasContent("import com.qfs.store.IStore;");
+  }
+
+  @Test
+  void testStreamedFilesAreMigratedWithVirtualIoThreads() throws IOException {
+    final int numFiles = 100;
+    for (int i = 0; i < numFiles; ++i) {
+      Files.writeString(
+          this.directory.resolve("File" + i + ".java"),
+          i % 2 == 0 ? "import com.qfs.store.IStore;" : "import java.util.List;");
+    }
+
+    // Virtual threads fall back to platform threads on Java versions without them
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            MAPPING,
+            "activepivot",
+            null,
+            new ExecutionSettings(16, 2, 16, 4, IoThreadMode.VIRTUAL));
+
+    assertThat(result.getMigrationInfo().toString())
+        .contains("Number of processed files: " + numFiles)
+        .contains("Number of modified files: " + numFiles / 2);
+    assertThat(this.directory.resolve("File0.java"))
+        .hasContent("import com.activeviam.database.internal.IStore;");
+  }
+
+  @Test
+  void testLargeFilesAreProcessedInChunks(@TempDir final Path cacheDirectory) throws IOException {
+    final String imports = "import com.qfs.store.IStore;\nimport com.qfs.internal.Impl;\n";
+    final Path largeFile =
+        Files.writeString(this.directory.resolve("Large.java"), imports.repeat(50));
+    final Path smallFile = Files.writeString(this.directory.resolve("Small.java"), imports);
+    // Only the large file is read in chunks of 16 bytes, until the small one is migrated
+    final ExecutionSettings settings =
+        new ExecutionSettings(1, 1, 1, 1, IoThreadMode.PLATFORM, imports.length() + 1, 16);
+
+    final MigrationResult firstResult =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            MAPPING,
+            "activepivot",
+            loadCache(cacheDirectory),
+            settings);
+
+    final String migratedImports =
+        "import com.activeviam.database.internal.IStore;\nimport com.qfs.internal.Impl;\n";
+    assertThat(largeFile).hasContent(migratedImports.repeat(50));
+    assertThat(smallFile).hasContent(migratedImports);
+    assertThat(firstResult.getMigrationInfo().toString())
+        .contains("Total matching patterns: 51")
+        .contains("Number of modified files: 2");
+    assertThat(firstResult.getApiCheckReport()).contains("Total matching patterns: 102");
+
+    // Both files are now read in chunks, and found in the cache by their hash
+    final MigrationResult secondResult =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            MAPPING,
+            "activepivot",
+            loadCache(cacheDirectory),
+            settings);
+    assertThat(secondResult.getMigrationInfo().toString())
+        .contains("Number of files skipped by the cache: 2");
+    assertThat(getApiUsePerFile(secondResult)).isEqualTo(getApiUsePerFile(firstResult));
+  }
+
+  @Test
+  void testStreamedFileFailureIsThrown() throws IOException {
+    for (int i = 0; i < 20; ++i) {
+      Files.writeString(this.directory.resolve("File" + i + ".java"), "import java.util.List;");
+    }
+    // The finder also returns a file which does not exist, so that reading it fails
+    final JavaFileFinder finder =
+        new JavaFileFinder(List.of(), List.of()) {
+          @Override
+          public void forEachJavaFile(
+              final String directory, final BiConsumer<Path, BasicFileAttributes> consumer) {
+            super.forEachJavaFile(directory, consumer);
+            try {
+              consumer.accept(
+                  Path.of(directory, "Missing.java"),
+                  Files.readAttributes(Path.of(directory), BasicFileAttributes.class));
+            } catch (final IOException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+
+    assertThatThrownBy(
+            () ->
+                MigrationPipeline.migrateAndCheckApi(
+                    finder,
+                    this.directory.toString(),
+                    MAPPING,
+                    "activepivot",
+                    null,
+                    new ExecutionSettings(1, 1, 1, 1)))
+        .isInstanceOf(RuntimeException.class);
+  }
+
+  @Test
+  void testLibraryWithoutApiChecker() throws IOException {
+    final Path file =
+        Files.writeString(this.directory.resolve("File.java"), "import com.qfs.store.IStore;");
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(List.of(file), MAPPING, "unknown");
+
+    assertThat(file).hasContent("import com.activeviam.database.internal.IStore;");
+    assertThat(result.getApiCheckReport()).contains("There is no implementation of");
+  }
+}
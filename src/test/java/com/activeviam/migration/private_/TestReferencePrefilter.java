@@ -0,0 +1,63 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TestReferencePrefilter {
+
+  @Test
+  void testQualifiedNamesPrefilter() {
+    final ReferencePrefilter prefilter =
+        ReferencePrefilter.ofQualifiedNames(
+            List.of("com.qfs.store.IStore", "com.qfs.pivot.IPivot", "io.atoti.Foo", "Bar"));
+
+    assertThat(prefilter.mayMatch("import com.qfs.store.IStore;")).isTrue();
+    assertThat(prefilter.mayMatch("import io.atoti.Foo;")).isTrue();
+    assertThat(prefilter.mayMatch("class Bar {}")).isTrue();
+    assertThat(prefilter.mayMatch("import com.google.Foo;")).isFalse();
+    assertThat(ReferencePrefilter.ofQualifiedNames(List.of()).mayMatch("Foo")).isFalse();
+  }
+
+  @Test
+  void testManyPackageRootsAreShortened() {
+    final List<String> qualifiedNames = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      qualifiedNames.add("com.company" + i + ".Foo");
+    }
+    final ReferencePrefilter prefilter = ReferencePrefilter.ofQualifiedNames(qualifiedNames);
+
+    assertThat(prefilter.mayMatch("import com.company7.Foo;")).isTrue();
+    assertThat(prefilter.mayMatch("import org.company7.Foo;")).isFalse();
+  }
+
+  @Test
+  void testSkippedFilesAreCounted() {
+    final FileMigrater migrater =
+        new FileMigrater(
+            List.of(), Map.of("com.qfs.store.IStore", "com.activeviam.database.api.IStore"));
+    final ApiChecker checker = new ActivePivotApiChecker(List.of());
+
+    for (final String content :
+        List.of("import java.util.List;", "import com.qfs.store.IStore;", "class Foo {}")) {
+      migrater.migrateContent(content);
+      checker.checkContent(Path.of("Foo.java"), content);
+    }
+
+    assertThat(migrater.info.toString()).contains("Number of files skipped by the prefilter: 2");
+    assertThat(checker.info.toString()).contains("Number of files skipped by the prefilter: 2");
+    assertThat(ReferencePrefilter.ofPackageRoots(Set.of("com.qfs")).mayMatch("com.qfsx")).isFalse();
+  }
+}
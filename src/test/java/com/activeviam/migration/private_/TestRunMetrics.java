@@ -0,0 +1,97 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.migration.private_.MigrationPipeline.MigrationResult;
+import com.activeviam.migration.private_.RunMetrics.FileOutcome;
+import com.activeviam.migration.private_.RunMetrics.FileTime;
+import com.activeviam.util.private_.JavaFileFinder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestRunMetrics {
+
+  @TempDir Path directory;
+
+  @Test
+  void testSlowestFilesAreKept() {
+    final RunMetrics metrics = new RunMetrics("test", 3);
+    final long[] nanos = {5, 1, 9, 7, 3, 8};
+    for (int i = 0; i < nanos.length; ++i) {
+      metrics.recordFile(Path.of("File" + i + ".java"), i, nanos[i], FileOutcome.UNCHANGED);
+    }
+    metrics.recordFile(Path.of("Cached.java"), 0, 0, FileOutcome.SKIPPED);
+
+    assertThat(metrics.getSlowestFiles().stream().map(FileTime::getNanos))
+        .containsExactly(9L, 8L, 7L);
+    assertThat(metrics.getSlowestFiles().get(0).getFile()).isEqualTo(Path.of("File2.java"));
+    assertThat(metrics.getFileCount(FileOutcome.UNCHANGED)).isEqualTo(6);
+    assertThat(metrics.getFileCount(FileOutcome.SKIPPED)).isEqualTo(1);
+  }
+
+  @Test
+  void testMetricsOfStreamedRunAreWritten() throws IOException {
+    final String oldImport = "import com.qfs.store.IStore;\n";
+    final String newImport = "import com.activeviam.database.internal.IStore;\n";
+    for (int i = 0; i < 10; ++i) {
+      Files.writeString(
+          this.directory.resolve("File" + i + ".java"),
+          i % 2 == 0 ? oldImport : "import java.util.List;\n");
+    }
+
+    final MigrationResult result =
+        MigrationPipeline.migrateAndCheckApi(
+            JavaFileFinder.DEFAULT,
+            this.directory.toString(),
+            Map.of("com.qfs.store.IStore", "com.activeviam.database.internal.IStore"),
+            "activepivot",
+            null,
+            new ExecutionSettings(2, 2, 2, 4));
+    final Path metricsFile = this.directory.resolve("metrics.json");
+    result.getMetrics().writeJson(metricsFile);
+
+    final JsonNode json = new ObjectMapper().readTree(metricsFile.toFile());
+    assertThat(json.get("name").asText()).isEqualTo("migration");
+    assertThat(json.get("files").get("processed").asLong()).isEqualTo(10);
+    assertThat(json.get("files").get("changed").asLong()).isEqualTo(5);
+    assertThat(json.get("files").get("unchanged").asLong()).isEqualTo(5);
+    assertThat(json.get("files").get("skipped").asLong()).isZero();
+    assertThat(json.get("bytes").get("read").asLong())
+        .isEqualTo(5L * oldImport.length() + 5L * "import java.util.List;\n".length());
+    assertThat(json.get("bytes").get("written").asLong()).isEqualTo(5L * newImport.length());
+    assertThat(phaseNames(json)).containsExactly("discovery", "read", "match", "apiCheck", "write");
+    for (final JsonNode phase : json.get("phases")) {
+      assertThat(phase.get("timeNanos").asLong()).isPositive();
+    }
+    // Which thread of a stage gets the files is not deterministic
+    assertThat(json.get("threadBusyNanos").fieldNames())
+        .toIterable()
+        .contains("migration-producer-1")
+        .anyMatch(thread -> thread.startsWith("migration-read-"))
+        .anyMatch(thread -> thread.startsWith("migration-process-"))
+        .anyMatch(thread -> thread.startsWith("migration-write-"));
+    assertThat(json.get("slowestFiles")).hasSize(RunMetrics.DEFAULT_SLOWEST_FILES);
+    assertThat(result.getMetrics().toString()).contains("Time in apiCheck");
+  }
+
+  private static List<String> phaseNames(final JsonNode json) {
+    final List<String> names = new ArrayList<>();
+    json.get("phases").fieldNames().forEachRemaining(names::add);
+    return names;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestSizeAwareScheduler {
+
+  @TempDir private Path directory;
+
+  @Test
+  void testLargestFilesAreProcessedFirst() throws IOException {
+    final List<Path> files = createFiles(3, 10, 7, 0, 5);
+    final List<Path> processed = Collections.synchronizedList(new ArrayList<>());
+
+    final FileTimings timings =
+        new SizeAwareScheduler("test", 1, Long.MAX_VALUE).run(files, processed::add);
+
+    assertThat(processed)
+        .containsExactly(files.get(1), files.get(2), files.get(4), files.get(0), files.get(3));
+    assertThat(timings.size()).isEqualTo(5);
+    assertThat(timings.getImbalance()).isEqualTo(1);
+    assertThat(timings.toString()).contains("p99").contains("thread imbalance");
+  }
+
+  @Test
+  void testBytesInFlightAreBounded() throws IOException {
+    final List<Path> files = createFiles(4096, 1024, 1024, 1024, 1024, 1024, 1024, 2048, 100);
+    final Map<Path, Long> sizes = new ConcurrentHashMap<>();
+    for (final Path file : files) {
+      sizes.put(file, Files.size(file));
+    }
+    final AtomicLong bytesInFlight = new AtomicLong();
+    final AtomicLong maxBytesInFlight = new AtomicLong();
+    final AtomicInteger largeFileNeighbours = new AtomicInteger();
+
+    new SizeAwareScheduler("test", 4, 2048)
+        .run(
+            files,
+            file -> {
+              final long size = sizes.get(file);
+              final long inFlight = bytesInFlight.addAndGet(size);
+              if (size > 2048 && inFlight != size) {
+                largeFileNeighbours.incrementAndGet();
+              }
+              if (size <= 2048) {
+                maxBytesInFlight.accumulateAndGet(inFlight, Math::max);
+              }
+              sleep();
+              bytesInFlight.addAndGet(-size);
+            });
+
+    assertThat(maxBytesInFlight.get()).isPositive().isLessThanOrEqualTo(2048);
+    assertThat(largeFileNeighbours.get()).isZero();
+  }
+
+  @Test
+  void testFailureIsThrown() throws IOException {
+    final List<Path> files = createFiles(1, 2, 3, 4, 5, 6);
+    final AtomicInteger processed = new AtomicInteger();
+
+    assertThatThrownBy(
+            () ->
+                new SizeAwareScheduler("test", 1, Long.MAX_VALUE)
+                    .run(
+                        files,
+                        file -> {
+                          if (processed.incrementAndGet() == 2) {
+                            throw new IllegalStateException("Failure of " + file);
+                          }
+                        }))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(files.get(4).toString());
+    assertThat(processed.get()).isEqualTo(2);
+  }
+
+  private List<Path> createFiles(final int... sizes) throws IOException {
+    final List<Path> files = new ArrayList<>();
+    for (int i = 0; i < sizes.length; ++i) {
+      final Path file = this.directory.resolve("File" + i + ".java");
+      Files.write(file, new byte[sizes[i]]);
+      files.add(file);
+    }
+    return files;
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(20);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
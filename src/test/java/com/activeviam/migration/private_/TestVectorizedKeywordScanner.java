@@ -0,0 +1,132 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.migration.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.migration.private_.MatchingSettings.MatchingEngine;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TestVectorizedKeywordScanner {
+
+  private static final List<String> FRAGMENTS =
+      List.of(
+          "com.qfs",
+          "com.activeviam",
+          "io.atoti",
+          "com.quartetfs",
+          ".",
+          ".",
+          "internal",
+          "private_",
+          "intern",
+          "private",
+          "store",
+          "A1_",
+          " ",
+          ";",
+          "\n",
+          "<",
+          "(",
+          "\u00e9");
+
+  private static final MatchingSettings VECTOR =
+      new MatchingSettings(MatchingEngine.VECTOR, true, true);
+
+  @Test
+  void testVectorApiIsEnabledInTests() {
+    assertThat(ApiChecker.isVectorApiSupported()).isTrue();
+  }
+
+  @Test
+  void testFindKeywords() {
+    final VectorizedKeywordScanner scanner =
+        new VectorizedKeywordScanner(List.of("internal", "private_"));
+    final String prefix = "import com.qfs.store.".repeat(10);
+    final String text = prefix + "internal.Foo; a.private_";
+    final ByteContent content = toContent(text);
+    final int length = text.length();
+
+    assertThat(scanner.find(content, 0)).isEqualTo(prefix.length());
+    assertThat(scanner.find(content, prefix.length() + 1)).isEqualTo(length - 8);
+    assertThat(scanner.find(content.subSequence(0, length - 1), 0)).isEqualTo(prefix.length());
+    assertThat(scanner.find(content.subSequence(0, length - 1), prefix.length() + 1)).isEqualTo(-1);
+  }
+
+  @Test
+  void testFindKeywordsAcrossSegments() {
+    final VectorizedKeywordScanner scanner =
+        new VectorizedKeywordScanner(List.of("internal", "private_"));
+    final String first = "import com.qfs.store.".repeat(10) + "inter";
+    final String second = "nal.Foo; a.private_;" + "x".repeat(100);
+    final ByteContent content =
+        new ByteContent(
+            ByteBuffer.wrap(first.getBytes(StandardCharsets.UTF_8)),
+            ByteBuffer.wrap(second.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(scanner.find(content, 0)).isEqualTo(first.length() - 5);
+    assertThat(scanner.find(content, first.length() - 4)).isEqualTo(first.length() + 11);
+  }
+
+  @Test
+  void testVectorEngineChecksApiLikePatternEngine() {
+    final ApiChecker vectorChecker = new ActivePivotApiChecker(List.of(), VECTOR);
+    final ApiChecker patternChecker = new ActivePivotApiChecker(List.of());
+    final Path file = Path.of("File.java");
+    final Random random = new Random(42);
+    int matchCount = 0;
+    for (int i = 0; i < 2_000; ++i) {
+      final StringBuilder content = new StringBuilder();
+      final int fragmentCount = random.nextInt(200);
+      for (int j = 0; j < fragmentCount; ++j) {
+        content.append(FRAGMENTS.get(random.nextInt(FRAGMENTS.size())));
+      }
+
+      final List<String> expected = patternChecker.checkContent(file, content.toString());
+      assertThat(vectorChecker.checkContent(file, content.toString())).isEqualTo(expected);
+      assertThat(vectorChecker.checkContent(file, toSegments(content.toString(), random)))
+          .isEqualTo(expected);
+      matchCount += expected.size();
+    }
+    assertThat(matchCount).isPositive();
+  }
+
+  @Test
+  void testVectorEngineMigratesLikePatternEngine() {
+    final Map<String, String> mapping = Map.of("com.qfs.store.A1_", "com.activeviam.store.A1_");
+    final String content = "import com.qfs.store.A1_;\ncom.qfs.store.internal.A1_ a;\n";
+
+    assertThat(new FileMigrater(List.of(), mapping, VECTOR).migrateContent(content))
+        .isEqualTo(new FileMigrater(List.of(), mapping).migrateContent(content))
+        .startsWith("import com.activeviam.store.A1_;");
+  }
+
+  private static ByteContent toContent(final String text) {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    return new ByteContent(bytes, bytes.length);
+  }
+
+  /** Returns the given text in segments of random lengths. */
+  private static ByteContent toSegments(final String text, final Random random) {
+    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    final List<ByteBuffer> segments = new ArrayList<>();
+    for (int start = 0; start < bytes.length; ) {
+      final int length = Math.min(1 + random.nextInt(100), bytes.length - start);
+      segments.add(ByteBuffer.wrap(bytes, start, length));
+      start += length;
+    }
+    return new ByteContent(segments.toArray(ByteBuffer[]::new));
+  }
+}
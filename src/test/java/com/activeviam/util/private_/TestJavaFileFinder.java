@@ -0,0 +1,149 @@
+/*
+ * (C) ActiveViam 2024
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use,
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.util.private_;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TestJavaFileFinder {
+
+  @TempDir Path directory;
+
+  @BeforeEach
+  void createProject() throws IOException {
+    createFile("module/src/main/java/com/foo/Foo.java");
+    createFile("module/src/main/java/com/foo/build/Builder.java");
+    createFile("module/src/main/java/com/foo/README.md");
+    createFile("module/src/test/java/com/foo/TestFoo.java");
+    createFile("module/target/classes/Stale.java");
+    createFile("module/target/generated-sources/annotations/Generated.java");
+    createFile("build/Stale.java");
+    createFile(".idea/Settings.java");
+    createFile("node_modules/lib/Lib.java");
+    createFile(".git/Object.java");
+  }
+
+  @Test
+  void testDefaultExclusions() {
+    assertThat(find(JavaFileFinder.DEFAULT))
+        .containsExactlyInAnyOrder(
+            "module/src/main/java/com/foo/Foo.java",
+            "module/src/main/java/com/foo/build/Builder.java",
+            "module/src/test/java/com/foo/TestFoo.java");
+  }
+
+  @Test
+  void testGitIgnoreRules() throws IOException {
+    Files.writeString(this.directory.resolve(".gitignore"), "*.generated.java\nscratch/\n");
+    Files.writeString(
+        this.directory.resolve("module/.gitignore"), "src/test/\n!Kept.generated.java\n");
+    createFile("module/src/main/java/com/foo/Foo.generated.java");
+    createFile("module/src/main/java/com/foo/Kept.generated.java");
+    createFile("module/scratch/Scratch.java");
+    createFile("Root.generated.java");
+
+    assertThat(find(JavaFileFinder.DEFAULT))
+        .containsExactlyInAnyOrder(
+            "module/src/main/java/com/foo/Foo.java",
+            "module/src/main/java/com/foo/build/Builder.java",
+            "module/src/main/java/com/foo/Kept.generated.java");
+  }
+
+  @Test
+  void testGitIgnoreRulesOfParentDirectories() throws IOException {
+    Files.writeString(this.directory.resolve(".gitignore"), "module/src/test/\n");
+
+    assertThat(find(JavaFileFinder.DEFAULT, this.directory.resolve("module")))
+        .containsExactlyInAnyOrder(
+            "module/src/main/java/com/foo/Foo.java",
+            "module/src/main/java/com/foo/build/Builder.java");
+  }
+
+  @Test
+  void testFilesChangedSinceReference(@TempDir final Path projectDirectory)
+      throws IOException, GitAPIException {
+    final Path project = projectDirectory.resolve("project");
+    try (final Git git = Git.init().setDirectory(projectDirectory.toFile()).call()) {
+      Files.writeString(projectDirectory.resolve(".gitignore"), "*.generated.java\n");
+      createFile(project, "core/src/main/java/Modified.java");
+      createFile(project, "core/src/main/java/Unchanged.java");
+      createFile(project, "core/src/main/java/Reverted.java");
+      createFile(project, "core/src/main/java/Staged.java");
+      createFile(project, "other/src/main/java/Other.java");
+      createFile(projectDirectory, "Outside.java");
+      git.add().addFilepattern(".").call();
+      git.commit().setMessage("base").setSign(false).call();
+      git.tag().setName("base").call();
+
+      Files.writeString(project.resolve("core/src/main/java/Modified.java"), "class Modified {}");
+      Files.writeString(project.resolve("core/src/main/java/Staged.java"), "class Staged {}");
+      createFile(project, "core/src/main/java/Added.java");
+      git.add().addFilepattern("project/core/src/main/java/Staged.java").call();
+      git.add().addFilepattern("project/core/src/main/java/Added.java").call();
+      Files.writeString(project.resolve("core/src/main/java/Reverted.java"), "class Reverted {}");
+      createFile(project, "core/src/main/java/Untracked.java");
+      createFile(project, "core/src/main/java/Ignored.generated.java");
+      Files.writeString(projectDirectory.resolve("Outside.java"), "class Outside {}");
+    }
+    createFile(project, "core/src/main/java/Reverted.java");
+
+    final List<String> files = new ArrayList<>();
+    new JavaFileFinder(List.of(), List.of(), "base")
+        .forEachJavaFile(
+            project.toString(),
+            file -> files.add(project.relativize(file).toString().replace('\\', '/')));
+
+    assertThat(files)
+        .containsExactlyInAnyOrder(
+            "core/src/main/java/Modified.java",
+            "core/src/main/java/Staged.java",
+            "core/src/main/java/Added.java",
+            "core/src/main/java/Untracked.java");
+  }
+
+  @Test
+  void testIncludesAndExcludes() {
+    assertThat(
+            find(
+                new JavaFileFinder(
+                    List.of("**/src/main/java/**"), List.of("**/build", "**/TestFoo.java"))))
+        .containsExactly("module/src/main/java/com/foo/Foo.java");
+  }
+
+  private List<String> find(final JavaFileFinder finder) {
+    return find(finder, this.directory);
+  }
+
+  private List<String> find(final JavaFileFinder finder, final Path root) {
+    final List<String> files = new ArrayList<>();
+    finder.forEachJavaFile(
+        root.toString(),
+        file -> files.add(this.directory.relativize(file).toString().replace('\\', '/')));
+    return files;
+  }
+
+  private void createFile(final String path) throws IOException {
+    createFile(this.directory, path);
+  }
+
+  private static void createFile(final Path root, final String path) throws IOException {
+    final Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, "class A {}");
+  }
+}